@@ -11,13 +11,10 @@
  *******************************************************************************/
 package sync.pds.solver;
 
-import java.util.AbstractMap;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import org.apache.logging.log4j.LogManager;
@@ -25,8 +22,8 @@ import org.apache.logging.log4j.Logger;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Multiset;
 import com.google.common.collect.Sets;
 
 import sync.pds.solver.nodes.CallPopNode;
@@ -34,10 +31,10 @@ import sync.pds.solver.nodes.ExclusionNode;
 import sync.pds.solver.nodes.GeneratedState;
 import sync.pds.solver.nodes.INode;
 import sync.pds.solver.nodes.Node;
+import sync.pds.solver.nodes.NodeFactory;
 import sync.pds.solver.nodes.NodeWithLocation;
 import sync.pds.solver.nodes.PopNode;
 import sync.pds.solver.nodes.PushNode;
-import sync.pds.solver.nodes.SingleNode;
 import wpds.impl.*;
 import wpds.interfaces.Location;
 import wpds.interfaces.State;
@@ -66,10 +63,11 @@ public abstract class SyncPDSSolver<Stmt extends Location, Fact, Field extends L
 	private final Set<Node<Stmt,Fact>> reachedStates = Sets.newHashSet();
 	private final Set<Node<Stmt, Fact>> callingContextReachable = Sets.newHashSet();
 	private final Set<Node<Stmt, Fact>> fieldContextReachable = Sets.newHashSet();
-	private final Set<SyncPDSUpdateListener<Stmt, Fact>> updateListeners = Sets.newHashSet();
-	private final Multimap<Node<Stmt,Fact>, SyncStatePDSUpdateListener<Stmt, Fact>> reachedStateUpdateListeners = HashMultimap.create();
+	private final ListenerList<SyncPDSUpdateListener<Stmt, Fact>> updateListeners = new ListenerList<>();
+	private final ListenerRegistry<Node<Stmt,Fact>, SyncStatePDSUpdateListener<Stmt, Fact>> reachedStateUpdateListeners = new ListenerRegistry<>();
 	protected final WeightedPAutomaton<Field, INode<Node<Stmt,Fact>>, W> fieldAutomaton;
 	protected final WeightedPAutomaton<Stmt, INode<Fact>,W> callAutomaton;
+	protected final NodeFactory<Stmt, Fact, Field> nodes;
 
 	protected boolean preventFieldTransitionAdd(Transition<Field, INode<Node<Stmt, Fact>>> trans, W weight) {
 		return false;
@@ -79,6 +77,24 @@ public abstract class SyncPDSSolver<Stmt extends Location, Fact, Field extends L
 		return false;
 	}
 	public SyncPDSSolver(INode<Fact> initialCallNode, INode<Node<Stmt,Fact>> initialFieldNode, final boolean useCallSummaries, NestedWeightedPAutomatons<Stmt, INode<Fact>, W> callSummaries,final boolean useFieldSummaries, NestedWeightedPAutomatons<Field, INode<Node<Stmt, Fact>>, W> fieldSummaries){
+		this(new NodeFactory<Stmt, Fact, Field>(), initialCallNode, initialFieldNode, useCallSummaries, callSummaries, useFieldSummaries, fieldSummaries);
+	}
+
+	/**
+	 * Creates a solver that obtains its nodes and generated states from the given factory. Solvers that
+	 * exchange automaton states should share one factory.
+	 */
+	public SyncPDSSolver(NodeFactory<Stmt, Fact, Field> nodes, INode<Fact> initialCallNode, INode<Node<Stmt,Fact>> initialFieldNode, final boolean useCallSummaries, NestedWeightedPAutomatons<Stmt, INode<Fact>, W> callSummaries,final boolean useFieldSummaries, NestedWeightedPAutomatons<Field, INode<Node<Stmt, Fact>>, W> fieldSummaries){
+		this(nodes, initialCallNode, initialFieldNode, useCallSummaries, callSummaries, useFieldSummaries, fieldSummaries, false);
+	}
+
+	/**
+	 * @param offHeapTransitions
+	 *            Whether the call and field automata keep their transitions in an
+	 *            {@link OffHeapTransitionStore}, outside of the Java heap.
+	 */
+	public SyncPDSSolver(NodeFactory<Stmt, Fact, Field> nodes, INode<Fact> initialCallNode, INode<Node<Stmt,Fact>> initialFieldNode, final boolean useCallSummaries, NestedWeightedPAutomatons<Stmt, INode<Fact>, W> callSummaries,final boolean useFieldSummaries, NestedWeightedPAutomatons<Field, INode<Node<Stmt, Fact>>, W> fieldSummaries, final boolean offHeapTransitions){
+		this.nodes = nodes;
 		fieldAutomaton = new WeightedPAutomaton<Field, INode<Node<Stmt,Fact>>, W>(initialFieldNode) {
 			@Override
 			public INode<Node<Stmt,Fact>> createState(INode<Node<Stmt,Fact>> d, Field loc) {
@@ -121,6 +137,13 @@ public abstract class SyncPDSSolver<Stmt extends Location, Fact, Field extends L
 			public void onManyStateListenerRegister() {
 				SyncPDSSolver.this.onManyStateListenerRegister();
 			}
+
+			@Override
+			protected TransitionStore<Field, INode<Node<Stmt, Fact>>, W> createTransitionStore() {
+				if (offHeapTransitions)
+					return new OffHeapTransitionStore<Field, INode<Node<Stmt, Fact>>, W>();
+				return super.createTransitionStore();
+			}
 		};
 
 		callAutomaton = new WeightedPAutomaton<Stmt, INode<Fact>,W>(initialCallNode) {
@@ -159,6 +182,13 @@ public abstract class SyncPDSSolver<Stmt extends Location, Fact, Field extends L
 			public boolean isGeneratedState(INode<Fact> d) {
 				return d instanceof GeneratedState;
 			}
+
+			@Override
+			protected TransitionStore<Stmt, INode<Fact>, W> createTransitionStore() {
+				if (offHeapTransitions)
+					return new OffHeapTransitionStore<Stmt, INode<Fact>, W>();
+				return super.createTransitionStore();
+			}
 		};
 		
 		callAutomaton.registerListener(new CallAutomatonListener());
@@ -360,7 +390,7 @@ public abstract class SyncPDSSolver<Stmt extends Location, Fact, Field extends L
 		@Override
 		public void onOutTransitionAdded(Transition<Stmt, INode<Fact>> t, W w,
 				WeightedPAutomaton<Stmt, INode<Fact>, W> weightedPAutomaton) {
-			Node<Stmt, Fact> returningNode = new Node<Stmt, Fact>(t.getLabel(),
+			Node<Stmt, Fact> returningNode = nodes.node(t.getLabel(),
 					nestedT.getStart().fact());
 			setCallingContextReachable(returningNode);
 		}
@@ -409,7 +439,7 @@ public abstract class SyncPDSSolver<Stmt extends Location, Fact, Field extends L
 		@Override
 		public void onWeightAdded(Transition<Stmt, INode<Fact>> t, W w, WeightedPAutomaton<Stmt, INode<Fact>,W> aut) {
 			if(!(t.getStart() instanceof GeneratedState)){
-				Node<Stmt, Fact> node = new Node<Stmt,Fact>(t.getString(),t.getStart().fact());
+				Node<Stmt, Fact> node = nodes.node(t.getString(),t.getStart().fact());
 				setCallingContextReachable(node);
 			}
 		}
@@ -461,11 +491,16 @@ public abstract class SyncPDSSolver<Stmt extends Location, Fact, Field extends L
 		if (reachedStates.contains(curr))
 			return false;
 		reachedStates.add(curr);
-		for (SyncPDSUpdateListener<Stmt, Fact> l : Lists.newLinkedList(updateListeners)) {
-			l.onReachableNodeAdded(curr);
-		}
-		for(SyncStatePDSUpdateListener<Stmt, Fact> l : Lists.newLinkedList(reachedStateUpdateListeners.get(curr))){
-			l.reachable();
+		Object[] ls = updateListeners.elements();
+		for (int i = 0, n = updateListeners.size(); i < n; i++) {
+			((SyncPDSUpdateListener<Stmt, Fact>) ls[i]).onReachableNodeAdded(curr);
+		}
+		ListenerList<SyncStatePDSUpdateListener<Stmt, Fact>> forNode = reachedStateUpdateListeners.get(curr);
+		if (forNode != null) {
+			ls = forNode.elements();
+			for (int i = 0, n = forNode.size(); i < n; i++) {
+				((SyncStatePDSUpdateListener<Stmt, Fact>) ls[i]).reachable();
+			}
 		}
 		return true;
 	}
@@ -555,7 +590,7 @@ public abstract class SyncPDSSolver<Stmt extends Location, Fact, Field extends L
 	}
 
 	protected INode<Node<Stmt,Fact>> asFieldFact(Node<Stmt, Fact> node) {
-		return new SingleNode<Node<Stmt,Fact>>(new Node<Stmt,Fact>(node.stmt(), node.fact()));
+		return nodes.fieldNode(node);
 	}
 
 	public void processPop(Node<Stmt,Fact> curr, PopNode popNode) {
@@ -574,11 +609,11 @@ public abstract class SyncPDSSolver<Stmt extends Location, Fact, Field extends L
 			//TODO we have an unchecked cast here, branch directly based on PopNode type?
 			CallPopNode<Fact, Stmt> callPopNode = (CallPopNode) popNode;
 			Stmt returnSite = callPopNode.getReturnSite();
-			addNormalFieldFlow(curr, new Node<Stmt,Fact>(returnSite,(Fact)location));
+			addNormalFieldFlow(curr, nodes.node(returnSite,(Fact)location));
 			if(ContextSensitive){
 				addCallRule(new PopRule<Stmt, INode<Fact>, W>(wrap(curr.fact()), curr.stmt(), wrap((Fact) location),getCallWeights().pop(curr, returnSite)));
 			}else{
-				addNormalCallFlow(curr, new Node<Stmt,Fact>(returnSite,(Fact)location));
+				addNormalCallFlow(curr, nodes.node(returnSite,(Fact)location));
 			}
 		}
 	}
@@ -627,7 +662,7 @@ public abstract class SyncPDSSolver<Stmt extends Location, Fact, Field extends L
 			INode<Node<Stmt,Fact>> n = t.getStart();
 			if(!(n instanceof GeneratedState)){
 				Node<Stmt,Fact> fact = n.fact();
-				Node<Stmt, Fact> node = new Node<Stmt,Fact>(fact.stmt(), fact.fact());
+				Node<Stmt, Fact> node = nodes.node(fact.stmt(), fact.fact());
 				setFieldContextReachable(node);
 			}
 		}
@@ -669,34 +704,37 @@ public abstract class SyncPDSSolver<Stmt extends Location, Fact, Field extends L
 		}
 	}
 
-	protected INode<Fact> wrap(Fact variable) {
-		return new SingleNode<Fact>(variable);
+	/**
+	 * @return The number of listeners registered at this solver and its call and field automata per
+	 *         listener class.
+	 */
+	public Multiset<Class<?>> getListenerCounts() {
+		Multiset<Class<?>> counts = reachedStateUpdateListeners.countByClass();
+		updateListeners.countByClass(counts);
+		counts.addAll(callAutomaton.getListenerCounts());
+		counts.addAll(fieldAutomaton.getListenerCounts());
+		return counts;
 	}
 
-	Map<Entry<INode<Fact>, Stmt>, INode<Fact>> generatedCallState = Maps.newHashMap();
+	protected INode<Fact> wrap(Fact variable) {
+		return nodes.callNode(variable);
+	}
 
 	public INode<Fact> generateCallState(final INode<Fact> d, final Stmt loc) {
-		Entry<INode<Fact>, Stmt> e = new AbstractMap.SimpleEntry<>(d, loc);
-		if (!generatedCallState.containsKey(e)) {
-			generatedCallState.put(e, new GeneratedState<Fact,Stmt>(d,loc));
-		}
-		return generatedCallState.get(e);
+		return nodes.callState(d, loc);
 	}
 
-	Map<Entry<INode<Node<Stmt,Fact>>, Field>, INode<Node<Stmt,Fact>>> generatedFieldState = Maps.newHashMap();
-
 	public INode<Node<Stmt,Fact>> generateFieldState(final INode<Node<Stmt,Fact>> d, final Field loc) {
-		Entry<INode<Node<Stmt,Fact>>, Field> e = new AbstractMap.SimpleEntry<>(d, loc);
-		if (!generatedFieldState.containsKey(e)) {
-			generatedFieldState.put(e, new GeneratedState<Node<Stmt,Fact>,Field>(d,loc));
-		}
-		return generatedFieldState.get(e);
+		return nodes.fieldState(d, loc);
 	}
 	
 
 	public void addGeneratedFieldState(GeneratedState<Node<Stmt,Fact>,Field> state) {
-		Entry<INode<Node<Stmt,Fact>>, Field> e = new AbstractMap.SimpleEntry<>(state.node(), state.location());
-		generatedFieldState.put(e,state);
+		nodes.addFieldState(state);
+	}
+
+	public NodeFactory<Stmt, Fact, Field> getNodeFactory() {
+		return nodes;
 	}
 
 	public abstract Collection<? extends State> computeSuccessor(Node<Stmt, Fact> node);
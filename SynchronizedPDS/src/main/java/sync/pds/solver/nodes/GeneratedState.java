@@ -14,13 +14,20 @@ package sync.pds.solver.nodes;
 
 public class GeneratedState<L,N> implements INode<L>{
 	
-	private INode<L> node;
-	private N loc;
+	private final INode<L> node;
+	private final N loc;
+	private final int id;
+	private int hashCode;
 
 
 	public GeneratedState(INode<L> node, N loc) {
+		this(node, loc, -1);
+	}
+
+	GeneratedState(INode<L> node, N loc, int id) {
 		this.node = node;
 		this.loc = loc;
+		this.id = id;
 	}
 	@Override
 	public L fact() {
@@ -36,16 +43,26 @@ public class GeneratedState<L,N> implements INode<L>{
 		return loc;
 	}
 
+	/**
+	 * The dense id assigned by the {@link NodeFactory} that created this state, or -1.
+	 */
+	public int id() {
+		return id;
+	}
+
 	@Override
 	public String toString() {
 		return node + " " + loc;
 	}
 	@Override
 	public int hashCode() {
+		if(hashCode != 0)
+			return hashCode;
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((loc == null) ? 0 : loc.hashCode());
 		result = prime * result + ((node == null) ? 0 : node.hashCode());
+		hashCode = result;
 		return result;
 	}
 	@Override
@@ -18,10 +18,16 @@ public class Node<Stmt, Fact> implements State{
 	final protected Stmt stmt;
 	final protected Fact variable;
 	private int hashCode;
+	private final int id;
 
 	public Node(Stmt stmt, Fact variable) {
+		this(stmt, variable, -1);
+	}
+
+	Node(Stmt stmt, Fact variable, int id) {
 		this.stmt = stmt;
 		this.variable = variable;
+		this.id = id;
 	}
 	
 	public Stmt stmt() {
@@ -32,6 +38,13 @@ public class Node<Stmt, Fact> implements State{
 		return variable;
 	}
 
+	/**
+	 * The dense id assigned by the {@link NodeFactory} that created this node, or -1.
+	 */
+	public int id() {
+		return id;
+	}
+
 	@Override
 	public int hashCode() {
 		if(hashCode != 0)
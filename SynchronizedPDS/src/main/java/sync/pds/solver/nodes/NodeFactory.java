@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package sync.pds.solver.nodes;
+
+import java.util.Map;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Table;
+
+/**
+ * Canonicalizing factory for the nodes and generated states of a {@link sync.pds.solver.SyncPDSSolver}.
+ * Equal requests return the same instance, so the automata and rule indices compare states by
+ * reference in the common case and every hash code is computed once. Lookups are keyed on the
+ * components directly and do not allocate temporary key objects.
+ *
+ * Every instance created by the factory carries a dense id (see {@link Node#id()},
+ * {@link SingleNode#id()} and {@link GeneratedState#id()}). Ids are unique per kind and factory.
+ * A factory may be shared between solvers that exchange states, it is not thread-safe.
+ */
+public class NodeFactory<Stmt, Fact, Field> {
+	private final Table<Stmt, Fact, Node<Stmt, Fact>> nodes = HashBasedTable.create();
+	private final Map<Fact, SingleNode<Fact>> callNodes = Maps.newHashMap();
+	private final Map<Node<Stmt, Fact>, SingleNode<Node<Stmt, Fact>>> fieldNodes = Maps.newHashMap();
+	private final Table<INode<Fact>, Stmt, GeneratedState<Fact, Stmt>> callStates = HashBasedTable.create();
+	private final Table<INode<Node<Stmt, Fact>>, Field, GeneratedState<Node<Stmt, Fact>, Field>> fieldStates = HashBasedTable
+			.create();
+	private int nodeIds;
+	private int singleNodeIds;
+	private int stateIds;
+
+	/**
+	 * Returns the canonical plain {@link Node} for the pair. Subclasses such as {@link PushNode} are
+	 * never returned.
+	 */
+	public Node<Stmt, Fact> node(Stmt stmt, Fact fact) {
+		if (stmt == null || fact == null)
+			return new Node<Stmt, Fact>(stmt, fact);
+		Node<Stmt, Fact> node = nodes.get(stmt, fact);
+		if (node == null) {
+			node = new Node<Stmt, Fact>(stmt, fact, nodeIds++);
+			nodes.put(stmt, fact, node);
+		}
+		return node;
+	}
+
+	public SingleNode<Fact> callNode(Fact fact) {
+		SingleNode<Fact> node = callNodes.get(fact);
+		if (node == null) {
+			node = new SingleNode<Fact>(fact, singleNodeIds++);
+			callNodes.put(fact, node);
+		}
+		return node;
+	}
+
+	/**
+	 * Returns the canonical field automaton state of the plain node (stmt, fact) of the argument.
+	 */
+	public SingleNode<Node<Stmt, Fact>> fieldNode(Node<Stmt, Fact> node) {
+		Node<Stmt, Fact> plain = node(node.stmt(), node.fact());
+		SingleNode<Node<Stmt, Fact>> res = fieldNodes.get(plain);
+		if (res == null) {
+			res = new SingleNode<Node<Stmt, Fact>>(plain, singleNodeIds++);
+			fieldNodes.put(plain, res);
+		}
+		return res;
+	}
+
+	public GeneratedState<Fact, Stmt> callState(INode<Fact> d, Stmt loc) {
+		GeneratedState<Fact, Stmt> state = callStates.get(d, loc);
+		if (state == null) {
+			state = new GeneratedState<Fact, Stmt>(d, loc, stateIds++);
+			callStates.put(d, loc, state);
+		}
+		return state;
+	}
+
+	public GeneratedState<Node<Stmt, Fact>, Field> fieldState(INode<Node<Stmt, Fact>> d, Field loc) {
+		return fieldState(d, loc, d);
+	}
+
+	/**
+	 * Returns the field state registered for (key, loc). If there is none, a state for (node, loc) is
+	 * created and registered under (key, loc).
+	 */
+	public GeneratedState<Node<Stmt, Fact>, Field> fieldState(INode<Node<Stmt, Fact>> key, Field loc,
+			INode<Node<Stmt, Fact>> node) {
+		GeneratedState<Node<Stmt, Fact>, Field> state = fieldStates.get(key, loc);
+		if (state == null) {
+			state = new GeneratedState<Node<Stmt, Fact>, Field>(node, loc, stateIds++);
+			fieldStates.put(key, loc, state);
+		}
+		return state;
+	}
+
+	/**
+	 * Registers an externally created state under its own (node, location) pair, replacing any state
+	 * registered before.
+	 */
+	public void addFieldState(GeneratedState<Node<Stmt, Fact>, Field> state) {
+		fieldStates.put(state.node(), state.location(), state);
+	}
+}
@@ -13,11 +13,17 @@ package sync.pds.solver.nodes;
 
 
 public class SingleNode<Fact> implements INode<Fact>{
-	private Fact fact;
+	private final Fact fact;
 	private int hashCode = 0;
+	private final int id;
 
 	public SingleNode(Fact fact){
+		this(fact, -1);
+	}
+
+	SingleNode(Fact fact, int id){
 		this.fact = fact;
+		this.id = id;
 	}
 
 	@Override
@@ -53,6 +59,13 @@ public class SingleNode<Fact> implements INode<Fact>{
 		return fact;
 	}
 	
+	/**
+	 * The dense id assigned by the {@link NodeFactory} that created this node, or -1.
+	 */
+	public int id() {
+		return id;
+	}
+
 	@Override
 	public String toString() {
 		return fact.toString();
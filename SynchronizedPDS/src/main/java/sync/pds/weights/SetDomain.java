@@ -23,8 +23,8 @@ import wpds.interfaces.Location;
 
 public class SetDomain<N,Stmt,Fact> extends Weight{
 
-	private static SetDomain one;
-	private static SetDomain zero;
+	private static final SetDomain one = new SetDomain("<1>");
+	private static final SetDomain zero = new SetDomain("<0>");
 	private final String rep;
 	private Collection<Node<Stmt, Fact>> nodes;
 
@@ -68,13 +68,9 @@ public class SetDomain<N,Stmt,Fact> extends Weight{
 	}
 
 	public static <N extends Location,Stmt,Fact> SetDomain<N,Stmt,Fact> one(){
-		if(one == null)
-			one = new SetDomain("<1>");
 		return one;
 	}
 	public static <N extends Location,Stmt,Fact> SetDomain<N,Stmt,Fact> zero(){
-		if(zero == null)
-			zero = new SetDomain("<0>");
 		return zero;
 	}
 
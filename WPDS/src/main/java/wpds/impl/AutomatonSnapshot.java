@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+
+/**
+ * Binary snapshot of the transitions and weights of an automaton, so that a saturated automaton
+ * can be reloaded in a later run instead of being saturated again. Nested automata are not part of
+ * the snapshot.
+ *
+ * The format starts with a magic number, the format version and the {@link SummaryCodec#id()},
+ * followed by dictionaries of the states, labels and distinct weights, each encoded once by the
+ * codec. Transitions are sorted by the ids of start, label and target and stored as variable
+ * length deltas to the previous transition, followed by the id of their weight. The initial,
+ * final and unbalanced states close the snapshot.
+ *
+ * A snapshot is loaded into an empty automaton in bulk: the transitions are added without
+ * notifying listeners. Listeners registered afterwards see them when they are replayed.
+ */
+public class AutomatonSnapshot<N extends Location, D extends State, W extends Weight> {
+	private static final int MAGIC = 0x57504153;
+	public static final int FORMAT_VERSION = 1;
+
+	private final SummaryCodec<N, D, W> codec;
+
+	public AutomatonSnapshot(SummaryCodec<N, D, W> codec) {
+		this.codec = codec;
+	}
+
+	public void save(WeightedPAutomaton<N, D, W> aut, Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			write(aut, channel);
+		}
+	}
+
+	/**
+	 * Loads the snapshot in file into aut. Returns false if the file does not exist or was written
+	 * in another format or with another codec.
+	 *
+	 * @param mapped
+	 *            Reads the file through a memory-mapped buffer instead of a stream, for snapshots
+	 *            too large to be copied through the heap. Limited to files of up to 2 GB.
+	 */
+	public boolean load(Path file, WeightedPAutomaton<N, D, W> aut, boolean mapped) throws IOException {
+		if (!file.toFile().exists())
+			return false;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return mapped ? map(channel, aut) : read(channel, aut);
+		}
+	}
+
+	/**
+	 * Writes the snapshot of aut to the channel, which is not closed.
+	 */
+	public void write(WeightedPAutomaton<N, D, W> aut, WritableByteChannel channel) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+		Map<D, Integer> states = Maps.newLinkedHashMap();
+		Map<N, Integer> labels = Maps.newLinkedHashMap();
+		Map<W, Integer> weights = Maps.newLinkedHashMap();
+		Collection<Transition<N, D>> transitions = aut.getTransitions();
+		final int[][] encoded = new int[transitions.size()][];
+		int i = 0;
+		for (Transition<N, D> t : transitions) {
+			encoded[i++] = new int[] { id(t.getStart(), states), id(t.getLabel(), labels), id(t.getTarget(), states),
+					id(aut.getWeightFor(t), weights) };
+		}
+		int initial = id(aut.getInitialState(), states);
+		int[] finals = ids(aut.getFinalState(), states);
+		int[] unbalanced = ids(aut.unbalancedStates, states);
+		Arrays.sort(encoded, new Comparator<int[]>() {
+			@Override
+			public int compare(int[] o1, int[] o2) {
+				for (int k = 0; k < 3; k++) {
+					int c = Integer.compare(o1[k], o2[k]);
+					if (c != 0)
+						return c;
+				}
+				return 0;
+			}
+		});
+
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeUTF(codec.id());
+		writeVarInt(states.size(), out);
+		for (D state : states.keySet())
+			codec.writeState(state, out);
+		writeVarInt(labels.size(), out);
+		for (N label : labels.keySet())
+			codec.writeLocation(label, out);
+		writeVarInt(weights.size(), out);
+		for (W weight : weights.keySet())
+			codec.writeWeight(weight, out);
+		writeVarInt(encoded.length, out);
+		int[] prev = { 0, 0, 0 };
+		for (int[] t : encoded) {
+			writeVarInt(t[0] - prev[0], out);
+			boolean sameStart = t[0] == prev[0];
+			writeVarInt(sameStart ? t[1] - prev[1] : t[1], out);
+			writeVarInt(sameStart && t[1] == prev[1] ? t[2] - prev[2] : t[2], out);
+			writeVarInt(t[3], out);
+			prev = t;
+		}
+		writeVarInt(initial, out);
+		writeIds(finals, out);
+		writeIds(unbalanced, out);
+		out.flush();
+	}
+
+	/**
+	 * Reads a snapshot from the channel into aut, which must not contain transitions.
+	 *
+	 * @return false if the snapshot was written in another format or with another codec.
+	 */
+	public boolean read(ReadableByteChannel channel, WeightedPAutomaton<N, D, W> aut) throws IOException {
+		return read(new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16)), aut);
+	}
+
+	/**
+	 * Reads the snapshot from a memory mapping of the channel into aut, see
+	 * {@link #read(ReadableByteChannel, WeightedPAutomaton)}.
+	 */
+	public boolean map(FileChannel channel, WeightedPAutomaton<N, D, W> aut) throws IOException {
+		long size = channel.size() - channel.position();
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("Snapshot of " + size + " bytes exceeds the maximal size of a mapping");
+		ByteBuffer buffer = channel.map(MapMode.READ_ONLY, channel.position(), size);
+		return read(new DataInputStream(new ByteBufferInputStream(buffer)), aut);
+	}
+
+	private boolean read(DataInput in, WeightedPAutomaton<N, D, W> aut) throws IOException {
+		if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !in.readUTF().equals(codec.id()))
+			return false;
+		List<D> states = Lists.newArrayList();
+		for (int i = readVarInt(in); i > 0; i--)
+			states.add(codec.readState(in));
+		List<N> labels = Lists.newArrayList();
+		for (int i = readVarInt(in); i > 0; i--)
+			labels.add(codec.readLocation(in));
+		List<W> weights = Lists.newArrayList();
+		for (int i = readVarInt(in); i > 0; i--)
+			weights.add(codec.readWeight(in));
+		int count = readVarInt(in);
+		List<Transition<N, D>> transitions = Lists.newArrayListWithCapacity(count);
+		List<W> transitionWeights = Lists.newArrayListWithCapacity(count);
+		int start = 0, label = 0, target = 0;
+		for (int i = 0; i < count; i++) {
+			int startDelta = readVarInt(in);
+			start += startDelta;
+			boolean sameStart = startDelta == 0;
+			int l = readVarInt(in);
+			label = sameStart ? label + l : l;
+			boolean sameLabel = sameStart && l == 0;
+			int t = readVarInt(in);
+			target = sameLabel ? target + t : t;
+			transitions.add(new Transition<N, D>(states.get(start), labels.get(label), states.get(target)));
+			transitionWeights.add(weights.get(readVarInt(in)));
+		}
+		D initial = states.get(readVarInt(in));
+		if (!initial.equals(aut.getInitialState()))
+			throw new IllegalArgumentException(
+					"Snapshot of an automaton with initial state " + initial + " loaded into " + aut.getInitialState());
+		aut.loadTransitions(transitions, transitionWeights);
+		for (int i = readVarInt(in); i > 0; i--)
+			aut.addFinalState(states.get(readVarInt(in)));
+		for (int i = readVarInt(in); i > 0; i--)
+			aut.addUnbalancedState(states.get(readVarInt(in)));
+		return true;
+	}
+
+	private static <T> int id(T value, Map<T, Integer> table) {
+		Integer id = table.get(value);
+		if (id == null) {
+			id = table.size();
+			table.put(value, id);
+		}
+		return id;
+	}
+
+	private static <T> int[] ids(Collection<T> values, Map<T, Integer> table) {
+		int[] res = new int[values.size()];
+		int i = 0;
+		for (T value : values)
+			res[i++] = id(value, table);
+		return res;
+	}
+
+	private static void writeIds(int[] ids, DataOutput out) throws IOException {
+		writeVarInt(ids.length, out);
+		for (int id : ids)
+			writeVarInt(id, out);
+	}
+
+	private static void writeVarInt(int value, DataOutput out) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(DataInput in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Malformed variable length int");
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		private ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (!buffer.hasRemaining())
+				return -1;
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+	}
+}
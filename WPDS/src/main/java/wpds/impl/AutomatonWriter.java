@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.impl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Set;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+
+/**
+ * Writes an automaton and its nested automata as Graphviz DOT or as JSON. The output is produced
+ * state by state, only the transitions out of the current state are held in memory.
+ *
+ * For large automata the output can be restricted to the transitions whose start state is
+ * accepted by a filter, and thinned out to every n-th of the remaining transitions.
+ */
+public class AutomatonWriter<N extends Location, D extends State, W extends Weight> {
+	private final WeightedPAutomaton<N, D, W> aut;
+	private Predicate<? super D> stateFilter = Predicates.alwaysTrue();
+	private int sampling = 1;
+	private long seen;
+
+	public AutomatonWriter(WeightedPAutomaton<N, D, W> aut) {
+		this.aut = aut;
+	}
+
+	/**
+	 * Restricts the output to transitions whose start state is accepted by the filter.
+	 */
+	public void setStateFilter(Predicate<? super D> stateFilter) {
+		this.stateFilter = stateFilter;
+	}
+
+	/**
+	 * Writes only every n-th transition that passes the state filter.
+	 */
+	public void setSampling(int n) {
+		if (n < 1)
+			throw new IllegalArgumentException("Sampling must be positive, was " + n);
+		this.sampling = n;
+	}
+
+	public void writeDot(OutputStream out) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		writeDot(writer);
+		writer.flush();
+	}
+
+	/**
+	 * Writes one digraph per automaton, in the format of {@link WeightedPAutomaton#toDotString()}.
+	 * The writer is not closed.
+	 */
+	public void writeDot(Writer out) throws IOException {
+		seen = 0;
+		writeDot(aut, out, Sets.<WeightedPAutomaton<N, D, W>>newHashSet());
+	}
+
+	private void writeDot(WeightedPAutomaton<N, D, W> a, Writer out, Set<WeightedPAutomaton<N, D, W>> visited)
+			throws IOException {
+		if (!visited.add(a)) {
+			out.write("NESTED loop: " + a.getInitialState());
+			return;
+		}
+		out.write("digraph {\n");
+		for (D source : a.getStates()) {
+			Multimap<D, String> labelsByTarget = LinkedHashMultimap.create();
+			for (Transition<N, D> t : selected(a, source)) {
+				labelsByTarget.put(t.getTarget(), escapeQuotes(t.getString().toString()) + " W: " + a.getWeightFor(t));
+			}
+			for (D target : labelsByTarget.keySet()) {
+				out.write("\t\"" + escapeQuotes(wrapIfInitialOrFinalState(a, source)) + "\"");
+				out.write(" -> \"" + escapeQuotes(wrapIfInitialOrFinalState(a, target)) + "\"");
+				out.write("[label=\"" + Joiner.on("\\n").join(labelsByTarget.get(target)) + "\"];\n");
+			}
+		}
+		out.write("}\n");
+		out.write("Transitions: " + a.transitionCount() + " Nested: " + a.nestedAutomata().size() + "\n");
+		for (WeightedPAutomaton<N, D, W> nested : a.nestedAutomata()) {
+			out.write("NESTED -> \n");
+			writeDot(nested, out, visited);
+		}
+		out.write("End nesting\n");
+	}
+
+	public void writeJson(OutputStream out) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		writeJson(writer);
+		writer.flush();
+	}
+
+	/**
+	 * Writes the automaton as a JSON object with the initial state, the final states, the
+	 * transitions and the nested automata, which are objects of the same form. The writer is not
+	 * closed.
+	 */
+	public void writeJson(Writer out) throws IOException {
+		seen = 0;
+		writeJson(aut, out, Sets.<WeightedPAutomaton<N, D, W>>newHashSet());
+	}
+
+	private void writeJson(WeightedPAutomaton<N, D, W> a, Writer out, Set<WeightedPAutomaton<N, D, W>> visited)
+			throws IOException {
+		if (!visited.add(a)) {
+			out.write("null");
+			return;
+		}
+		out.write("{\"initialState\":" + quote(a.getInitialState()));
+		out.write(",\"finalStates\":[");
+		boolean first = true;
+		for (D s : a.getFinalState()) {
+			if (!first)
+				out.write(',');
+			first = false;
+			out.write(quote(s));
+		}
+		out.write("],\"transitions\":[");
+		first = true;
+		for (D source : a.getStates()) {
+			for (Transition<N, D> t : selected(a, source)) {
+				if (!first)
+					out.write(',');
+				first = false;
+				out.write("\n{\"start\":" + quote(t.getStart()) + ",\"label\":" + quote(t.getLabel()) + ",\"target\":"
+						+ quote(t.getTarget()) + ",\"weight\":" + quote(a.getWeightFor(t)) + "}");
+			}
+		}
+		out.write("],\"nested\":[");
+		first = true;
+		for (WeightedPAutomaton<N, D, W> nested : a.nestedAutomata()) {
+			if (!first)
+				out.write(',');
+			first = false;
+			writeJson(nested, out, visited);
+		}
+		out.write("]}");
+	}
+
+	private Collection<Transition<N, D>> selected(WeightedPAutomaton<N, D, W> a, D source) {
+		if (!stateFilter.apply(source))
+			return Sets.newHashSet();
+		Collection<Transition<N, D>> out = a.getTransitionsOutOf(source);
+		if (sampling == 1)
+			return out;
+		Collection<Transition<N, D>> res = Sets.newLinkedHashSet();
+		for (Transition<N, D> t : out) {
+			if (seen++ % sampling == 0)
+				res.add(t);
+		}
+		return res;
+	}
+
+	private static String wrapIfInitialOrFinalState(WeightedPAutomaton<?, ?, ?> a, Object s) {
+		String res = a.getFinalState().contains(s) ? "TO: " + s : s.toString();
+		return s.equals(a.getInitialState()) ? "ENTRY: " + res : res;
+	}
+
+	private static String escapeQuotes(String string) {
+		return string.replace("\"", "");
+	}
+
+	private static String quote(Object o) {
+		if (o == null)
+			return "null";
+		String s = o.toString();
+		StringBuilder sb = new StringBuilder(s.length() + 2);
+		sb.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if (c < 0x20)
+					sb.append(String.format("\\u%04x", (int) c));
+				else
+					sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+}
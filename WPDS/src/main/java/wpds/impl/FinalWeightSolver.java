@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.impl;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+
+/**
+ * Computes the weights of {@link WeightedPAutomaton#getTransitionsToFinalWeights()}. The weight of
+ * a state is one if the state is unbalanced, combined, for generated states, with the weights of
+ * the transitions out of the state. The weight of a transition is the weight of its target
+ * extended with the weight of the transition. Transitions of nested automata are included.
+ *
+ * The states are solved in reverse topological order of their strongly connected components, so
+ * a component is iterated only once all its successors are final. If a total order of the weights
+ * is set, the states are instead settled in order of increasing weight, as in Dijkstra's
+ * algorithm. The result is cached until a transition weight or an unbalanced state changes.
+ */
+final class FinalWeightSolver<N extends Location, D extends State, W extends Weight> {
+	private final WeightedPAutomaton<N, D, W> aut;
+	private Comparator<? super W> order;
+	private long version = -1;
+	private Map<Transition<N, D>, W> result;
+
+	private final Set<D> states = Sets.newHashSet();
+	private final Multimap<D, Transition<N, D>> into = HashMultimap.create();
+	private final Multimap<D, Transition<N, D>> outOf = HashMultimap.create();
+	private final Map<Transition<N, D>, W> weights = Maps.newHashMap();
+	private final Map<D, W> stateWeights = Maps.newHashMap();
+
+	FinalWeightSolver(WeightedPAutomaton<N, D, W> aut) {
+		this.aut = aut;
+	}
+
+	void setOrder(Comparator<? super W> order) {
+		this.order = order;
+		this.version = -1;
+	}
+
+	Map<Transition<N, D>, W> getWeights() {
+		List<WeightedPAutomaton<N, D, W>> automata = automata();
+		long current = automata.size();
+		for (WeightedPAutomaton<N, D, W> a : automata)
+			current += a.modifications();
+		if (current != version) {
+			collect(automata);
+			if (order != null)
+				solveInOrder();
+			else
+				solveByComponents();
+			Map<Transition<N, D>, W> res = Maps.newHashMap();
+			for (Transition<N, D> t : weights.keySet())
+				res.put(t, aut.extend(stateWeights.get(t.getTarget()), weights.get(t)));
+			result = Collections.unmodifiableMap(res);
+			version = current;
+			states.clear();
+			into.clear();
+			outOf.clear();
+			weights.clear();
+			stateWeights.clear();
+		}
+		return result;
+	}
+
+	private List<WeightedPAutomaton<N, D, W>> automata() {
+		Set<WeightedPAutomaton<N, D, W>> visited = Sets.newLinkedHashSet();
+		LinkedList<WeightedPAutomaton<N, D, W>> worklist = Lists.newLinkedList();
+		worklist.add(aut);
+		while (!worklist.isEmpty()) {
+			WeightedPAutomaton<N, D, W> a = worklist.poll();
+			if (visited.add(a))
+				worklist.addAll(a.nestedAutomata());
+		}
+		return Lists.newArrayList(visited);
+	}
+
+	/**
+	 * Collects the states that reach an unbalanced state and the transitions between them.
+	 */
+	private void collect(List<WeightedPAutomaton<N, D, W>> automata) {
+		LinkedList<D> worklist = Lists.newLinkedList(aut.unbalancedStates);
+		states.addAll(aut.unbalancedStates);
+		while (!worklist.isEmpty()) {
+			D state = worklist.poll();
+			for (WeightedPAutomaton<N, D, W> a : automata) {
+				for (Transition<N, D> t : a.getTransitionsInto(state)) {
+					into.put(state, t);
+					weights.put(t, a.getWeightFor(t));
+					if (aut.isGeneratedState(t.getStart())) {
+						outOf.put(t.getStart(), t);
+						if (states.add(t.getStart()))
+							worklist.add(t.getStart());
+					}
+				}
+			}
+		}
+	}
+
+	private W stateWeight(D state) {
+		W res = aut.unbalancedStates.contains(state) ? aut.getOne() : null;
+		for (Transition<N, D> t : outOf.get(state)) {
+			W target = stateWeights.get(t.getTarget());
+			if (target == null)
+				continue;
+			W w = aut.extend(target, weights.get(t));
+			res = (res == null ? w : aut.combine(res, w));
+		}
+		return res;
+	}
+
+	private void solveByComponents() {
+		for (List<D> component : components()) {
+			if (component.size() == 1 && !selfLoop(component.get(0))) {
+				stateWeights.put(component.get(0), stateWeight(component.get(0)));
+				continue;
+			}
+			Set<D> members = Sets.newHashSet(component);
+			LinkedList<D> worklist = Lists.newLinkedList(component);
+			Set<D> scheduled = Sets.newHashSet(component);
+			while (!worklist.isEmpty()) {
+				D state = worklist.poll();
+				scheduled.remove(state);
+				W w = stateWeight(state);
+				if (w == null || w.equals(stateWeights.get(state)))
+					continue;
+				stateWeights.put(state, w);
+				for (Transition<N, D> t : into.get(state)) {
+					D pred = t.getStart();
+					if (members.contains(pred) && outOf.containsEntry(pred, t) && scheduled.add(pred))
+						worklist.add(pred);
+				}
+			}
+		}
+	}
+
+	private boolean selfLoop(D state) {
+		for (Transition<N, D> t : outOf.get(state)) {
+			if (t.getTarget().equals(state))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Settles the states in increasing order of their weights. Requires an idempotent semiring
+	 * whose combine selects the smaller weight and whose extend never yields a weight smaller than
+	 * its first operand, such as a shortest-path semiring over non-negative distances.
+	 */
+	private void solveInOrder() {
+		PriorityQueue<Entry> queue = new PriorityQueue<Entry>();
+		for (D state : aut.unbalancedStates) {
+			stateWeights.put(state, aut.getOne());
+			queue.add(new Entry(state, aut.getOne()));
+		}
+		Set<D> settled = Sets.newHashSet();
+		while (!queue.isEmpty()) {
+			D state = queue.poll().state;
+			if (!settled.add(state))
+				continue;
+			W w = stateWeights.get(state);
+			for (Transition<N, D> t : into.get(state)) {
+				D pred = t.getStart();
+				if (settled.contains(pred) || !outOf.containsEntry(pred, t))
+					continue;
+				W candidate = aut.extend(w, weights.get(t));
+				W old = stateWeights.get(pred);
+				W newWeight = (old == null ? candidate : aut.combine(old, candidate));
+				if (!newWeight.equals(old)) {
+					stateWeights.put(pred, newWeight);
+					queue.add(new Entry(pred, newWeight));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tarjan's algorithm over the transitions out of the collected states.
+	 *
+	 * @return The strongly connected components, each after all components it reaches.
+	 */
+	private List<List<D>> components() {
+		List<List<D>> res = Lists.newArrayList();
+		Map<D, Integer> index = Maps.newHashMap();
+		Map<D, Integer> lowlink = Maps.newHashMap();
+		Deque<D> stack = new ArrayDeque<D>();
+		Set<D> onStack = Sets.newHashSet();
+		Deque<Frame> calls = new ArrayDeque<Frame>();
+		for (D root : states) {
+			if (index.containsKey(root))
+				continue;
+			index.put(root, index.size());
+			lowlink.put(root, index.get(root));
+			stack.push(root);
+			onStack.add(root);
+			calls.push(new Frame(root));
+			while (!calls.isEmpty()) {
+				Frame frame = calls.peek();
+				if (frame.successors.hasNext()) {
+					D succ = frame.successors.next().getTarget();
+					if (!index.containsKey(succ)) {
+						index.put(succ, index.size());
+						lowlink.put(succ, index.get(succ));
+						stack.push(succ);
+						onStack.add(succ);
+						calls.push(new Frame(succ));
+					} else if (onStack.contains(succ)) {
+						lowlink.put(frame.state, Math.min(lowlink.get(frame.state), index.get(succ)));
+					}
+					continue;
+				}
+				calls.pop();
+				if (!calls.isEmpty()) {
+					D parent = calls.peek().state;
+					lowlink.put(parent, Math.min(lowlink.get(parent), lowlink.get(frame.state)));
+				}
+				if (lowlink.get(frame.state).equals(index.get(frame.state))) {
+					List<D> component = Lists.newArrayList();
+					D member;
+					do {
+						member = stack.pop();
+						onStack.remove(member);
+						component.add(member);
+					} while (!member.equals(frame.state));
+					res.add(component);
+				}
+			}
+		}
+		return res;
+	}
+
+	private class Frame {
+		private final D state;
+		private final Iterator<Transition<N, D>> successors;
+
+		private Frame(D state) {
+			this.state = state;
+			this.successors = outOf.get(state).iterator();
+		}
+	}
+
+	private class Entry implements Comparable<Entry> {
+		private final D state;
+		private final W weight;
+
+		private Entry(D state, W weight) {
+			this.state = state;
+			this.weight = weight;
+		}
+
+		@Override
+		public int compareTo(Entry o) {
+			return order.compare(weight, o.weight);
+		}
+	}
+}
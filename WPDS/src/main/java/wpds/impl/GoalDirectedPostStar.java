@@ -0,0 +1,365 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.impl;
+
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+import wpds.interfaces.WPAUpdateListener;
+
+/**
+ * Post* that saturates only until a set of target configurations is decided. A target is a state
+ * and a stack prefix; it is reachable once the automaton accepts a configuration of the state whose
+ * stack starts with the prefix.
+ *
+ * Without a weight order, the saturation stops as soon as all targets are reachable. With a weight
+ * order (see {@link #setWeightOrder(Comparator)}) it stops once the weights of all targets are
+ * final. The weight of a target is the combination, over all accepting paths that read its prefix,
+ * of the weights of the transitions along the path. A weight is final once no pending work can
+ * produce a smaller weight, which requires an idempotent semiring whose combine selects the smaller
+ * weight and whose extend never yields a weight smaller than either operand, such as a
+ * shortest-path semiring over non-negative distances. Targets that are not reachable are only
+ * decided when the saturation reaches its fixed point.
+ *
+ * Saturation runs on a {@link SaturationWorklist}, the one of the pushdown system if set, otherwise
+ * the one of the automaton or a new FIFO worklist. Once the targets are decided the saturation
+ * stops and the automaton is left partially saturated. {@link #run()} returns the worklist to the
+ * cancellation state it had before, its remaining work completes the automaton with the next
+ * {@link SaturationWorklist#drain()} or {@link SaturationWorklist#resume()}. The targets are re-evaluated after a number of dispatched transitions that is
+ * proportional to the cost of the previous evaluation, so the checks add amortized constant work
+ * per transition. Rules added to the pushdown system during the saturation are not considered for
+ * the finality of weights. Summaries of nested automata are not supported.
+ */
+public class GoalDirectedPostStar<N extends Location, D extends State, W extends Weight> {
+	private final WeightedPushdownSystem<N, D, W> pds;
+	private final WeightedPAutomaton<N, D, W> aut;
+	private final Map<Target, Boolean> reachable = Maps.newLinkedHashMap();
+	private final Map<Target, W> weights = Maps.newHashMap();
+	private final Set<Target> decidedTargets = Sets.newHashSet();
+	private Comparator<? super W> order;
+	private volatile SaturationWorklist<N, D, W> worklist;
+	/** Set by {@link #cancel()}, kept apart from the worklist, which is also held internally. */
+	private volatile boolean cancelled;
+	private boolean started;
+	private boolean running;
+	private boolean decided;
+	private long dispatched;
+	private long nextCheck;
+	private long visited;
+
+	public GoalDirectedPostStar(WeightedPushdownSystem<N, D, W> pds, WeightedPAutomaton<N, D, W> aut) {
+		this.pds = pds;
+		this.aut = aut;
+	}
+
+	public void addTarget(D state, List<N> stackPrefix) {
+		if (started)
+			throw new IllegalStateException("Targets must be added before the saturation is started");
+		reachable.put(new Target(state, stackPrefix), false);
+	}
+
+	/**
+	 * Decides the targets by their weights instead of their reachability, see the class comment for
+	 * the requirements on the semiring.
+	 */
+	public void setWeightOrder(Comparator<? super W> order) {
+		if (started)
+			throw new IllegalStateException("The weight order must be set before the saturation is started");
+		this.order = order;
+	}
+
+	/**
+	 * Saturates the automaton until all targets are decided, the fixed point is reached or the
+	 * saturation is cancelled.
+	 *
+	 * @return Whether all targets are decided.
+	 */
+	public boolean run() {
+		if (started)
+			throw new IllegalStateException("Goal-directed post* has already been run");
+		SaturationWorklist<N, D, W> worklist = pds.getSaturationWorklist();
+		if (worklist == null)
+			worklist = aut.getSaturationWorklist();
+		if (worklist == null)
+			worklist = SaturationWorklist.fifo();
+		aut.setSaturationWorklist(worklist);
+		aut.registerListener(new GoalListener());
+		started = true;
+		// The rules register their listeners one by one, each registration drains the worklist. Work
+		// of rules that are not yet registered is not pending, so saturation is held until all are.
+		boolean wasCancelled = worklist.isCancelled();
+		worklist.cancel();
+		this.worklist = worklist;
+		running = true;
+		try {
+			pds.poststar(aut);
+			// A cancel that arrives during the resume is seen by the GoalListener.
+			if (!cancelled)
+				worklist.resume();
+		} finally {
+			// The worklist may be shared with other saturations of the pushdown system.
+			running = false;
+			this.worklist = null;
+			worklist.setCancelled(wasCancelled);
+		}
+		if (!decided && !cancelled && worklist.isEmpty()) {
+			// At the fixed point every value is final.
+			update(null);
+			decidedTargets.addAll(reachable.keySet());
+			decided = true;
+		}
+		return decided;
+	}
+
+	/**
+	 * Stops the saturation cooperatively after the transition that is currently dispatched. Can be
+	 * called from a listener or from another thread, also before {@link #run()}, which then leaves
+	 * the automaton unsaturated. Has no effect on the worklist once run has returned.
+	 */
+	public void cancel() {
+		cancelled = true;
+		SaturationWorklist<N, D, W> w = worklist;
+		if (w != null)
+			w.cancel();
+	}
+
+	public boolean isCancelled() {
+		return cancelled && !decided;
+	}
+
+	public boolean isDecided() {
+		return decided;
+	}
+
+	public boolean isDecided(D state, List<N> stackPrefix) {
+		return decidedTargets.contains(new Target(state, stackPrefix));
+	}
+
+	public boolean isReachable(D state, List<N> stackPrefix) {
+		Boolean res = reachable.get(new Target(state, stackPrefix));
+		if (res == null)
+			throw new IllegalArgumentException("Not a target: " + state + " " + stackPrefix);
+		return res;
+	}
+
+	/**
+	 * @return The weight of the target, null if it is not reachable. Final if the target is
+	 *         decided.
+	 */
+	public W getWeight(D state, List<N> stackPrefix) {
+		if (order == null)
+			throw new IllegalStateException("Weights are only computed with a weight order");
+		isReachable(state, stackPrefix);
+		return weights.get(new Target(state, stackPrefix));
+	}
+
+	/**
+	 * Re-evaluates the undecided targets.
+	 *
+	 * @param bound
+	 *            The weight of the transition being dispatched, whose consequences are not yet
+	 *            scheduled, or null at the fixed point.
+	 */
+	private void update(W bound) {
+		visited = 0;
+		boolean all = true;
+		for (Target target : reachable.keySet()) {
+			if (decidedTargets.contains(target))
+				continue;
+			if (order == null) {
+				if (accepts(target)) {
+					reachable.put(target, true);
+					decidedTargets.add(target);
+				} else {
+					all = false;
+				}
+				continue;
+			}
+			W w = weightOf(target);
+			if (w == null) {
+				all = false;
+				continue;
+			}
+			reachable.put(target, true);
+			weights.put(target, w);
+			if (bound == null)
+				continue;
+			visited += worklist.pendingCount();
+			if (order.compare(w, bound) <= 0 && !worklist.mayProduceBelow(w, order))
+				decidedTargets.add(target);
+			else
+				all = false;
+		}
+		decided = all;
+	}
+
+	private boolean accepts(Target target) {
+		Set<Node> seen = Sets.newHashSet();
+		LinkedList<Node> worklist = Lists.newLinkedList();
+		Node start = new Node(target.state, 0);
+		seen.add(start);
+		worklist.add(start);
+		while (!worklist.isEmpty()) {
+			Node node = worklist.poll();
+			if (isAccepting(node, target))
+				return true;
+			for (Transition<N, D> t : aut.getTransitionsOutOf(node.state)) {
+				visited++;
+				Node succ = successor(node, t, target);
+				if (succ != null && seen.add(succ))
+					worklist.add(succ);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Dijkstra's algorithm over the automaton, paired with the number of symbols of the prefix read.
+	 */
+	private W weightOf(Target target) {
+		Map<Node, W> nodeWeights = Maps.newHashMap();
+		Set<Node> settled = Sets.newHashSet();
+		PriorityQueue<Entry> queue = new PriorityQueue<Entry>();
+		Node start = new Node(target.state, 0);
+		nodeWeights.put(start, aut.getOne());
+		queue.add(new Entry(start, aut.getOne()));
+		while (!queue.isEmpty()) {
+			Node node = queue.poll().node;
+			if (!settled.add(node))
+				continue;
+			W w = nodeWeights.get(node);
+			if (isAccepting(node, target))
+				return w;
+			for (Transition<N, D> t : aut.getTransitionsOutOf(node.state)) {
+				visited++;
+				Node succ = successor(node, t, target);
+				if (succ == null || settled.contains(succ))
+					continue;
+				W candidate = aut.extend(w, aut.getWeightFor(t));
+				W old = nodeWeights.get(succ);
+				W newWeight = (old == null ? candidate : aut.combine(old, candidate));
+				if (!newWeight.equals(old)) {
+					nodeWeights.put(succ, newWeight);
+					queue.add(new Entry(succ, newWeight));
+				}
+			}
+		}
+		return null;
+	}
+
+	private boolean isAccepting(Node node, Target target) {
+		return node.index == target.prefix.size() && aut.getFinalState().contains(node.state);
+	}
+
+	private Node successor(Node node, Transition<N, D> t, Target target) {
+		if (t.getLabel().equals(aut.epsilon()) || node.index == target.prefix.size())
+			return new Node(t.getTarget(), node.index);
+		if (t.getLabel().equals(target.prefix.get(node.index)))
+			return new Node(t.getTarget(), node.index + 1);
+		return null;
+	}
+
+	private class GoalListener implements WPAUpdateListener<N, D, W> {
+		@Override
+		public void onWeightAdded(Transition<N, D> t, W w, WeightedPAutomaton<N, D, W> a) {
+			// The replay of the transitions present before the saturation is not checked, their
+			// consequences are not pending yet. Work left after run completes the automaton only.
+			if (!running || decided)
+				return;
+			if (cancelled && running) {
+				worklist.cancel();
+				return;
+			}
+			if (++dispatched < nextCheck)
+				return;
+			update(w);
+			nextCheck = dispatched + visited;
+			if (decided)
+				worklist.cancel();
+		}
+	}
+
+	private class Target {
+		private final D state;
+		private final List<N> prefix;
+
+		private Target(D state, List<N> prefix) {
+			this.state = state;
+			this.prefix = Lists.newArrayList(prefix);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * state.hashCode() + prefix.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof GoalDirectedPostStar.Target))
+				return false;
+			Target other = (Target) obj;
+			return state.equals(other.state) && prefix.equals(other.prefix);
+		}
+	}
+
+	private class Node {
+		private final D state;
+		private final int index;
+
+		private Node(D state, int index) {
+			this.state = state;
+			this.index = index;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * state.hashCode() + index;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof GoalDirectedPostStar.Node))
+				return false;
+			Node other = (Node) obj;
+			return index == other.index && state.equals(other.state);
+		}
+	}
+
+	private class Entry implements Comparable<Entry> {
+		private final Node node;
+		private final W weight;
+
+		private Entry(Node node, W weight) {
+			this.node = node;
+			this.weight = weight;
+		}
+
+		@Override
+		public int compareTo(Entry o) {
+			return order.compare(weight, o.weight);
+		}
+	}
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.impl;
+
+import java.util.Collection;
+import java.util.Map;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+
+/**
+ * Default {@link TransitionStore} based on hash maps of {@link Transition} objects.
+ */
+public class HashTransitionStore<N extends Location, D extends State, W extends Weight>
+		implements TransitionStore<N, D, W> {
+	private final Map<Transition<N, D>, W> transitionToWeights = Maps.newHashMap();
+	private final Multimap<D, Transition<N, D>> transitionsOutOf = HashMultimap.create();
+	private final Multimap<D, Transition<N, D>> transitionsInto = HashMultimap.create();
+
+	@Override
+	public W getWeight(Transition<N, D> trans) {
+		return transitionToWeights.get(trans);
+	}
+
+	@Override
+	public W putWeight(Transition<N, D> trans, W weight) {
+		W oldWeight = transitionToWeights.put(trans, weight);
+		if (oldWeight == null) {
+			transitionsOutOf.put(trans.getStart(), trans);
+			transitionsInto.put(trans.getTarget(), trans);
+		}
+		return oldWeight;
+	}
+
+	@Override
+	public Collection<Transition<N, D>> getTransitions() {
+		return Lists.newArrayList(transitionToWeights.keySet());
+	}
+
+	@Override
+	public Collection<Transition<N, D>> getTransitionsOutOf(D state) {
+		return Lists.newArrayList(transitionsOutOf.get(state));
+	}
+
+	@Override
+	public Collection<Transition<N, D>> getTransitionsInto(D state) {
+		return Lists.newArrayList(transitionsInto.get(state));
+	}
+
+	@Override
+	public int size() {
+		return transitionToWeights.size();
+	}
+}
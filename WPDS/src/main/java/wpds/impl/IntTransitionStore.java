@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+
+/**
+ * Memory-compact {@link TransitionStore}. States and locations are interned to dense int ids, a
+ * transition is identified by its packed (start, label, target) key and gets a dense transition
+ * id from an open-addressing long table. Endpoints, weights and adjacency lists are kept in
+ * primitive arrays indexed by these ids. {@link Transition} objects are only materialized when
+ * they are handed out.
+ *
+ * At most 2^21 distinct states and 2^21 distinct locations can be stored per automaton.
+ */
+public class IntTransitionStore<N extends Location, D extends State, W extends Weight>
+		implements TransitionStore<N, D, W> {
+	private static final int ID_BITS = 21;
+	private static final int MAX_ID = 1 << ID_BITS;
+	private static final long ID_MASK = MAX_ID - 1;
+	private static final int[] EMPTY = new int[0];
+
+	private final Map<D, Integer> stateToId = Maps.newHashMap();
+	private final List<D> idToState = new ArrayList<>();
+	private final Map<N, Integer> labelToId = Maps.newHashMap();
+	private final List<N> idToLabel = new ArrayList<>();
+
+	private long[] keys = new long[16];
+	private int[] slots = new int[16];
+	private int size;
+
+	private int[] starts = new int[16];
+	private int[] labels = new int[16];
+	private int[] targets = new int[16];
+	private Object[] weights = new Object[16];
+
+	private int[][] outOf = new int[16][];
+	private int[] outOfSize = new int[16];
+	private int[][] into = new int[16][];
+	private int[] intoSize = new int[16];
+
+	@Override
+	public W getWeight(Transition<N, D> trans) {
+		int id = lookup(trans);
+		if (id < 0)
+			return null;
+		return (W) weights[id];
+	}
+
+	@Override
+	public W putWeight(Transition<N, D> trans, W weight) {
+		int start = internState(trans.getStart());
+		int label = internLabel(trans.getLabel());
+		int target = internState(trans.getTarget());
+		long key = pack(start, label, target);
+		int slot = findSlot(key);
+		if (slots[slot] != 0) {
+			int id = slots[slot] - 1;
+			W old = (W) weights[id];
+			weights[id] = weight;
+			return old;
+		}
+		int id = size++;
+		ensureTransitionCapacity(size);
+		starts[id] = start;
+		labels[id] = label;
+		targets[id] = target;
+		weights[id] = weight;
+		keys[slot] = key;
+		slots[slot] = id + 1;
+		append(start, id, true);
+		append(target, id, false);
+		if (size * 2 > slots.length)
+			rehash();
+		return null;
+	}
+
+	@Override
+	public Collection<Transition<N, D>> getTransitions() {
+		List<Transition<N, D>> res = new ArrayList<>(size);
+		for (int id = 0; id < size; id++)
+			res.add(materialize(id));
+		return res;
+	}
+
+	@Override
+	public Collection<Transition<N, D>> getTransitionsOutOf(D state) {
+		Integer s = stateToId.get(state);
+		if (s == null)
+			return Collections.emptyList();
+		return materialize(outOf[s], outOfSize[s]);
+	}
+
+	@Override
+	public Collection<Transition<N, D>> getTransitionsInto(D state) {
+		Integer s = stateToId.get(state);
+		if (s == null)
+			return Collections.emptyList();
+		return materialize(into[s], intoSize[s]);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	private int lookup(Transition<N, D> trans) {
+		Integer start = stateToId.get(trans.getStart());
+		Integer label = labelToId.get(trans.getLabel());
+		Integer target = stateToId.get(trans.getTarget());
+		if (start == null || label == null || target == null)
+			return -1;
+		return slots[findSlot(pack(start, label, target))] - 1;
+	}
+
+	private Transition<N, D> materialize(int id) {
+		return new Transition<N, D>(idToState.get(starts[id]), idToLabel.get(labels[id]),
+				idToState.get(targets[id]));
+	}
+
+	private List<Transition<N, D>> materialize(int[] ids, int length) {
+		List<Transition<N, D>> res = new ArrayList<>(length);
+		for (int i = 0; i < length; i++)
+			res.add(materialize(ids[i]));
+		return res;
+	}
+
+	private int internState(D state) {
+		Integer id = stateToId.get(state);
+		if (id != null)
+			return id;
+		id = idToState.size();
+		if (id >= MAX_ID)
+			throw new IllegalStateException("Too many states for IntTransitionStore: " + id);
+		stateToId.put(state, id);
+		idToState.add(state);
+		if (id >= outOf.length) {
+			int newLength = outOf.length * 2;
+			outOf = Arrays.copyOf(outOf, newLength);
+			outOfSize = Arrays.copyOf(outOfSize, newLength);
+			into = Arrays.copyOf(into, newLength);
+			intoSize = Arrays.copyOf(intoSize, newLength);
+		}
+		outOf[id] = EMPTY;
+		into[id] = EMPTY;
+		return id;
+	}
+
+	private int internLabel(N label) {
+		Integer id = labelToId.get(label);
+		if (id != null)
+			return id;
+		id = idToLabel.size();
+		if (id >= MAX_ID)
+			throw new IllegalStateException("Too many locations for IntTransitionStore: " + id);
+		labelToId.put(label, id);
+		idToLabel.add(label);
+		return id;
+	}
+
+	private void append(int state, int transitionId, boolean out) {
+		int[][] lists = out ? outOf : into;
+		int[] sizes = out ? outOfSize : intoSize;
+		int[] list = lists[state];
+		int length = sizes[state];
+		if (length == list.length) {
+			list = Arrays.copyOf(list, Math.max(4, length * 2));
+			lists[state] = list;
+		}
+		list[length] = transitionId;
+		sizes[state] = length + 1;
+	}
+
+	private void ensureTransitionCapacity(int capacity) {
+		if (capacity <= starts.length)
+			return;
+		int newLength = starts.length * 2;
+		starts = Arrays.copyOf(starts, newLength);
+		labels = Arrays.copyOf(labels, newLength);
+		targets = Arrays.copyOf(targets, newLength);
+		weights = Arrays.copyOf(weights, newLength);
+	}
+
+	private int findSlot(long key) {
+		int mask = slots.length - 1;
+		int slot = hash(key) & mask;
+		while (slots[slot] != 0 && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void rehash() {
+		long[] oldKeys = keys;
+		int[] oldSlots = slots;
+		keys = new long[oldKeys.length * 2];
+		slots = new int[oldSlots.length * 2];
+		for (int i = 0; i < oldSlots.length; i++) {
+			if (oldSlots[i] == 0)
+				continue;
+			int slot = findSlot(oldKeys[i]);
+			keys[slot] = oldKeys[i];
+			slots[slot] = oldSlots[i];
+		}
+	}
+
+	private static long pack(int start, int label, int target) {
+		return ((start & ID_MASK) << (2 * ID_BITS)) | ((label & ID_MASK) << ID_BITS) | (target & ID_MASK);
+	}
+
+	private static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+}
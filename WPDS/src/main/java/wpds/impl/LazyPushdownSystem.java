@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.impl;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import wpds.interfaces.Location;
+import wpds.interfaces.RuleProvider;
+import wpds.interfaces.State;
+import wpds.interfaces.WPAUpdateListener;
+import wpds.interfaces.WPDSUpdateListener;
+import wpds.wildcard.Wildcard;
+
+/**
+ * Pushdown system whose rules are generated on demand by a {@link RuleProvider}. During post*, the
+ * provider is asked for the rules starting in a configuration when a transition with its state and
+ * label first appears in the automaton, so only the part of the system that is reachable from the
+ * initial automaton is ever built. Transitions out of generated states and epsilon transitions are
+ * not expanded.
+ *
+ * The generated rules are passed to the saturation of the automaton that reached the configuration,
+ * they are not added to the rule sets of this system. They are kept in a cache of bounded size, which
+ * serves other automata that reach the same configuration and {@link #getRulesStarting(State, Location)}.
+ *
+ * Rules added explicitly through {@link #addRule(Rule)} are applied as in
+ * {@link WeightedPushdownSystem}. All other queries, and pre*, only see the explicitly added rules.
+ * The parallel post* falls back to the sequential one.
+ */
+public class LazyPushdownSystem<N extends Location, D extends State, W extends Weight>
+		extends WeightedPushdownSystem<N, D, W> {
+	public static final int DEFAULT_MAXIMUM_CACHE_SIZE = 10000;
+
+	private final RuleProvider<N, D, W> provider;
+	private final Cache<Configuration<N, D>, List<Rule<N, D, W>>> cache;
+
+	public LazyPushdownSystem(RuleProvider<N, D, W> provider) {
+		this(provider, DEFAULT_MAXIMUM_CACHE_SIZE);
+	}
+
+	/**
+	 * @param maximumCacheSize
+	 *            The maximal number of configurations whose generated rules are cached.
+	 */
+	public LazyPushdownSystem(RuleProvider<N, D, W> provider, long maximumCacheSize) {
+		this.provider = provider;
+		this.cache = CacheBuilder.newBuilder().maximumSize(maximumCacheSize).build();
+	}
+
+	@Override
+	void saturate(WeightedPAutomaton<N, D, W> initialAutomaton, PostStar<N, D, W> postStar) {
+		super.saturate(initialAutomaton, postStar);
+		initialAutomaton.registerListener(new RuleExpansion(postStar.getUpdateListener()));
+	}
+
+	/**
+	 * The parallel post* needs all rules before the saturation starts, the automaton is therefore
+	 * saturated sequentially, as by {@link #poststar(WeightedPAutomaton)}.
+	 */
+	@Override
+	public void poststar(WeightedPAutomaton<N, D, W> initialAutomaton, ForkJoinPool pool) {
+		poststar(initialAutomaton);
+	}
+
+	/**
+	 * @return The explicitly added rules and, unless string is a wildcard, the generated rules.
+	 */
+	@Override
+	public Set<Rule<N, D, W>> getRulesStarting(D start, N string) {
+		Set<Rule<N, D, W>> result = super.getRulesStarting(start, string);
+		if (!(string instanceof Wildcard))
+			result.addAll(provided(start, string));
+		return result;
+	}
+
+	/**
+	 * @return The number of configurations whose generated rules are currently cached.
+	 */
+	public long getCacheSize() {
+		return cache.size();
+	}
+
+	private List<Rule<N, D, W>> provided(D state, N label) {
+		Configuration<N, D> key = new Configuration<N, D>(label, state);
+		List<Rule<N, D, W>> rules = cache.getIfPresent(key);
+		if (rules == null) {
+			rules = Lists.newArrayList(provider.getRulesStarting(state, label));
+			cache.put(key, rules);
+		}
+		return rules;
+	}
+
+	/**
+	 * Passes the generated rules of each configuration reached in one automaton to its saturation.
+	 */
+	private class RuleExpansion implements WPAUpdateListener<N, D, W> {
+		private final Set<Configuration<N, D>> expanded = Sets.newHashSet();
+		private final WPDSUpdateListener<N, D, W> saturation;
+
+		private RuleExpansion(WPDSUpdateListener<N, D, W> saturation) {
+			this.saturation = saturation;
+		}
+
+		@Override
+		public void onWeightAdded(Transition<N, D> t, W w, WeightedPAutomaton<N, D, W> aut) {
+			D state = t.getStart();
+			N label = t.getLabel();
+			if (label.equals(aut.epsilon()) || aut.isGeneratedState(state))
+				return;
+			if (!expanded.add(new Configuration<N, D>(label, state)))
+				return;
+			for (Rule<N, D, W> rule : provided(state, label))
+				saturation.onRuleAdded(rule);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.impl;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+
+/**
+ * Append-only, duplicate-free list of listeners that can be iterated while listeners are added.
+ * Elements are never moved or overwritten: an append either writes behind the current size or
+ * copies the elements into a larger array. An iteration over the array and size returned by
+ * {@link #elements()} and {@link #size()} at one point in time therefore visits exactly the
+ * listeners registered at that point, without copying the list. Listeners added during the
+ * iteration are not visited and have to be served by a replay, as the automata do on
+ * registration. {@link #clear()} starts a new array and leaves running iterations untouched.
+ *
+ * Most lists hold a handful of listeners. Up to {@link #INDEX_THRESHOLD} elements, duplicates are
+ * found by a linear scan that only calls equals on elements of the same class, so registering a
+ * listener does not compute its hash code. Larger lists build a hash index once.
+ */
+public final class ListenerList<L> {
+	static final int INDEX_THRESHOLD = 8;
+	private static final Object[] EMPTY = new Object[0];
+
+	private Object[] elements = EMPTY;
+	private int size;
+	private Set<L> index;
+
+	/**
+	 * @return false if the listener is already contained.
+	 */
+	public boolean add(L listener) {
+		if (index != null) {
+			if (!index.add(listener))
+				return false;
+		} else {
+			if (scan(listener))
+				return false;
+			if (size == INDEX_THRESHOLD) {
+				index = Sets.newHashSetWithExpectedSize(2 * INDEX_THRESHOLD);
+				for (int i = 0; i < size; i++)
+					index.add((L) elements[i]);
+				index.add(listener);
+			}
+		}
+		if (size == elements.length)
+			elements = Arrays.copyOf(elements, Math.max(2, size * 2));
+		elements[size++] = listener;
+		return true;
+	}
+
+	public boolean contains(L listener) {
+		if (index != null)
+			return index.contains(listener);
+		return scan(listener);
+	}
+
+	private boolean scan(L listener) {
+		Class<?> kind = listener.getClass();
+		for (int i = 0; i < size; i++) {
+			Object e = elements[i];
+			if (e == listener || (e.getClass() == kind && e.equals(listener)))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * The current backing array. Only the first {@link #size()} entries are valid.
+	 */
+	public Object[] elements() {
+		return elements;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Adds the number of contained listeners per listener class to counts.
+	 */
+	public void countByClass(Multiset<Class<?>> counts) {
+		for (int i = 0; i < size; i++)
+			counts.add(elements[i].getClass());
+	}
+
+	public void clear() {
+		elements = EMPTY;
+		size = 0;
+		index = null;
+	}
+}
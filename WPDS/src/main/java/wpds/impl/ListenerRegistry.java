@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.impl;
+
+import java.util.Collection;
+import java.util.Map;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+
+/**
+ * Listeners grouped by a key, typically the automaton state or the statement they observe. A
+ * replacement for a HashMultimap of listeners: each key maps to one {@link ListenerList}, so a
+ * registered listener costs one array slot instead of a hashed multimap entry, and duplicates are
+ * only searched among the listeners of the same key and class.
+ */
+public final class ListenerRegistry<K, L> {
+	private final Map<K, ListenerList<L>> listeners = Maps.newHashMap();
+	private int size;
+
+	/**
+	 * @return false if the listener is already registered for the key.
+	 */
+	public boolean put(K key, L listener) {
+		ListenerList<L> forKey = listeners.get(key);
+		if (forKey == null) {
+			forKey = new ListenerList<>();
+			listeners.put(key, forKey);
+		}
+		if (!forKey.add(listener))
+			return false;
+		size++;
+		return true;
+	}
+
+	/**
+	 * @return The listeners registered for the key, or null if there are none. The list must not be
+	 *         modified by the caller.
+	 */
+	public ListenerList<L> get(K key) {
+		return listeners.get(key);
+	}
+
+	/**
+	 * @return A snapshot of the listener lists of all keys.
+	 */
+	public Collection<ListenerList<L>> lists() {
+		return Lists.newArrayList(listeners.values());
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return The number of registered listeners per listener class.
+	 */
+	public Multiset<Class<?>> countByClass() {
+		Multiset<Class<?>> counts = HashMultiset.create();
+		for (ListenerList<L> forKey : listeners.values())
+			forKey.countByClass(counts);
+		return counts;
+	}
+
+	public void clear() {
+		listeners.clear();
+		size = 0;
+	}
+}
@@ -0,0 +1,334 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+
+/**
+ * {@link TransitionStore} that keeps the transitions outside of the Java heap. Each transition is
+ * a fixed-width record of six ints (start, label, target, weight, next transition out of the
+ * start, next transition into the target) in a direct buffer or, if a file is given, in a
+ * memory-mapped file. The adjacency lists are threaded through the records, their heads and the
+ * open-addressing index of the transitions are direct int buffers.
+ *
+ * States, locations and weights stay on the heap and are referred to by dense int ids. Equal
+ * weights share one id, and weights are kept for the lifetime of the store, so this store suits
+ * semirings with few distinct weights.
+ *
+ * The {@link TransitionStore} methods hand out snapshots of materialized {@link Transition}s. The
+ * adjacency can be walked without allocation through the id based methods:
+ *
+ * <pre>
+ * for (int t = store.firstOutOf(state); t >= 0; t = store.nextOutOf(t))
+ * 	store.getTarget(t) ...
+ * </pre>
+ *
+ * At most 2^31 / 24 transitions can be stored per automaton.
+ */
+public class OffHeapTransitionStore<N extends Location, D extends State, W extends Weight>
+		implements TransitionStore<N, D, W>, Closeable {
+	private static final int RECORD_INTS = 6;
+	private static final int RECORD_BYTES = RECORD_INTS * 4;
+	private static final int START = 0, LABEL = 1, TARGET = 2, WEIGHT = 3, NEXT_OUT = 4, NEXT_IN = 5;
+	private static final int MAX_TRANSITIONS = Integer.MAX_VALUE / RECORD_BYTES;
+
+	private final Map<D, Integer> stateToId = Maps.newHashMap();
+	private final List<D> idToState = new ArrayList<>();
+	private final Map<N, Integer> labelToId = Maps.newHashMap();
+	private final List<N> idToLabel = new ArrayList<>();
+	private final Map<W, Integer> weightToId = Maps.newHashMap();
+	private final List<W> idToWeight = new ArrayList<>();
+
+	private final FileChannel file;
+	private ByteBuffer records;
+	private ByteBuffer outHead;
+	private ByteBuffer inHead;
+	/** Transition id + 1 per slot, 0 for free slots. */
+	private ByteBuffer slots;
+	private int slotCount;
+	private int size;
+
+	public OffHeapTransitionStore() {
+		this.file = null;
+		init();
+	}
+
+	/**
+	 * Keeps the transition records in the given file, which is created or truncated. The file is
+	 * closed by {@link #close()}.
+	 */
+	public OffHeapTransitionStore(Path file) throws IOException {
+		this.file = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		init();
+	}
+
+	private void init() {
+		records = allocateRecords(16);
+		outHead = allocate(16 * 4);
+		inHead = allocate(16 * 4);
+		slotCount = 32;
+		slots = allocate(slotCount * 4);
+	}
+
+	@Override
+	public W getWeight(Transition<N, D> trans) {
+		Integer start = stateToId.get(trans.getStart());
+		Integer label = labelToId.get(trans.getLabel());
+		Integer target = stateToId.get(trans.getTarget());
+		if (start == null || label == null || target == null)
+			return null;
+		int id = slots.getInt(findSlot(start, label, target) * 4) - 1;
+		return id < 0 ? null : getWeight(id);
+	}
+
+	@Override
+	public W putWeight(Transition<N, D> trans, W weight) {
+		int start = internState(trans.getStart());
+		int label = internLabel(trans.getLabel());
+		int target = internState(trans.getTarget());
+		int w = internWeight(weight);
+		int slot = findSlot(start, label, target);
+		int existing = slots.getInt(slot * 4) - 1;
+		if (existing >= 0) {
+			W old = getWeight(existing);
+			set(existing, WEIGHT, w);
+			return old;
+		}
+		if (size == MAX_TRANSITIONS)
+			throw new IllegalStateException("Too many transitions for OffHeapTransitionStore: " + size);
+		int id = size++;
+		if (size * RECORD_BYTES > records.capacity())
+			records = growRecords();
+		set(id, START, start);
+		set(id, LABEL, label);
+		set(id, TARGET, target);
+		set(id, WEIGHT, w);
+		set(id, NEXT_OUT, outHead.getInt(start * 4));
+		set(id, NEXT_IN, inHead.getInt(target * 4));
+		outHead.putInt(start * 4, id);
+		inHead.putInt(target * 4, id);
+		slots.putInt(slot * 4, id + 1);
+		if (size * 2 > slotCount)
+			rehash();
+		return null;
+	}
+
+	@Override
+	public Collection<Transition<N, D>> getTransitions() {
+		List<Transition<N, D>> res = new ArrayList<>(size);
+		for (int id = 0; id < size; id++)
+			res.add(getTransition(id));
+		return res;
+	}
+
+	@Override
+	public Collection<Transition<N, D>> getTransitionsOutOf(D state) {
+		List<Transition<N, D>> res = new ArrayList<>();
+		for (int id = firstOutOf(state); id >= 0; id = nextOutOf(id))
+			res.add(getTransition(id));
+		return res;
+	}
+
+	@Override
+	public Collection<Transition<N, D>> getTransitionsInto(D state) {
+		List<Transition<N, D>> res = new ArrayList<>();
+		for (int id = firstInto(state); id >= 0; id = nextInto(id))
+			res.add(getTransition(id));
+		return res;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return The id of a transition out of the state, or -1 if there is none.
+	 */
+	public int firstOutOf(D state) {
+		Integer s = stateToId.get(state);
+		return s == null ? -1 : outHead.getInt(s * 4);
+	}
+
+	/**
+	 * @return The id of the next transition out of the start of transition id, or -1.
+	 */
+	public int nextOutOf(int id) {
+		return get(id, NEXT_OUT);
+	}
+
+	/**
+	 * @return The id of a transition into the state, or -1 if there is none.
+	 */
+	public int firstInto(D state) {
+		Integer s = stateToId.get(state);
+		return s == null ? -1 : inHead.getInt(s * 4);
+	}
+
+	/**
+	 * @return The id of the next transition into the target of transition id, or -1.
+	 */
+	public int nextInto(int id) {
+		return get(id, NEXT_IN);
+	}
+
+	public D getStart(int id) {
+		return idToState.get(get(id, START));
+	}
+
+	public N getLabel(int id) {
+		return idToLabel.get(get(id, LABEL));
+	}
+
+	public D getTarget(int id) {
+		return idToState.get(get(id, TARGET));
+	}
+
+	public W getWeight(int id) {
+		return idToWeight.get(get(id, WEIGHT));
+	}
+
+	public Transition<N, D> getTransition(int id) {
+		return new Transition<N, D>(getStart(id), getLabel(id), getTarget(id));
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (file != null)
+			file.close();
+	}
+
+	private int get(int id, int field) {
+		return records.getInt(id * RECORD_BYTES + field * 4);
+	}
+
+	private void set(int id, int field, int value) {
+		records.putInt(id * RECORD_BYTES + field * 4, value);
+	}
+
+	private int internState(D state) {
+		Integer id = stateToId.get(state);
+		if (id != null)
+			return id;
+		id = idToState.size();
+		stateToId.put(state, id);
+		idToState.add(state);
+		if ((id + 1) * 4 > outHead.capacity()) {
+			outHead = grow(outHead);
+			inHead = grow(inHead);
+		}
+		outHead.putInt(id * 4, -1);
+		inHead.putInt(id * 4, -1);
+		return id;
+	}
+
+	private int internLabel(N label) {
+		Integer id = labelToId.get(label);
+		if (id != null)
+			return id;
+		id = idToLabel.size();
+		labelToId.put(label, id);
+		idToLabel.add(label);
+		return id;
+	}
+
+	private int internWeight(W weight) {
+		Integer id = weightToId.get(weight);
+		if (id != null)
+			return id;
+		id = idToWeight.size();
+		weightToId.put(weight, id);
+		idToWeight.add(weight);
+		return id;
+	}
+
+	private int findSlot(int start, int label, int target) {
+		int mask = slotCount - 1;
+		int slot = hash(start, label, target) & mask;
+		while (true) {
+			int id = slots.getInt(slot * 4) - 1;
+			if (id < 0 || (get(id, START) == start && get(id, LABEL) == label && get(id, TARGET) == target))
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private void rehash() {
+		ByteBuffer old = slots;
+		int oldCount = slotCount;
+		slotCount *= 2;
+		slots = allocate(slotCount * 4);
+		for (int i = 0; i < oldCount; i++) {
+			int entry = old.getInt(i * 4);
+			if (entry == 0)
+				continue;
+			int id = entry - 1;
+			slots.putInt(findSlot(get(id, START), get(id, LABEL), get(id, TARGET)) * 4, entry);
+		}
+	}
+
+	private ByteBuffer allocateRecords(int count) {
+		if (file == null)
+			return allocate(count * RECORD_BYTES);
+		try {
+			return file.map(MapMode.READ_WRITE, 0, (long) count * RECORD_BYTES);
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not map transition records", e);
+		}
+	}
+
+	private ByteBuffer growRecords() {
+		int count = (int) Math.min((long) records.capacity() / RECORD_BYTES * 2, MAX_TRANSITIONS);
+		if (file != null)
+			// A larger mapping of the same file already contains the existing records.
+			return allocateRecords(count);
+		ByteBuffer res = allocate(count * RECORD_BYTES);
+		records.clear();
+		res.put(records);
+		res.clear();
+		return res;
+	}
+
+	private static ByteBuffer grow(ByteBuffer buffer) {
+		ByteBuffer res = allocate(buffer.capacity() * 2);
+		buffer.clear();
+		res.put(buffer);
+		res.clear();
+		return res;
+	}
+
+	private static ByteBuffer allocate(int bytes) {
+		return ByteBuffer.allocateDirect(bytes);
+	}
+
+	private static int hash(int start, int label, int target) {
+		int h = start * 0x9E3779B1 + label;
+		h = h * 0x9E3779B1 + target;
+		return h ^ (h >>> 16);
+	}
+}
@@ -23,6 +23,11 @@ public abstract class PAutomaton<N extends Location, D extends State> extends We
 		super(initialState);
 	}
 
+	@Override
+	protected TransitionStore<N, D, NoWeight> createTransitionStore() {
+		return new UnweightedTransitionStore<N, D, NoWeight>();
+	}
+
 	@Override
 	public NoWeight getOne() {
 		return NoWeight.NO_WEIGHT_ONE;
@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.impl;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import wpds.interfaces.Empty;
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+import wpds.wildcard.ExclusionWildcard;
+import wpds.wildcard.Wildcard;
+
+/**
+ * One-shot post* saturation on a {@link ForkJoinPool}. Computes the same automaton as
+ * {@link PostStar} for the rules the pushdown system contains when the saturation starts, but
+ * processes transitions concurrently: every transition whose weight changes becomes a task that
+ * applies the rules starting in its source state. Transitions and weights are kept in concurrent
+ * maps indexed by state, weights are combined with compare-and-set, so the fixpoint does not
+ * depend on the order in which the tasks run as long as the semiring is idempotent and monotone.
+ *
+ * The result is written into the automaton on the calling thread after the saturation has
+ * terminated, listeners of the automaton are therefore notified sequentially, and only with the
+ * final weights. Unlike {@link PostStar}, rules added to the pushdown system afterwards are not
+ * applied. Nested automata are not supported, {@link #poststar(WeightedPushdownSystem, WeightedPAutomaton)}
+ * falls back to the sequential engine for them.
+ *
+ * Intermediate states are created on the calling thread before the saturation starts. Weights,
+ * {@link WeightedPAutomaton#isGeneratedState(State)} and {@link NormalRule#canBeApplied(Transition, Weight)}
+ * are used from the worker threads and must be free of side effects.
+ */
+public class ParallelPostStar<N extends Location, D extends State, W extends Weight> {
+	private final ForkJoinPool pool;
+	private WeightedPushdownSystem<N, D, W> pds;
+	private WeightedPAutomaton<N, D, W> fa;
+	private final Map<PushRule<N, D, W>, D> intermediateStates = Maps.newHashMap();
+	private final ConcurrentMap<Transition<N, D>, W> weights = new ConcurrentHashMap<>();
+	private final ConcurrentMap<D, Set<Transition<N, D>>> transitionsOutOf = new ConcurrentHashMap<>();
+	/**
+	 * Weights of the epsilon transitions introduced by pop rules, indexed by their target state.
+	 * Only the pop contributions are propagated transitively, as by {@link PostStar}.
+	 */
+	private final ConcurrentMap<Transition<N, D>, W> popWeights = new ConcurrentHashMap<>();
+	private final ConcurrentMap<D, Set<Transition<N, D>>> popTransitionsInto = new ConcurrentHashMap<>();
+	/**
+	 * Pop rules that also apply to the out transitions of a state reached by an {@link Empty} label.
+	 */
+	private final ConcurrentMap<D, Set<PopRule<N, D, W>>> forwardedPops = new ConcurrentHashMap<>();
+	private final ConcurrentMap<D, Set<Entry<N, N>>> pushSites = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Entry<D, Transition<N, D>>, Boolean> unbalancedPops = new ConcurrentHashMap<>();
+
+	public ParallelPostStar(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	public void poststar(WeightedPushdownSystem<N, D, W> pds, WeightedPAutomaton<N, D, W> initialAutomaton) {
+		if (initialAutomaton.nested()) {
+			pds.poststar(initialAutomaton);
+			return;
+		}
+		this.pds = pds;
+		this.fa = initialAutomaton;
+		fa.setInitialAutomaton(fa);
+		for (PushRule<N, D, W> rule : pds.getPushRules()) {
+			intermediateStates.put(rule, fa.createState(rule.getS2(), rule.getL2()));
+		}
+		final Set<Transition<N, D>> initial = Sets.newHashSet();
+		for (Transition<N, D> t : Lists.newArrayList(fa.getTransitions())) {
+			W w = fa.getWeightFor(t);
+			if (w != null && weights.putIfAbsent(t, w) == null) {
+				index(transitionsOutOf, t.getStart(), t);
+				initial.add(t);
+			}
+		}
+		pool.invoke(new CountedCompleter<Void>() {
+			@Override
+			public void compute() {
+				for (Transition<N, D> t : initial) {
+					schedule(this, t);
+				}
+				tryComplete();
+			}
+		});
+		writeBack();
+	}
+
+	private void writeBack() {
+		for (Entry<Transition<N, D>, W> e : weights.entrySet()) {
+			fa.addWeightForTransition(e.getKey(), e.getValue());
+		}
+		for (Entry<D, Transition<N, D>> e : unbalancedPops.keySet()) {
+			fa.unbalancedPop(e.getKey(), e.getValue(), weights.get(e.getValue()));
+		}
+		for (Entry<Transition<N, D>, W> e : weights.entrySet()) {
+			Transition<N, D> t = e.getKey();
+			if (!t.getLabel().equals(fa.epsilon()))
+				continue;
+			Set<Entry<N, N>> sites = pushSites.get(t.getTarget());
+			if (sites == null)
+				continue;
+			for (Entry<N, N> site : sites) {
+				fa.reconnectPush(site.getKey(), site.getValue(), t.getStart(), e.getValue());
+			}
+		}
+	}
+
+	private void schedule(CountedCompleter<?> parent, final Transition<N, D> t) {
+		parent.addToPendingCount(1);
+		new CountedCompleter<Void>(parent) {
+			@Override
+			public void compute() {
+				process(this, t);
+				tryComplete();
+			}
+		}.fork();
+	}
+
+	private void process(CountedCompleter<?> task, Transition<N, D> t) {
+		W weight = weights.get(t);
+		D p = t.getStart();
+		N label = t.getLabel();
+		for (Rule<N, D, W> rule : pds.getRulesStarting(p, label)) {
+			if (rule instanceof NormalRule) {
+				applyNormal(task, (NormalRule<N, D, W>) rule, t, weight);
+			} else if (rule instanceof PushRule) {
+				applyPush(task, (PushRule<N, D, W>) rule, t, weight);
+			}
+		}
+		for (Rule<N, D, W> rule : pds.getRuleIndex().getRulesStartingIn(p)) {
+			if (rule instanceof PopRule)
+				applyPop(task, (PopRule<N, D, W>) rule, t, weight);
+		}
+		Set<PopRule<N, D, W>> forwarded = forwardedPops.get(p);
+		if (forwarded != null) {
+			for (PopRule<N, D, W> rule : forwarded)
+				applyPop(task, rule, t, weight);
+		}
+		if (label.equals(fa.epsilon())) {
+			W popWeight = popWeights.get(t);
+			Set<Transition<N, D>> out = transitionsOutOf.get(t.getTarget());
+			if (popWeight != null && out != null) {
+				for (Transition<N, D> succ : out) {
+					if (!succ.getLabel().equals(fa.epsilon()))
+						update(task, new Transition<N, D>(p, succ.getLabel(), succ.getTarget()),
+								fa.extend(weights.get(succ), popWeight), false);
+				}
+			}
+		} else {
+			Set<Transition<N, D>> pops = popTransitionsInto.get(p);
+			if (pops != null) {
+				for (Transition<N, D> pop : pops) {
+					update(task, new Transition<N, D>(pop.getStart(), label, t.getTarget()),
+							fa.extend(weight, popWeights.get(pop)), false);
+				}
+			}
+		}
+	}
+
+	private void applyNormal(CountedCompleter<?> task, NormalRule<N, D, W> rule, Transition<N, D> t, W weight) {
+		N l2 = rule.getL2();
+		if (l2 instanceof ExclusionWildcard) {
+			ExclusionWildcard<N> ex = (ExclusionWildcard<N>) l2;
+			if (t.getString().equals(ex.excludes()))
+				return;
+		}
+		if (l2 instanceof Wildcard) {
+			l2 = t.getString();
+			if (l2.equals(fa.epsilon()))
+				return;
+		}
+		if (!rule.canBeApplied(t, weight))
+			return;
+		update(task, new Transition<N, D>(rule.getS2(), l2, t.getTarget()),
+				fa.extend(weight, rule.getWeight()), false);
+	}
+
+	private void applyPush(CountedCompleter<?> task, PushRule<N, D, W> rule, Transition<N, D> t, W weight) {
+		if (rule.getCallSite() instanceof Wildcard && t.getLabel().equals(fa.epsilon()))
+			return;
+		D irState = intermediateStates.get(rule);
+		N transitionLabel = (rule.getCallSite() instanceof Wildcard ? t.getLabel() : rule.getCallSite());
+		index(pushSites, irState, Maps.immutableEntry(rule.getL1(), transitionLabel));
+		update(task, new Transition<N, D>(irState, transitionLabel, t.getTarget()),
+				fa.extend(weight, rule.getWeight()), false);
+		update(task, new Transition<N, D>(rule.getS2(), rule.getL2(), irState), fa.getOne(), false);
+	}
+
+	private void applyPop(CountedCompleter<?> task, PopRule<N, D, W> rule, Transition<N, D> t, W weight) {
+		if (t.getLabel().equals(rule.getL1())) {
+			D target = t.getTarget();
+			boolean unbalanced = fa.isUnbalancedState(target);
+			if (fa.isGeneratedState(target) || unbalanced) {
+				if (rule.getL1() instanceof Empty)
+					throw new RuntimeException("IllegalState");
+				update(task, new Transition<N, D>(rule.getS2(), fa.epsilon(), target),
+						fa.extend(weight, rule.getWeight()), true);
+			}
+			if (unbalanced)
+				unbalancedPops.putIfAbsent(Maps.immutableEntry(rule.getS2(), t), Boolean.TRUE);
+		}
+		if (t.getLabel() instanceof Empty && index(forwardedPops, t.getTarget(), rule)) {
+			Set<Transition<N, D>> out = transitionsOutOf.get(t.getTarget());
+			if (out == null)
+				return;
+			for (Transition<N, D> succ : out) {
+				applyPop(task, rule, succ, weights.get(succ));
+			}
+		}
+	}
+
+	private void update(CountedCompleter<?> task, Transition<N, D> t, W weight, boolean pop) {
+		if (t.getStart().equals(t.getTarget()) && t.getLabel().equals(fa.epsilon()))
+			return;
+		boolean changed = false;
+		if (pop && combine(popWeights, t, weight)) {
+			index(popTransitionsInto, t.getTarget(), t);
+			changed = true;
+		}
+		if (combine(weights, t, weight)) {
+			index(transitionsOutOf, t.getStart(), t);
+			changed = true;
+		}
+		if (changed)
+			schedule(task, t);
+	}
+
+	/**
+	 * Combines weight into the entry of t.
+	 *
+	 * @return true if the stored weight changed.
+	 */
+	private boolean combine(ConcurrentMap<Transition<N, D>, W> map, Transition<N, D> t, W weight) {
+		while (true) {
+			W old = map.get(t);
+			if (old == null) {
+				if (map.putIfAbsent(t, weight) == null)
+					return true;
+				continue;
+			}
+			if (old == weight)
+				return false;
+			W combined = fa.combine(old, weight);
+			if (combined.equals(old))
+				return false;
+			if (map.replace(t, old, combined))
+				return true;
+		}
+	}
+
+	private static <K, V> boolean index(ConcurrentMap<K, Set<V>> index, K key, V value) {
+		Set<V> values = index.get(key);
+		if (values == null) {
+			Set<V> created = ConcurrentHashMap.newKeySet();
+			values = index.putIfAbsent(key, created);
+			if (values == null)
+				values = created;
+		}
+		return values.add(value);
+	}
+}
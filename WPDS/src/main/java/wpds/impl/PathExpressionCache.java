@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.impl;
+
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+
+import pathexpression.IRegEx;
+import pathexpression.PathExpressionComputer;
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+
+/**
+ * Path expressions of an automaton, cached per source node of the path-expression graph. The
+ * graph of {@link WeightedPAutomaton#getEdges()} reverses the transitions, so the nodes reachable
+ * from a source are the states that reach the source in the automaton through non-epsilon
+ * transitions.
+ *
+ * A {@link PathExpressionComputer} works on a snapshot of the graph and solves all targets of a
+ * source in one pass, so all expressions of a source are taken from the same computer. When a
+ * transition is added, the computer is dropped, but only the sources whose reachable nodes
+ * contain the target of the transition lose their cached expressions: for all other sources the
+ * new edge is not on any path.
+ */
+final class PathExpressionCache<N extends Location, D extends State> {
+	private final WeightedPAutomaton<N, D, ?> aut;
+	private PathExpressionComputer<D, N> computer;
+	private final Map<D, Map<D, IRegEx<N>>> expressions = Maps.newHashMap();
+	private final Map<D, Set<D>> reachable = Maps.newHashMap();
+	/** Node to the cached sources that reach it. */
+	private final Multimap<D, D> sourcesReaching = HashMultimap.create();
+
+	PathExpressionCache(WeightedPAutomaton<N, D, ?> aut) {
+		this.aut = aut;
+	}
+
+	IRegEx<N> getExpressionBetween(D from, D to) {
+		Map<D, IRegEx<N>> fromSource = getOrCreateSource(from);
+		if (fromSource.containsKey(to))
+			return fromSource.get(to);
+		IRegEx<N> res = getComputer().getExpressionBetween(from, to);
+		fromSource.put(to, res);
+		return res;
+	}
+
+	/**
+	 * The expressions from one source to many targets. The source is looked up once and all
+	 * expressions that are not cached are solved by the same computer.
+	 */
+	Map<D, IRegEx<N>> getExpressionsBetween(D from, Collection<D> to) {
+		Map<D, IRegEx<N>> fromSource = getOrCreateSource(from);
+		Map<D, IRegEx<N>> res = Maps.newHashMap();
+		for (D target : to) {
+			IRegEx<N> expr = fromSource.get(target);
+			if (expr == null && !fromSource.containsKey(target)) {
+				expr = getComputer().getExpressionBetween(from, target);
+				fromSource.put(target, expr);
+			}
+			res.put(target, expr);
+		}
+		return res;
+	}
+
+	private Map<D, IRegEx<N>> getOrCreateSource(D from) {
+		Map<D, IRegEx<N>> fromSource = expressions.get(from);
+		if (fromSource == null) {
+			fromSource = Maps.newHashMap();
+			expressions.put(from, fromSource);
+			Set<D> reach = reachableFrom(from);
+			reachable.put(from, reach);
+			for (D d : reach)
+				sourcesReaching.put(d, from);
+		}
+		return fromSource;
+	}
+
+	private PathExpressionComputer<D, N> getComputer() {
+		if (computer == null)
+			computer = new PathExpressionComputer<D, N>(aut);
+		return computer;
+	}
+
+	void transitionAdded(Transition<N, D> t) {
+		computer = null;
+		if (t.getLabel().equals(aut.epsilon()))
+			return;
+		for (D source : Lists.newArrayList(sourcesReaching.get(t.getTarget()))) {
+			expressions.remove(source);
+			for (D d : reachable.remove(source))
+				sourcesReaching.remove(d, source);
+		}
+	}
+
+	private Set<D> reachableFrom(D source) {
+		Set<D> visited = Sets.newHashSet(source);
+		LinkedList<D> worklist = Lists.newLinkedList(visited);
+		while (!worklist.isEmpty()) {
+			for (Transition<N, D> t : aut.getTransitionsInto(worklist.poll())) {
+				if (!t.getLabel().equals(aut.epsilon()) && visited.add(t.getStart()))
+					worklist.add(t.getStart());
+			}
+		}
+		return visited;
+	}
+}
@@ -0,0 +1,287 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+
+/**
+ * Stores the transitions and weights of summary automata across analysis runs. Summaries are
+ * grouped under a key (e.g. a method signature) together with a fingerprint of the code they were
+ * computed for (e.g. a hash of the method body). A group whose fingerprint does not match the one
+ * requested by {@link #restore(String, String, State, WeightedPAutomaton)} is stale and dropped.
+ *
+ * The binary format starts with a magic number, the format version and the {@link SummaryCodec#id()}.
+ * Files of another format or codec are ignored when loading. Each summary is length-prefixed, so
+ * summaries the codec fails to encode or decode are skipped individually. Loaded summaries are only
+ * decoded when their group is first restored or recorded, with a matching fingerprint: the codec may
+ * not be able to resolve the code a summary refers to before the analysis reaches it. Groups that are
+ * never used are written back as they were loaded.
+ */
+public class PersistentSummaryStore<N extends Location, D extends State, W extends Weight> {
+	private static final int MAGIC = 0x57504453;
+	public static final int FORMAT_VERSION = 1;
+
+	private final SummaryCodec<N, D, W> codec;
+	private final Map<String, Group> groups = Maps.newHashMap();
+
+	public PersistentSummaryStore(SummaryCodec<N, D, W> codec) {
+		this.codec = codec;
+	}
+
+	/**
+	 * Stores the current transitions and weights of the summary automaton for target. A group
+	 * stored under key with another fingerprint is replaced.
+	 */
+	public void record(String key, String fingerprint, D target, WeightedPAutomaton<N, D, W> aut) {
+		Group group = groups.get(key);
+		if (group == null || !group.fingerprint.equals(fingerprint)) {
+			group = new Group(fingerprint);
+			groups.put(key, group);
+		}
+		decode(group);
+		Summary summary = new Summary();
+		for (Transition<N, D> t : aut.getTransitions()) {
+			summary.transitions.add(t);
+			summary.weights.add(aut.getWeightFor(t));
+		}
+		group.summaries.put(target, summary);
+	}
+
+	/**
+	 * Adds the stored transitions for target to aut. Returns false if there is no summary for target
+	 * or if the summaries of key were computed for another fingerprint, the latter are removed.
+	 */
+	public boolean restore(String key, String fingerprint, D target, WeightedPAutomaton<N, D, W> aut) {
+		Group group = groups.get(key);
+		if (group == null)
+			return false;
+		if (!group.fingerprint.equals(fingerprint)) {
+			groups.remove(key);
+			return false;
+		}
+		decode(group);
+		Summary summary = group.summaries.get(target);
+		if (summary == null)
+			return false;
+		for (int i = 0; i < summary.transitions.size(); i++) {
+			aut.addWeightForTransition(summary.transitions.get(i), summary.weights.get(i));
+		}
+		return true;
+	}
+
+	public void invalidate(String key) {
+		groups.remove(key);
+	}
+
+	public boolean contains(String key, String fingerprint) {
+		Group group = groups.get(key);
+		return group != null && group.fingerprint.equals(fingerprint);
+	}
+
+	/**
+	 * Number of stored summary automata, including loaded ones that are not decoded yet.
+	 */
+	public int size() {
+		int size = 0;
+		for (Group group : groups.values())
+			size += group.summaries.size() + group.encoded.size();
+		return size;
+	}
+
+	public void save(File file) throws IOException {
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+			write(out);
+		}
+	}
+
+	/**
+	 * Loads the summaries stored in file. Returns false if the file does not exist or was written in
+	 * another format or with another codec.
+	 */
+	public boolean load(File file) throws IOException {
+		if (!file.exists())
+			return false;
+		try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+			return read(in);
+		}
+	}
+
+	public void write(OutputStream stream) throws IOException {
+		DataOutputStream out = new DataOutputStream(stream);
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeUTF(codec.id());
+		out.writeInt(groups.size());
+		List<byte[]> encoded = Lists.newArrayList();
+		for (Entry<String, Group> e : groups.entrySet()) {
+			encoded.clear();
+			for (Entry<D, Summary> s : e.getValue().summaries.entrySet()) {
+				byte[] bytes = encode(s.getKey(), s.getValue());
+				if (bytes != null)
+					encoded.add(bytes);
+			}
+			encoded.addAll(e.getValue().encoded);
+			out.writeUTF(e.getKey());
+			out.writeUTF(e.getValue().fingerprint);
+			out.writeInt(encoded.size());
+			for (byte[] bytes : encoded) {
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		}
+		out.flush();
+	}
+
+	public boolean read(InputStream stream) throws IOException {
+		DataInputStream in = new DataInputStream(stream);
+		if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !in.readUTF().equals(codec.id()))
+			return false;
+		int groupCount = in.readInt();
+		for (int g = 0; g < groupCount; g++) {
+			String key = in.readUTF();
+			Group group = new Group(in.readUTF());
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				byte[] bytes = new byte[in.readInt()];
+				in.readFully(bytes);
+				group.encoded.add(bytes);
+			}
+			groups.put(key, group);
+		}
+		return true;
+	}
+
+	private byte[] encode(D target, Summary summary) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			Map<D, Integer> states = Maps.newHashMap();
+			Map<N, Integer> locations = Maps.newHashMap();
+			codec.writeState(target, out);
+			out.writeInt(summary.transitions.size());
+			for (int i = 0; i < summary.transitions.size(); i++) {
+				Transition<N, D> t = summary.transitions.get(i);
+				writeState(t.getStart(), states, out);
+				writeLocation(t.getLabel(), locations, out);
+				writeState(t.getTarget(), states, out);
+				codec.writeWeight(summary.weights.get(i), out);
+			}
+			out.flush();
+		} catch (IOException e) {
+			return null;
+		}
+		return bytes.toByteArray();
+	}
+
+	private void decode(Group group) {
+		for (byte[] bytes : group.encoded) {
+			decode(bytes, group);
+		}
+		group.encoded.clear();
+	}
+
+	private void decode(byte[] bytes, Group group) {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		try {
+			List<D> states = Lists.newArrayList();
+			List<N> locations = Lists.newArrayList();
+			D target = codec.readState(in);
+			Summary summary = new Summary();
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				D start = readState(states, in);
+				N label = readLocation(locations, in);
+				summary.transitions.add(new Transition<N, D>(start, label, readState(states, in)));
+				summary.weights.add(codec.readWeight(in));
+			}
+			group.summaries.put(target, summary);
+		} catch (IOException e) {
+			// The codec could not resolve the summary, it is recomputed.
+		}
+	}
+
+	private void writeState(D state, Map<D, Integer> table, DataOutputStream out) throws IOException {
+		Integer id = table.get(state);
+		if (id != null) {
+			out.writeInt(id);
+			return;
+		}
+		out.writeInt(-1);
+		codec.writeState(state, out);
+		table.put(state, table.size());
+	}
+
+	private D readState(List<D> table, DataInputStream in) throws IOException {
+		int id = in.readInt();
+		if (id >= 0)
+			return table.get(id);
+		D state = codec.readState(in);
+		table.add(state);
+		return state;
+	}
+
+	private void writeLocation(N location, Map<N, Integer> table, DataOutputStream out) throws IOException {
+		Integer id = table.get(location);
+		if (id != null) {
+			out.writeInt(id);
+			return;
+		}
+		out.writeInt(-1);
+		codec.writeLocation(location, out);
+		table.put(location, table.size());
+	}
+
+	private N readLocation(List<N> table, DataInputStream in) throws IOException {
+		int id = in.readInt();
+		if (id >= 0)
+			return table.get(id);
+		N location = codec.readLocation(in);
+		table.add(location);
+		return location;
+	}
+
+	private class Group {
+		private final String fingerprint;
+		private final Map<D, Summary> summaries = Maps.newHashMap();
+		/** Loaded summaries that are not decoded yet. */
+		private final List<byte[]> encoded = Lists.newArrayList();
+
+		private Group(String fingerprint) {
+			this.fingerprint = fingerprint;
+		}
+	}
+
+	private class Summary {
+		private final List<Transition<N, D>> transitions = Lists.newArrayList();
+		private final List<W> weights = Lists.newArrayList();
+	}
+}
@@ -11,6 +11,14 @@
  *******************************************************************************/
 package wpds.impl;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
 import wpds.interfaces.Empty;
 import wpds.interfaces.IPushdownSystem;
 import wpds.interfaces.Location;
@@ -24,12 +32,25 @@ import wpds.wildcard.Wildcard;
 public abstract class PostStar<N extends Location, D extends State, W extends Weight> {
 	private IPushdownSystem<N, D, W> pds;
 	private WeightedPAutomaton<N, D, W> fa;
+	private final RuleIndex<N, D, W> rules = new RuleIndex<>();
+	private final Map<Rule<N, D, W>, WPAStateListener<N, D, W>> handlers = Maps.newHashMap();
+	private final Set<D> dispatchedStates = Sets.newHashSet();
+	private WPDSUpdateListener<N, D, W> updateListener;
 
 	public void poststar(IPushdownSystem<N, D, W> pds, WeightedPAutomaton<N, D, W> initialAutomaton) {
 		this.pds = pds;
 		this.fa = initialAutomaton;
 		fa.setInitialAutomaton(fa);
-		this.pds.registerUpdateListener(new PostStarUpdateListener(fa));
+		this.updateListener = new PostStarUpdateListener(fa);
+		this.pds.registerUpdateListener(updateListener);
+	}
+
+	/**
+	 * @return The listener that poststar registered on the pushdown system, it applies each rule passed
+	 *         to it to the saturated automaton. Null before poststar is called.
+	 */
+	WPDSUpdateListener<N, D, W> getUpdateListener() {
+		return updateListener;
 	}
 	
 	
@@ -41,14 +62,41 @@ public abstract class PostStar<N extends Location, D extends State, W extends We
 			aut = fa;
 		}
 		
+		/**
+		 * The first rule of a start state registers the {@link RuleDispatchListener} of the state.
+		 * A later rule of the state is applied to the transitions already out of the state, the
+		 * dispatcher applies it to the transitions added afterwards.
+		 */
 		@Override
 		public void onRuleAdded(final Rule<N, D, W> rule) {
+			if (handlers.containsKey(rule))
+				return;
+			final WPAStateListener<N, D, W> handler;
 			if(rule instanceof NormalRule){
-				fa.registerListener(new HandleNormalListener((NormalRule)rule));
+				handler = new HandleNormalListener((NormalRule)rule);
 			} else if(rule instanceof PushRule){
-				fa.registerListener(new HandlePushListener((PushRule)rule));
+				handler = new HandlePushListener((PushRule)rule);
 			} else if(rule instanceof PopRule){
-				fa.registerListener(new HandlePopListener( rule.getS1(), rule.getL1(),rule.getS2(),rule.getWeight()));
+				handler = new HandlePopListener( rule.getS1(), rule.getL1(),rule.getS2(),rule.getWeight());
+			} else {
+				return;
+			}
+			handlers.put(rule, handler);
+			rules.add(rule);
+			if (dispatchedStates.add(rule.getS1())) {
+				fa.registerListener(new RuleDispatchListener(rule.getS1()));
+				return;
+			}
+			SaturationWorklist<N, D, W> worklist = fa.getSaturationWorklist();
+			if (worklist != null) {
+				worklist.scheduleReplay(new Runnable() {
+					@Override
+					public void run() {
+						fa.notifyOutTransitions(handler);
+					}
+				});
+			} else {
+				fa.notifyOutTransitions(handler);
 			}
 		}
 
@@ -79,6 +127,78 @@ public abstract class PostStar<N extends Location, D extends State, W extends We
 
 	}
 	
+	/**
+	 * Applies the rules starting in a state to the transitions out of it, looking up the rules by the
+	 * label of the transition. Each transition is thus only matched against the rules that apply to
+	 * it instead of against all rules of the state. A transition with an {@link Empty} label is also
+	 * offered to all pop rules of the state, whose handlers forward the pop across it.
+	 */
+	private class RuleDispatchListener extends WPAStateListener<N, D, W> {
+
+		public RuleDispatchListener(D state) {
+			super(state);
+		}
+
+		@Override
+		public void onOutTransitionAdded(Transition<N, D> t, W w, WeightedPAutomaton<N, D, W> aut) {
+			// Handlers may add rules, rules added to the state meanwhile are applied to t on their own.
+			if (!(t.getLabel() instanceof Wildcard))
+				apply(rules.getRulesStarting(state, t.getLabel()), t, w, aut);
+			apply(rules.getWildcardRulesStartingIn(state), t, w, aut);
+			if (t.getLabel() instanceof Empty)
+				forwardPops(t, w, aut);
+		}
+
+		private void forwardPops(Transition<N, D> t, W w, WeightedPAutomaton<N, D, W> aut) {
+			Set<PopRule<N, D, W>> pops = rules.getPopRulesStartingIn(state);
+			if (pops.isEmpty())
+				return;
+			List<PopRule<N, D, W>> snapshot = Lists.newArrayList(pops);
+			for (PopRule<N, D, W> rule : snapshot) {
+				// Rules matching the label of t have been applied already.
+				if (!rule.getL1().equals(t.getLabel()) && !(rule.getL1() instanceof Wildcard))
+					handlers.get(rule).onOutTransitionAdded(t, w, aut);
+			}
+		}
+
+		private void apply(Set<Rule<N, D, W>> matching, Transition<N, D> t, W w, WeightedPAutomaton<N, D, W> aut) {
+			if (matching.isEmpty())
+				return;
+			List<Rule<N, D, W>> snapshot = Lists.newArrayList(matching);
+			for (Rule<N, D, W> rule : snapshot) {
+				handlers.get(rule).onOutTransitionAdded(t, w, aut);
+			}
+		}
+
+		@Override
+		public void onInTransitionAdded(Transition<N, D> t, W w, WeightedPAutomaton<N, D, W> aut) {
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = super.hashCode();
+			result = prime * result + getOuterType().hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!super.equals(obj))
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			RuleDispatchListener other = (RuleDispatchListener) obj;
+			return getOuterType().equals(other.getOuterType());
+		}
+
+		private PostStar<N, D, W> getOuterType() {
+			return PostStar.this;
+		}
+	}
+
 	private class UpdateTransitivePopListener extends WPAStateListener<N, D, W> {
 
 		private Transition<N, D> transition;
@@ -94,7 +214,7 @@ public abstract class PostStar<N extends Location, D extends State, W extends We
 		public void onOutTransitionAdded(Transition<N, D> t, W w, WeightedPAutomaton<N, D, W> aut) {
 			if(!t.getLabel().equals(fa.epsilon()))
 				update(new Transition<N, D>(transition.getStart(), t.getLabel(), t.getTarget()),
-							(W) w.extendWith(newWeight));
+							fa.extend(w, newWeight));
 		}
 
 		@Override
@@ -153,7 +273,7 @@ public abstract class PostStar<N extends Location, D extends State, W extends We
 					if(popLabel instanceof Empty){
 						throw new RuntimeException("IllegalState");
 					}
-					final W newWeight = (W) weight.extendWith(ruleWeight);
+					final W newWeight = fa.extend(weight, ruleWeight);
 					update(new Transition<N, D>(targetState, fa.epsilon(), t.getTarget()), newWeight);
 					fa.registerListener(new UpdateTransitivePopListener(new Transition<N, D>(targetState, fa.epsilon(), t.getTarget()),newWeight));
 				}
@@ -225,7 +345,7 @@ public abstract class PostStar<N extends Location, D extends State, W extends We
 		@Override
 		public void onOutTransitionAdded(final Transition<N, D> t, W weight, WeightedPAutomaton<N, D, W> aut) {
 			if(t.getLabel().equals(rule.getL1()) || rule.getL1() instanceof Wildcard){
-				W newWeight = (W) weight.extendWith(rule.getWeight());
+				W newWeight = fa.extend(weight, rule.getWeight());
 				D p = rule.getS2();
 				N l2 = rule.getL2();
 				if (l2 instanceof ExclusionWildcard) {
@@ -301,7 +421,7 @@ public abstract class PostStar<N extends Location, D extends State, W extends We
 				final N transitionLabel = (rule.getCallSite() instanceof Wildcard ? t.getLabel() : rule.getCallSite());
 				final Transition<N, D> transition = new Transition<N, D>(irState, transitionLabel, t.getTarget());
 
-				update(transition, (W)weight.extendWith(rule.getWeight()));
+				update(transition, fa.extend(weight, rule.getWeight()));
 				
 				if(!fa.nested()){
 					update(new Transition<N, D>(p, gammaPrime, irState),fa.getOne());
@@ -318,7 +438,7 @@ public abstract class PostStar<N extends Location, D extends State, W extends We
 
 								W newWeight = getWeightFor(transition);
 								update(new Transition<N, D>(t.getStart(), transition.getLabel(), transition.getTarget()),
-									(W) newWeight.extendWith(w));
+									fa.extend(newWeight, w));
 							}
 						}
 					});
@@ -3,7 +3,7 @@
  * This program and the accompanying materials are made available under the
  * terms of the Eclipse Public License 2.0 which is available at
  * http://www.eclipse.org/legal/epl-2.0.
- *  
+ *
  * SPDX-License-Identifier: EPL-2.0
  *
  * Contributors:
@@ -11,110 +11,129 @@
  *******************************************************************************/
 package wpds.impl;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Set;
 
-import com.google.common.collect.Lists;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
+import com.google.common.collect.Table;
 
 import wpds.interfaces.IPushdownSystem;
 import wpds.interfaces.Location;
 import wpds.interfaces.State;
+import wpds.interfaces.WPAUpdateListener;
 import wpds.wildcard.Wildcard;
 
+/**
+ * Weighted pre* saturation. Transitions of the automaton are indexed by (start, label) as they
+ * are added, and every transition whose weight changes is processed once from an array-based
+ * worklist. Transitions that are added to the automaton while the saturation runs, either by the
+ * saturation itself or by other listeners, are picked up through the same index and worklist.
+ */
 public class PreStar<N extends Location, D extends State, W extends Weight> {
-  private LinkedList<Transition<N, D>> worklist = Lists.newLinkedList();
+  private final ArrayDeque<Transition<N, D>> worklist = new ArrayDeque<>();
+  private final Set<Transition<N, D>> queued = Sets.newHashSet();
+  private final Table<D, N, Set<Transition<N, D>>> transitionsOutOfWithLabel =
+      HashBasedTable.create();
+  private final Multimap<D, Transition<N, D>> transitionsOutOf = HashMultimap.create();
   private IPushdownSystem<N, D, W> pds;
   private WeightedPAutomaton<N, D, W> fa;
+  private boolean saturating;
 
   public WeightedPAutomaton<N, D, W> prestar(IPushdownSystem<N, D, W> pds,
       WeightedPAutomaton<N, D, W> initialAutomaton) {
     this.pds = pds;
-    worklist = Lists.newLinkedList(initialAutomaton.getTransitions());
-    fa = initialAutomaton;
-
-    for (Transition<N, D> trans : Sets.newHashSet(fa.getTransitions())) {
-      W one = fa.getOne();
-      fa.addWeightForTransition(trans, one);
-    }
+    this.fa = initialAutomaton;
+    fa.registerListener(new IndexListener());
     for (PopRule<N, D, W> r : pds.getPopRules()) {
-      update(new Transition<N, D>(r.getS1(), r.getL1(), r.getS2()), r.getWeight(),
-          Lists.<Transition<N, D>>newLinkedList());
+      update(new Transition<N, D>(r.getS1(), r.getL1(), r.getS2()), r.getWeight());
     }
+    saturate();
+    return fa;
+  }
 
-    while (!worklist.isEmpty()) {
-      Transition<N, D> t = worklist.removeFirst();
-
-      for (NormalRule<N, D, W> r : pds.getNormalRulesEnding(t.getStart(), t.getLabel())) {
-        // Normal rules
-          LinkedList<Transition<N, D>> previous = Lists.<Transition<N, D>>newLinkedList();
-          previous.add(t);
-          update(new Transition<N, D>(r.getS1(), r.getL1(), t.getTarget()), r.getWeight(),
-              previous);
+  private void saturate() {
+    if (saturating)
+      return;
+    saturating = true;
+    try {
+      while (!worklist.isEmpty()) {
+        Transition<N, D> t = worklist.poll();
+        queued.remove(t);
+        process(t);
       }
-      for (PushRule<N, D, W> r : pds.getPushRulesEnding(t.getStart(), t.getLabel())) {
-        // Push rules
-        for (Transition<N, D> tdash : Sets.newHashSet(fa.getTransitions())) {
-          if (tdash.getLabel().equals(r.getCallSite())) {
-            LinkedList<Transition<N, D>> previous = Lists.<Transition<N, D>>newLinkedList();
-            previous.add(t);
-            previous.add(tdash);
-            update(new Transition<N, D>(r.getS1(), r.getL1(), tdash.getTarget()), r.getWeight(),
-                previous);
-          } else if (r.getCallSite() instanceof Wildcard) {
-            LinkedList<Transition<N, D>> previous = Lists.<Transition<N, D>>newLinkedList();
-            previous.add(t);
-            previous.add(tdash);
-            update(new Transition<N, D>(r.getS1(), tdash.getLabel(), tdash.getTarget()),
-                r.getWeight(), previous);
-          }
+    } finally {
+      saturating = false;
+    }
+  }
 
-        }
+  private void process(Transition<N, D> t) {
+    W weight = fa.getWeightFor(t);
+    // Normal rules <p, l> -> <q, t.label>
+    for (NormalRule<N, D, W> r : pds.getNormalRulesEnding(t.getStart(), t.getLabel())) {
+      update(new Transition<N, D>(r.getS1(), r.getL1(), t.getTarget()),
+          (W) r.getWeight().extendWith(weight));
+    }
+    // Push rules <p, l> -> <q, t.label callSite>, t is the transition for the top of stack
+    for (PushRule<N, D, W> r : pds.getPushRulesEnding(t.getStart(), t.getLabel())) {
+      Set<Transition<N, D>> successors;
+      if (r.getCallSite() instanceof Wildcard) {
+        successors = Sets.newHashSet(transitionsOutOf.get(t.getTarget()));
+      } else {
+        successors = getTransitionsOutOf(t.getTarget(), r.getCallSite());
       }
-
-      for (PushRule<N, D, W> r : pds.getPushRules()) {
-        if (!(r.getCallSite() instanceof Wildcard)
-            && !r.getCallSite().equals(t.getString())) {
+      for (Transition<N, D> tdash : successors) {
+        if (tdash.getLabel().equals(fa.epsilon()))
           continue;
-        }
-        Transition<N, D> tdash = new Transition<N, D>(r.getS2(), r.getL2(), t.getTarget());
-        if (!fa.getTransitions().contains(tdash)) {
-          continue;
-        }
-        LinkedList<Transition<N, D>> previous = Lists.<Transition<N, D>>newLinkedList();
-        previous.add(tdash);
-        previous.add(t);
-        N label = ((r.getCallSite() instanceof Wildcard) ? t.getLabel() : r.getL1());
-        update(new Transition<N, D>(r.getS1(), label, t.getTarget()), r.getWeight(), previous);
+        N label = (r.getCallSite() instanceof Wildcard ? tdash.getLabel() : r.getL1());
+        W newWeight = (W) r.getWeight().extendWith(weight).extendWith(fa.getWeightFor(tdash));
+        update(new Transition<N, D>(r.getS1(), label, tdash.getTarget()), newWeight);
       }
     }
+    // Push rules <p, l> -> <q', l' t.label>, t is the transition for the call site
+    for (PushRule<N, D, W> r : pds.getPushRulesWithCallSite(t.getString())) {
+      Transition<N, D> tdash = new Transition<N, D>(r.getS2(), r.getL2(), t.getStart());
+      W tdashWeight = fa.getWeightFor(tdash);
+      if (tdashWeight == null)
+        continue;
+      N label = (r.getCallSite() instanceof Wildcard ? t.getLabel() : r.getL1());
+      W newWeight = (W) r.getWeight().extendWith(tdashWeight).extendWith(weight);
+      update(new Transition<N, D>(r.getS1(), label, t.getTarget()), newWeight);
+    }
+  }
 
-    return fa;
+  private Set<Transition<N, D>> getTransitionsOutOf(D state, N label) {
+    Set<Transition<N, D>> res = transitionsOutOfWithLabel.get(state, label);
+    if (res == null)
+      return Collections.emptySet();
+    return Sets.newHashSet(res);
   }
 
-  private void update(Transition<N, D> trans, W weight, List<Transition<N, D>> previous) {
+  private void update(Transition<N, D> trans, W weight) {
     if (trans.getLabel() instanceof Wildcard)
       throw new RuntimeException("INVALID TRANSITION");
-    fa.addTransition(trans);
-    W lt = getOrCreateWeight(trans);
-    W fr = weight;
-    for (Transition<N, D> prev : previous) {
-      fr = (W) fr.extendWith(getOrCreateWeight(prev));
-    }
-    W newLt = (W) lt.combineWith(fr);
-    fa.addWeightForTransition(trans, newLt);
-    if (!lt.equals(newLt)) {
-      worklist.add(trans);
-    }
+    fa.addWeightForTransition(trans, weight);
   }
 
-  private W getOrCreateWeight(Transition<N, D> trans) {
-    W w = fa.getWeightFor(trans);
-    if (w != null)
-      return w;
-
-    W z = fa.getZero();
-//    z.setRange(trans.getLabel(), trans.getLabel());
-    return z;
+  private class IndexListener implements WPAUpdateListener<N, D, W> {
+    @Override
+    public void onWeightAdded(Transition<N, D> t, W w, WeightedPAutomaton<N, D, W> aut) {
+      if (aut != fa)
+        return;
+      if (transitionsOutOf.put(t.getStart(), t)) {
+        Set<Transition<N, D>> withLabel = transitionsOutOfWithLabel.get(t.getStart(), t.getLabel());
+        if (withLabel == null) {
+          withLabel = Sets.newHashSet();
+          transitionsOutOfWithLabel.put(t.getStart(), t.getLabel(), withLabel);
+        }
+        withLabel.add(t);
+      }
+      if (queued.add(t))
+        worklist.add(t);
+      saturate();
+    }
   }
 }
@@ -11,6 +11,8 @@
  *******************************************************************************/
 package wpds.impl;
 
+import java.util.Collection;
+
 import wpds.impl.Weight.NoWeight;
 import wpds.interfaces.Location;
 import wpds.interfaces.State;
@@ -20,10 +22,21 @@ public class PushdownSystem<N extends Location, D extends State>
 
   @Override
   public boolean addRule(Rule<N, D, NoWeight> rule) {
+    checkUnweighted(rule);
+    return super.addRule(rule);
+  }
+
+  @Override
+  public boolean addRules(Collection<? extends Rule<N, D, NoWeight>> rules) {
+    for (Rule<N, D, NoWeight> rule : rules)
+      checkUnweighted(rule);
+    return super.addRules(rules);
+  }
+
+  private void checkUnweighted(Rule<N, D, NoWeight> rule) {
     if (!(rule instanceof UNormalRule) && !(rule instanceof UPopRule)
         && !(rule instanceof UPushRule))
       throw new RuntimeException("Trying to add a weighted rule to an unweighted PDS!");
-    return super.addRule(rule);
   }
 
 }
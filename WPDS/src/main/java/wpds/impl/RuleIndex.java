@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.impl;
+
+import java.util.Collections;
+import java.util.Set;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
+import com.google.common.collect.Table;
+
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+import wpds.wildcard.Wildcard;
+
+/**
+ * Indexes the rules of a pushdown system by their start configuration (s1, l1) and by their end
+ * configuration (s2, l2). The index is maintained incrementally by
+ * {@link WeightedPushdownSystem#addRule(Rule)}, such that each lookup only touches the matching
+ * rules. {@link PostStar} keeps an index of the rules it was notified of to dispatch the
+ * transitions of the automaton. All returned sets are unmodifiable views of the index.
+ */
+public class RuleIndex<N extends Location, D extends State, W extends Weight> {
+	private final Table<D, N, Set<Rule<N, D, W>>> rulesStarting = HashBasedTable.create();
+	private final SetMultimap<D, Rule<N, D, W>> rulesStartingIn = HashMultimap.create();
+	private final SetMultimap<D, Rule<N, D, W>> wildcardRulesStartingIn = HashMultimap.create();
+	private final SetMultimap<D, PopRule<N, D, W>> popRulesStartingIn = HashMultimap.create();
+	private final Table<D, N, Set<NormalRule<N, D, W>>> normalRulesEnding = HashBasedTable.create();
+	private final Table<D, N, Set<PushRule<N, D, W>>> pushRulesEnding = HashBasedTable.create();
+	private final SetMultimap<N, PushRule<N, D, W>> pushRulesWithCallSite = HashMultimap.create();
+	private final Set<PushRule<N, D, W>> pushRulesWithWildcardCallSite = Sets.newHashSet();
+	private final Set<D> states = Sets.newHashSet();
+
+	public void add(Rule<N, D, W> rule) {
+		D s1 = rule.getS1();
+		N l1 = rule.getL1();
+		getOrCreate(rulesStarting, s1, l1).add(rule);
+		rulesStartingIn.put(s1, rule);
+		if (l1 instanceof Wildcard)
+			wildcardRulesStartingIn.put(s1, rule);
+		if (rule instanceof NormalRule) {
+			getOrCreate(normalRulesEnding, rule.getS2(), rule.getL2()).add((NormalRule<N, D, W>) rule);
+		} else if (rule instanceof PushRule) {
+			PushRule<N, D, W> pushRule = (PushRule<N, D, W>) rule;
+			getOrCreate(pushRulesEnding, rule.getS2(), rule.getL2()).add(pushRule);
+			if (pushRule.getCallSite() instanceof Wildcard) {
+				pushRulesWithWildcardCallSite.add(pushRule);
+			} else {
+				pushRulesWithCallSite.put(pushRule.getCallSite(), pushRule);
+			}
+		} else if (rule instanceof PopRule) {
+			popRulesStartingIn.put(s1, (PopRule<N, D, W>) rule);
+		}
+		states.add(s1);
+		states.add(rule.getS2());
+	}
+
+	/**
+	 * Rules whose start configuration is exactly (start, label). Rules with a {@link Wildcard} as
+	 * label are only returned if the wildcard itself is passed as label.
+	 */
+	public Set<Rule<N, D, W>> getRulesStarting(D start, N label) {
+		return get(rulesStarting, start, label);
+	}
+
+	public Set<Rule<N, D, W>> getRulesStartingIn(D start) {
+		return Collections.unmodifiableSet(rulesStartingIn.get(start));
+	}
+
+	public Set<Rule<N, D, W>> getWildcardRulesStartingIn(D start) {
+		return Collections.unmodifiableSet(wildcardRulesStartingIn.get(start));
+	}
+
+	public Set<PopRule<N, D, W>> getPopRulesStartingIn(D start) {
+		return Collections.unmodifiableSet(popRulesStartingIn.get(start));
+	}
+
+	public Set<NormalRule<N, D, W>> getNormalRulesEnding(D end, N label) {
+		return get(normalRulesEnding, end, label);
+	}
+
+	public Set<PushRule<N, D, W>> getPushRulesEnding(D end, N label) {
+		return get(pushRulesEnding, end, label);
+	}
+
+	/**
+	 * Push rules whose call site equals the given label, including all push rules with a
+	 * {@link Wildcard} call site.
+	 */
+	public Set<PushRule<N, D, W>> getPushRulesWithCallSite(N callSite) {
+		Set<PushRule<N, D, W>> exact = Collections.unmodifiableSet(pushRulesWithCallSite.get(callSite));
+		if (pushRulesWithWildcardCallSite.isEmpty())
+			return exact;
+		return Sets.union(exact, pushRulesWithWildcardCallSite);
+	}
+
+	public Set<D> getStates() {
+		return Collections.unmodifiableSet(states);
+	}
+
+	private static <D, N, R> Set<R> getOrCreate(Table<D, N, Set<R>> table, D state, N label) {
+		Set<R> rules = table.get(state, label);
+		if (rules == null) {
+			rules = Sets.newHashSet();
+			table.put(state, label, rules);
+		}
+		return rules;
+	}
+
+	private static <D, N, R> Set<R> get(Table<D, N, Set<R>> table, D state, N label) {
+		Set<R> rules = table.get(state, label);
+		if (rules == null)
+			return Collections.emptySet();
+		return Collections.unmodifiableSet(rules);
+	}
+}
@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.impl;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+
+import com.google.common.collect.Sets;
+
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+
+/**
+ * Explicit work queue for the saturation of {@link WeightedPAutomaton}s. When an automaton has a
+ * worklist attached (see {@link WeightedPAutomaton#setSaturationWorklist(SaturationWorklist)}),
+ * weight updates are stored immediately, but the listeners are notified from this queue instead
+ * of from within {@link WeightedPAutomaton#addWeightForTransition(Transition, Weight)}. Listener
+ * callbacks that add further weights therefore only enqueue work, and the stack depth of the
+ * saturation stays bounded independently of the length of the propagation.
+ *
+ * Pending transitions are coalesced: a transition that is updated several times before it is
+ * dispatched is dispatched once with its latest weight. The order in which pending transitions
+ * are dispatched is chosen by the factory method ({@link #fifo()}, {@link #lifo()},
+ * {@link #priority(Comparator)}). Replays of newly registered listeners are always processed
+ * first and in registration order.
+ *
+ * Saturation can be stopped cooperatively with {@link #cancel()}, also from within a listener or
+ * from another thread. The work item being dispatched is completed, the remaining work stays
+ * queued and is processed once the worklist is resumed.
+ */
+public abstract class SaturationWorklist<N extends Location, D extends State, W extends Weight> {
+
+	private final Deque<Runnable> replays = new ArrayDeque<>();
+	private final Set<Pending<N, D, W>> pending = Sets.newHashSet();
+	private boolean draining;
+	private volatile boolean cancelled;
+
+	public static <N extends Location, D extends State, W extends Weight> SaturationWorklist<N, D, W> fifo() {
+		return new SaturationWorklist<N, D, W>() {
+			private final Deque<Pending<N, D, W>> queue = new ArrayDeque<>();
+
+			@Override
+			protected Queue<Pending<N, D, W>> queue() {
+				return queue;
+			}
+		};
+	}
+
+	public static <N extends Location, D extends State, W extends Weight> SaturationWorklist<N, D, W> lifo() {
+		return new SaturationWorklist<N, D, W>() {
+			private final Queue<Pending<N, D, W>> queue = Collections.asLifoQueue(new ArrayDeque<Pending<N, D, W>>());
+
+			@Override
+			protected Queue<Pending<N, D, W>> queue() {
+				return queue;
+			}
+		};
+	}
+
+	/**
+	 * Dispatches pending transitions in the order of the comparator, smallest first.
+	 */
+	public static <N extends Location, D extends State, W extends Weight> SaturationWorklist<N, D, W> priority(
+			final Comparator<? super Transition<N, D>> comparator) {
+		return new SaturationWorklist<N, D, W>() {
+			private final PriorityQueue<Pending<N, D, W>> queue = new PriorityQueue<>(11,
+					new Comparator<Pending<N, D, W>>() {
+						@Override
+						public int compare(Pending<N, D, W> o1, Pending<N, D, W> o2) {
+							return comparator.compare(o1.transition, o2.transition);
+						}
+					});
+
+			@Override
+			protected Queue<Pending<N, D, W>> queue() {
+				return queue;
+			}
+		};
+	}
+
+	protected abstract Queue<Pending<N, D, W>> queue();
+
+	void schedule(WeightedPAutomaton<N, D, W> aut, Transition<N, D> trans) {
+		Pending<N, D, W> p = new Pending<>(aut, trans);
+		if (pending.add(p))
+			queue().add(p);
+		drain();
+	}
+
+	void scheduleReplay(Runnable replay) {
+		replays.add(replay);
+		drain();
+	}
+
+	public boolean isEmpty() {
+		return replays.isEmpty() && queue().isEmpty();
+	}
+
+	/**
+	 * Stops the saturation after the current work item. Work scheduled while cancelled is queued
+	 * but not processed until {@link #resume()}.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Sets the cancellation without processing the remaining work.
+	 */
+	void setCancelled(boolean cancelled) {
+		this.cancelled = cancelled;
+	}
+
+	/**
+	 * Clears the cancellation and processes the remaining work.
+	 */
+	public void resume() {
+		cancelled = false;
+		drain();
+	}
+
+	/**
+	 * Whether a pending replay or a pending transition may still produce a weight smaller than
+	 * bound, assuming that weights derived from a transition are never smaller than its weight.
+	 */
+	boolean mayProduceBelow(W bound, Comparator<? super W> order) {
+		if (!replays.isEmpty())
+			return true;
+		for (Pending<N, D, W> p : pending) {
+			if (order.compare(p.aut.getWeightFor(p.transition), bound) < 0)
+				return true;
+		}
+		return false;
+	}
+
+	int pendingCount() {
+		return pending.size() + replays.size();
+	}
+
+	/**
+	 * Processes pending work until the queue is empty or the worklist is cancelled. Reentrant calls
+	 * from within a listener return immediately, the outermost call finishes the work.
+	 */
+	public void drain() {
+		if (draining)
+			return;
+		draining = true;
+		try {
+			while (!cancelled && !isEmpty()) {
+				if (!replays.isEmpty()) {
+					replays.poll().run();
+					continue;
+				}
+				Pending<N, D, W> p = queue().poll();
+				pending.remove(p);
+				p.aut.dispatch(p.transition);
+			}
+		} finally {
+			draining = false;
+		}
+	}
+
+	protected static class Pending<N extends Location, D extends State, W extends Weight> {
+		private final WeightedPAutomaton<N, D, W> aut;
+		private final Transition<N, D> transition;
+
+		private Pending(WeightedPAutomaton<N, D, W> aut, Transition<N, D> transition) {
+			this.aut = aut;
+			this.transition = transition;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(aut) + transition.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Pending))
+				return false;
+			Pending<?, ?, ?> other = (Pending<?, ?, ?>) obj;
+			return aut == other.aut && transition.equals(other.transition);
+		}
+	}
+}
@@ -0,0 +1,299 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+
+/**
+ * Strongly connected components of the graph spanned by the transitions of an automaton,
+ * maintained incrementally as edges are added. Components are kept in a union-find structure and
+ * in a topological order of the condensation, which is repaired after each insertion with the
+ * algorithm of Pearce and Kelly: only the components between the two ends of an edge that
+ * violates the order are searched, and if the edge closes a cycle those components are merged.
+ *
+ * On top of the components, the index tracks which of them reach the target state (the initial
+ * state of the automaton) and whether one of those is cyclic. A loop query is therefore a field
+ * read. The longest path to the target through the condensation is computed along the
+ * topological order on demand and cached until the next edge is added.
+ */
+final class SccIndex<N extends Location, D extends State> {
+	private final Map<D, Integer> ids = Maps.newHashMap();
+	private int[] parent = new int[16];
+	private int[] ord = new int[16];
+	private boolean[] cyclic = new boolean[16];
+	private boolean[] reaches = new boolean[16];
+	/** Per component representative: successor component (possibly stale) to the edge label. */
+	private final List<Map<Integer, N>> out = new ArrayList<>();
+	/** Per component representative: predecessor components (possibly stale). */
+	private final List<Set<Integer>> in = new ArrayList<>();
+	private int size;
+	private int lowestOrd;
+	private int highestOrd;
+	private boolean loop;
+	private List<N> longestPath;
+
+	SccIndex(D target) {
+		reaches[node(target, false)] = true;
+	}
+
+	void addEdge(D start, N label, D target) {
+		int u = node(start, true);
+		int v = node(target, false);
+		int a = find(u);
+		int b = find(v);
+		if (a == b) {
+			markCyclic(a);
+			return;
+		}
+		longestPath = null;
+		if (!out.get(a).containsKey(b))
+			out.get(a).put(b, label);
+		in.get(b).add(a);
+		boolean merged = false;
+		if (ord[a] > ord[b])
+			merged = reorder(a, b);
+		a = find(u);
+		b = find(v);
+		if (reaches[b] && (merged || !reaches[a]))
+			reach(a);
+	}
+
+	/**
+	 * @return true if a cyclic component reaches the target.
+	 */
+	boolean containsLoop() {
+		return loop;
+	}
+
+	/**
+	 * @return The labels of a longest path through the condensation that ends in the target, in
+	 *         the order of the path. Edges within a component are not part of any path.
+	 */
+	List<N> getLongestPath() {
+		if (longestPath == null)
+			longestPath = computeLongestPath();
+		return longestPath;
+	}
+
+	private List<N> computeLongestPath() {
+		List<Integer> comps = Lists.newArrayList();
+		for (int i = 0; i < size; i++) {
+			if (parent[i] == i && reaches[i])
+				comps.add(i);
+		}
+		Collections.sort(comps, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Integer.compare(ord[o2], ord[o1]);
+			}
+		});
+		int target = find(0);
+		int[] dist = new int[size];
+		int[] next = new int[size];
+		Object[] label = new Object[size];
+		Arrays.fill(dist, -1);
+		dist[target] = 0;
+		int longest = target;
+		for (int c : comps) {
+			if (c == target)
+				continue;
+			for (Entry<Integer, N> e : out.get(c).entrySet()) {
+				int d = find(e.getKey());
+				if (d != c && dist[d] >= 0 && dist[d] + 1 > dist[c]) {
+					dist[c] = dist[d] + 1;
+					next[c] = d;
+					label[c] = e.getValue();
+				}
+			}
+			if (dist[c] > dist[longest])
+				longest = c;
+		}
+		List<N> path = Lists.newArrayList();
+		for (int c = longest; c != target; c = next[c]) {
+			path.add((N) label[c]);
+		}
+		return path;
+	}
+
+	/**
+	 * Repairs the topological order after the edge a -> b with ord[a] > ord[b] was added.
+	 *
+	 * @return true if the edge closed a cycle and components were merged.
+	 */
+	private boolean reorder(int a, int b) {
+		int lower = ord[b];
+		int upper = ord[a];
+		Set<Integer> forward = Sets.newHashSet();
+		Deque<Integer> worklist = new ArrayDeque<>();
+		forward.add(b);
+		worklist.add(b);
+		while (!worklist.isEmpty()) {
+			int c = worklist.poll();
+			for (Integer s : out.get(c).keySet()) {
+				int d = find(s);
+				if (ord[d] <= upper && forward.add(d))
+					worklist.add(d);
+			}
+		}
+		Set<Integer> backward = Sets.newHashSet();
+		backward.add(a);
+		worklist.add(a);
+		while (!worklist.isEmpty()) {
+			int c = worklist.poll();
+			for (Integer p : in.get(c)) {
+				int d = find(p);
+				if (ord[d] >= lower && backward.add(d))
+					worklist.add(d);
+			}
+		}
+		List<Integer> slots = Lists.newArrayList();
+		for (int c : Sets.union(forward, backward))
+			slots.add(ord[c]);
+		Collections.sort(slots);
+		List<Integer> sequence = Lists.newArrayList();
+		boolean cycle = forward.contains(a);
+		if (cycle) {
+			Set<Integer> members = Sets.newHashSet(Sets.intersection(forward, backward));
+			forward.removeAll(members);
+			backward.removeAll(members);
+			sequence.addAll(sortedByOrd(backward));
+			sequence.add(merge(members));
+			sequence.addAll(sortedByOrd(forward));
+		} else {
+			sequence.addAll(sortedByOrd(backward));
+			sequence.addAll(sortedByOrd(forward));
+		}
+		for (int i = 0; i < sequence.size(); i++) {
+			ord[sequence.get(i)] = slots.get(i);
+		}
+		return cycle;
+	}
+
+	private List<Integer> sortedByOrd(Set<Integer> comps) {
+		List<Integer> res = Lists.newArrayList(comps);
+		Collections.sort(res, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Integer.compare(ord[o1], ord[o2]);
+			}
+		});
+		return res;
+	}
+
+	private int merge(Set<Integer> members) {
+		int rep = -1;
+		for (int c : members) {
+			if (rep < 0 || out.get(c).size() + in.get(c).size() > out.get(rep).size() + in.get(rep).size())
+				rep = c;
+		}
+		boolean reached = false;
+		for (int c : members) {
+			reached |= reaches[c];
+			if (c == rep)
+				continue;
+			parent[c] = rep;
+			for (Entry<Integer, N> e : out.get(c).entrySet()) {
+				if (!out.get(rep).containsKey(e.getKey()))
+					out.get(rep).put(e.getKey(), e.getValue());
+			}
+			in.get(rep).addAll(in.get(c));
+			out.set(c, null);
+			in.set(c, null);
+		}
+		reaches[rep] = reached;
+		markCyclic(rep);
+		return rep;
+	}
+
+	/**
+	 * Marks the component and, transitively, its predecessors as reaching the target.
+	 */
+	private void reach(int c) {
+		Deque<Integer> worklist = new ArrayDeque<>();
+		reaches[c] = true;
+		worklist.add(c);
+		while (!worklist.isEmpty()) {
+			int curr = worklist.poll();
+			if (cyclic[curr])
+				loop = true;
+			for (Integer p : in.get(curr)) {
+				int d = find(p);
+				if (!reaches[d]) {
+					reaches[d] = true;
+					worklist.add(d);
+				}
+			}
+		}
+	}
+
+	private void markCyclic(int c) {
+		cyclic[c] = true;
+		if (reaches[c])
+			loop = true;
+	}
+
+	private int find(int i) {
+		int root = i;
+		while (parent[root] != root)
+			root = parent[root];
+		while (parent[i] != root) {
+			int next = parent[i];
+			parent[i] = root;
+			i = next;
+		}
+		return root;
+	}
+
+	/**
+	 * A new state has no edges yet and can be placed anywhere in the order. It is placed before all
+	 * other states if it is the start of the edge that introduces it, and after them otherwise, so
+	 * that this edge never violates the order.
+	 */
+	private int node(D state, boolean start) {
+		Integer id = ids.get(state);
+		if (id != null)
+			return id;
+		if (size == parent.length) {
+			int capacity = size * 2;
+			parent = Arrays.copyOf(parent, capacity);
+			ord = Arrays.copyOf(ord, capacity);
+			cyclic = Arrays.copyOf(cyclic, capacity);
+			reaches = Arrays.copyOf(reaches, capacity);
+		}
+		int i = size++;
+		parent[i] = i;
+		if (i == 0)
+			ord[i] = 0;
+		else
+			ord[i] = start ? --lowestOrd : ++highestOrd;
+		out.add(Maps.<Integer, N>newHashMap());
+		in.add(Sets.<Integer>newHashSet());
+		ids.put(state, i);
+		return i;
+	}
+}
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+
+/**
+ * Binary encoding of the locations, states and weights of summary automata, used by
+ * {@link PersistentSummaryStore}. A codec throws an {@link IOException} for values it cannot encode
+ * or can no longer resolve, the affected summary is then skipped.
+ */
+public interface SummaryCodec<N extends Location, D extends State, W extends Weight> {
+
+	/**
+	 * Identifies the encoding. Stores written with a different id are discarded when loaded.
+	 */
+	String id();
+
+	void writeLocation(N location, DataOutput out) throws IOException;
+
+	N readLocation(DataInput in) throws IOException;
+
+	void writeState(D state, DataOutput out) throws IOException;
+
+	D readState(DataInput in) throws IOException;
+
+	void writeWeight(W weight, DataOutput out) throws IOException;
+
+	W readWeight(DataInput in) throws IOException;
+}
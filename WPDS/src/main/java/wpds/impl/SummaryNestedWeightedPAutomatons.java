@@ -11,6 +11,7 @@
  *******************************************************************************/
 package wpds.impl;
 
+import java.util.Collections;
 import java.util.Map;
 
 import com.google.common.collect.Maps;
@@ -31,4 +32,8 @@ public class SummaryNestedWeightedPAutomatons<N extends Location, D extends Stat
 		return summaries.get(target);
 	}
 
+	public Map<D, WeightedPAutomaton<N, D, W>> getSummaryAutomata() {
+		return Collections.unmodifiableMap(summaries);
+	}
+
 }
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.impl;
+
+import java.util.Collection;
+
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+
+/**
+ * Storage backend of a {@link WeightedPAutomaton}. Holds the set of transitions, their weights
+ * and the adjacency of each state. A transition is contained in the store iff it has a weight.
+ * An automaton selects its backend by overriding {@link WeightedPAutomaton#createTransitionStore()}.
+ */
+public interface TransitionStore<N extends Location, D extends State, W extends Weight> {
+
+	/**
+	 * @return The weight of the transition or null if the transition is not contained.
+	 */
+	W getWeight(Transition<N, D> trans);
+
+	/**
+	 * Adds the transition if not yet contained and sets its weight.
+	 * 
+	 * @return The previous weight of the transition or null if the transition was not contained.
+	 */
+	W putWeight(Transition<N, D> trans, W weight);
+
+	/**
+	 * @return A snapshot of all transitions, not backed by the store.
+	 */
+	Collection<Transition<N, D>> getTransitions();
+
+	/**
+	 * @return A snapshot of all transitions starting in the state, not backed by the store.
+	 */
+	Collection<Transition<N, D>> getTransitionsOutOf(D state);
+
+	/**
+	 * @return A snapshot of all transitions ending in the state, not backed by the store.
+	 */
+	Collection<Transition<N, D>> getTransitionsInto(D state);
+
+	int size();
+}
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.impl;
+
+import java.util.Collection;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+
+import wpds.impl.Weight.NoWeight;
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+
+/**
+ * {@link TransitionStore} for automata over {@link NoWeight}. Only the adjacency of the states is
+ * stored, there is no map from transitions to weights: a transition is contained iff it is an
+ * out transition of its start state, and every contained transition has the weight it was first
+ * added with.
+ */
+public class UnweightedTransitionStore<N extends Location, D extends State, W extends Weight>
+		implements TransitionStore<N, D, W> {
+	private final Multimap<D, Transition<N, D>> transitionsOutOf = HashMultimap.create();
+	private final Multimap<D, Transition<N, D>> transitionsInto = HashMultimap.create();
+	private W weight;
+
+	@Override
+	public W getWeight(Transition<N, D> trans) {
+		return transitionsOutOf.containsEntry(trans.getStart(), trans) ? weight : null;
+	}
+
+	@Override
+	public W putWeight(Transition<N, D> trans, W weight) {
+		if (!(weight instanceof NoWeight))
+			throw new IllegalArgumentException("Weight " + weight + " cannot be stored without weights");
+		if (this.weight == null)
+			this.weight = weight;
+		if (!transitionsOutOf.put(trans.getStart(), trans))
+			return this.weight;
+		transitionsInto.put(trans.getTarget(), trans);
+		return null;
+	}
+
+	@Override
+	public Collection<Transition<N, D>> getTransitions() {
+		return Lists.newArrayList(transitionsOutOf.values());
+	}
+
+	@Override
+	public Collection<Transition<N, D>> getTransitionsOutOf(D state) {
+		return Lists.newArrayList(transitionsOutOf.get(state));
+	}
+
+	@Override
+	public Collection<Transition<N, D>> getTransitionsInto(D state) {
+		return Lists.newArrayList(transitionsInto.get(state));
+	}
+
+	@Override
+	public int size() {
+		return transitionsOutOf.size();
+	}
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Hash-consing of weights. Weight implementations build a fresh instance on every
+ * {@link Weight#extendWith(Weight)} and {@link Weight#combineWith(Weight)}, even if an equal weight
+ * exists already. A cache attached to an automaton (see
+ * {@link WeightedPAutomaton#setWeightCache(WeightCache)}) maps every weight that is stored or
+ * computed during the saturation to a canonical instance held in a weak intern table. Equal
+ * weights are then identical, which lets the automaton skip combining a weight with itself, and
+ * the results of extend and combine are memoized per pair of canonical operands in a cache of
+ * bounded size.
+ *
+ * Requires weights with value-based equals and hashCode that are consistent with extend and
+ * combine. The cache is thread-safe and can be shared between automata and solvers.
+ */
+public class WeightCache<W extends Weight> {
+	public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+	private final Interner<W> interner = Interners.newWeakInterner();
+	private final Cache<Operands, W> extend;
+	private final Cache<Operands, W> combine;
+
+	public WeightCache() {
+		this(DEFAULT_MAXIMUM_SIZE);
+	}
+
+	/**
+	 * @param maximumSize
+	 *            The maximal number of memoized results, per operation.
+	 */
+	public WeightCache(long maximumSize) {
+		this.extend = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+		this.combine = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+	}
+
+	/**
+	 * @return The canonical instance equal to the weight.
+	 */
+	public W intern(W weight) {
+		return interner.intern(weight);
+	}
+
+	/**
+	 * @return The canonical instance of left.extendWith(right).
+	 */
+	public W extend(W left, W right) {
+		left = intern(left);
+		right = intern(right);
+		Operands key = new Operands(left, right);
+		W res = extend.getIfPresent(key);
+		if (res == null) {
+			res = intern((W) left.extendWith(right));
+			extend.put(key, res);
+		}
+		return res;
+	}
+
+	/**
+	 * @return The canonical instance of left.combineWith(right).
+	 */
+	public W combine(W left, W right) {
+		left = intern(left);
+		right = intern(right);
+		Operands key = new Operands(left, right);
+		W res = combine.getIfPresent(key);
+		if (res == null) {
+			res = intern((W) left.combineWith(right));
+			combine.put(key, res);
+		}
+		return res;
+	}
+
+	/**
+	 * @return The number of memoized results of both operations.
+	 */
+	public long size() {
+		return extend.size() + combine.size();
+	}
+
+	/**
+	 * Pair of canonical weights, compared by identity.
+	 */
+	private static class Operands {
+		private final Weight left;
+		private final Weight right;
+		private final int hashCode;
+
+		private Operands(Weight left, Weight right) {
+			this.left = left;
+			this.right = right;
+			this.hashCode = 31 * System.identityHashCode(left) + System.identityHashCode(right);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Operands))
+				return false;
+			Operands other = (Operands) obj;
+			return left == other.left && right == other.right;
+		}
+	}
+}
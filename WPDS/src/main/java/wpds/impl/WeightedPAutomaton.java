@@ -11,11 +11,11 @@
  *******************************************************************************/
 package wpds.impl;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -23,21 +23,20 @@ import java.util.Map.Entry;
 import org.apache.logging.log4j.LogManager;
 
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.Multiset;
 import com.google.common.collect.Sets;
 
 import pathexpression.Edge;
 import pathexpression.IRegEx;
 import pathexpression.LabeledGraph;
-import pathexpression.PathExpressionComputer;
 import pathexpression.RegEx;
+import wpds.impl.Weight.NoWeight;
 import wpds.interfaces.Empty;
 import wpds.interfaces.ForwardDFSEpsilonVisitor;
 import wpds.interfaces.ForwardDFSVisitor;
@@ -49,43 +48,55 @@ import wpds.interfaces.WPAUpdateListener;
 
 public abstract class WeightedPAutomaton<N extends Location, D extends State, W extends Weight>
 		implements LabeledGraph<D, N> {
-	private Map<Transition<N, D>, W> transitionToWeights = new HashMap<>();
 	// Set Q is implicit
 	// Weighted Pushdown Systems and their Application to Interprocedural
 	// Dataflow Analysis
-	protected Set<Transition<N, D>> transitions = Sets.newHashSet();
+	private TransitionStore<N, D, W> transitions;
 	// set F in paper [Reps2003]
 	protected Set<D> finalState = Sets.newHashSet();
 	// set P in paper [Reps2003]
 	protected final D initialState;
 	protected Set<D> states = Sets.newHashSet();
-	private final Multimap<D, Transition<N, D>> transitionsOutOf = HashMultimap.create();
-	private final Multimap<D, Transition<N, D>> transitionsInto = HashMultimap.create();
-	private Set<WPAUpdateListener<N, D, W>> listeners = Sets.newHashSet();
-	private Multimap<D, WPAStateListener<N, D, W>> stateListeners = HashMultimap.create();
+	private final ListenerList<WPAUpdateListener<N, D, W>> listeners = new ListenerList<>();
+	private final ListenerRegistry<D, WPAStateListener<N, D, W>> stateListeners = new ListenerRegistry<>();
 	private Map<D, ForwardDFSVisitor<N, D, W>> stateToDFS = Maps.newHashMap();
 	private Map<D, ForwardDFSVisitor<N, D, W>> stateToEpsilonDFS = Maps.newHashMap();
-	private Set<WeightedPAutomaton<N, D, W>> nestedAutomatons = Sets.newHashSet();
-	private Set<NestedAutomatonListener<N, D, W>> nestedAutomataListeners = Sets.newHashSet();
+	private final ListenerList<WeightedPAutomaton<N, D, W>> nestedAutomatons = new ListenerList<>();
+	private final ListenerList<NestedAutomatonListener<N, D, W>> nestedAutomataListeners = new ListenerList<>();
 	private Map<D, ReachabilityListener<N, D>> stateToEpsilonReachabilityListener = Maps.newHashMap();
 	private Map<D, ReachabilityListener<N, D>> stateToReachabilityListener = Maps.newHashMap();
 	private Set<ReturnSiteWithWeights> connectedPushes = Sets.newHashSet();
-	private Set<ConnectPushListener<N,D,W>> conntectedPushListeners = Sets.newHashSet();
-	private Set<UnbalancedPopListener<N,D,W>> unbalancedPopListeners = Sets.newHashSet();
+	private final ListenerList<ConnectPushListener<N,D,W>> conntectedPushListeners = new ListenerList<>();
+	private final ListenerList<UnbalancedPopListener<N,D,W>> unbalancedPopListeners = new ListenerList<>();
 	private Map<UnbalancedPopEntry,W> unbalancedPops = Maps.newHashMap();
-	private Map<Transition<N, D>, W> transitionsToFinalWeights = Maps.newHashMap();
+	private FinalWeightSolver<N, D, W> finalWeights;
+	private long modifications;
 	private ForwardDFSVisitor<N, D, W> dfsVisitor;
 	private ForwardDFSVisitor<N, D, W> dfsEpsVisitor;
 	public int failedAdditions;
 	public int failedDirectAdditions;
 	private WeightedPAutomaton<N, D, W> initialAutomaton;
-	private PathExpressionComputer<D,N> pathExpressionComputer;
+	private PathExpressionCache<N, D> pathExpressions;
 	protected Set<D> unbalancedStates = Sets.newHashSet();
+	private SaturationWorklist<N, D, W> worklist;
+	private WeightCache<W> weightCache;
+	private SccIndex<N, D> sccIndex;
 	
 
 	public WeightedPAutomaton(D initialState) {
 		this.initialState = initialState;
 		this.unbalancedStates.add(initialState);
+		this.transitions = createTransitionStore();
+	}
+
+	/**
+	 * Selects the storage backend of this automaton. Override to return an
+	 * {@link IntTransitionStore} for large automata, or an {@link OffHeapTransitionStore} for
+	 * automata that do not fit into the heap. The default store is replaced by an
+	 * {@link UnweightedTransitionStore} when the first weight added is a {@link NoWeight}.
+	 */
+	protected TransitionStore<N, D, W> createTransitionStore() {
+		return new HashTransitionStore<N, D, W>();
 	}
 
 	public abstract D createState(D d, N loc);
@@ -93,7 +104,15 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 	public abstract boolean isGeneratedState(D d);
 
 	public Collection<Transition<N, D>> getTransitions() {
-		return Lists.newArrayList(transitions);
+		return transitions.getTransitions();
+	}
+
+	public Collection<Transition<N, D>> getTransitionsOutOf(D state) {
+		return transitions.getTransitionsOutOf(state);
+	}
+
+	public Collection<Transition<N, D>> getTransitionsInto(D state) {
+		return transitions.getTransitionsInto(state);
 	}
 	
 	public boolean addTransition(Transition<N, D> trans) {
@@ -118,11 +137,16 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 		s += "\tInitialStates:" + initialState + "\n";
 		s += "\tFinalStates:" + finalState + "\n";
 		s += "\tWeightToTransitions:\n\t\t";
-		s += Joiner.on("\n\t\t").join(transitionToWeights.entrySet());
+		List<String> weightToTransitions = Lists.newArrayList();
+		for (Transition<N, D> t : transitions.getTransitions()) {
+			weightToTransitions.add(t + "=" + transitions.getWeight(t));
+		}
+		s += Joiner.on("\n\t\t").join(weightToTransitions);
 
-		for(WeightedPAutomaton<N, D, W> nested : nestedAutomatons){
+		Object[] nested = nestedAutomatons.elements();
+		for (int i = 0, n = nestedAutomatons.size(); i < n; i++) {
 			s += "\n";
-			s += nested.toString();
+			s += nested[i].toString();
 		}
 		return s;
 	}
@@ -136,51 +160,19 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 	}
 
 	public String toDotString() {
-		return toDotString(Sets.<WeightedPAutomaton<N, D, W>>newHashSet());
-	}
-	
-	private String toDotString(Set<WeightedPAutomaton<N, D, W>> visited){
-		if(!visited.add(this)){
-			return  "NESTED loop: " + getInitialState();
-		}
-		String s = "digraph {\n";
-		TreeSet<String> trans = new TreeSet<String>();
-		for (D source : states) {
-			Collection<Transition<N, D>> collection = transitionsOutOf.get(source);
-			
-			for (D target : states) {
-				List<String> labels = Lists.newLinkedList();
-				for (Transition<N, D> t : collection) {
-					if (t.getTarget().equals(target)) {
-						labels.add(escapeQuotes(t.getString().toString())+ " W: "+ transitionToWeights.get(t));
-					}
-				}
-				if (!labels.isEmpty()) {
-					String v = "\t\"" + escapeQuotes(wrapIfInitialOrFinalState(source)) + "\"";
-					v += " -> \"" + escapeQuotes(wrapIfInitialOrFinalState(target)) + "\"";
-					v += "[label=\"" + Joiner.on("\\n").join(labels) + "\"];\n";
-					trans.add(v);
-				}
-			}
-			
-		}
-		s += Joiner.on("").join(trans);
-		s += "}\n";
-		s += "Transitions: " + transitions.size() +" Nested: "+nestedAutomatons.size()+"\n";
-		for(WeightedPAutomaton<N, D, W> nested : nestedAutomatons){
-			s += "NESTED -> \n";
-			s += nested.toDotString(visited);
+		StringWriter out = new StringWriter();
+		try {
+			new AutomatonWriter<N, D, W>(this).writeDot(out);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
 		}
-		s += "End nesting\n";
-		return s;
-	}
-	private String escapeQuotes(String string) {
-		return string.replace("\"", "");
+		return out.toString();
 	}
 
+
 	public String toLabelGroupedDotString() {
 		HashBasedTable<D, N, Collection<D>> groupedByTargetAndLabel = HashBasedTable.create();
-		for(Transition<N, D> t : transitions){
+		for(Transition<N, D> t : transitions.getTransitions()){
 			Collection<D> collection = groupedByTargetAndLabel.get(t.getTarget(), t.getLabel());
 			if(collection == null)
 				collection = Sets.newHashSet();
@@ -200,19 +192,19 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 		}
 		s += "}\n";
 		s += "Transitions: " + transitions.size() +"\n";
-		for(WeightedPAutomaton<N, D, W> nested : nestedAutomatons){
+		Object[] nested = nestedAutomatons.elements();
+		for (int i = 0, n = nestedAutomatons.size(); i < n; i++) {
 			s += "NESTED -> \n";
-			s += nested.toDotString();
+			s += ((WeightedPAutomaton<N, D, W>) nested[i]).toDotString();
 		}
 		return s;
 	}
 	public abstract N epsilon();
 
 	public IRegEx<N> extractLanguage(D from) {
-		PathExpressionComputer<D, N> expr = new PathExpressionComputer<>(this);
 		IRegEx<N> res = null;
 		for (D finalState : getFinalState()) {
-			IRegEx<N> regEx = expr.getExpressionBetween(from, finalState);
+			IRegEx<N> regEx = getPathExpressions().getExpressionBetween(from, finalState);
 			if (res == null) {
 				res = regEx;
 			} else {
@@ -225,8 +217,7 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 	}
 
 	public IRegEx<N> extractLanguage(D from, D to) {
-		PathExpressionComputer<D, N> expr = new PathExpressionComputer<>(this);
-		IRegEx<N> res = expr.getExpressionBetween(from, to);
+		IRegEx<N> res = getPathExpressions().getExpressionBetween(from, to);
 		if (res == null)
 			return new RegEx.EmptySet<N>();
 		return res;
@@ -238,7 +229,7 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 
 	public Set<Edge<D, N>> getEdges() {
 		Set<Edge<D, N>> trans = Sets.newHashSet();
-		for (Edge<D, N> tran : transitions){
+		for (Edge<D, N> tran : transitions.getTransitions()){
 			if(!tran.getLabel().equals(epsilon())){
 				trans.add(new Transition<N, D>(tran.getTarget(), tran.getLabel(), tran.getStart()));
 			}
@@ -251,30 +242,71 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 	};
 
 	public boolean addWeightForTransition(Transition<N, D> trans, W weight) {
+		if (!storeWeight(trans, weight))
+			return false;
+		propagate(trans);
+		return true;
+	}
+
+	/**
+	 * Adds the transitions with weight one, see {@link #addWeightsForTransitions(Map)}.
+	 */
+	public boolean addTransitions(Collection<Transition<N, D>> trans) {
+		Map<Transition<N, D>, W> weights = Maps.newLinkedHashMap();
+		for (Transition<N, D> t : trans) {
+			weights.put(t, getOne());
+		}
+		return addWeightsForTransitions(weights);
+	}
+
+	/**
+	 * Adds the weights of all transitions before any listener is notified. Each transition whose
+	 * weight changed is then dispatched once, with its weight combined over the whole batch.
+	 *
+	 * @return true if the weight of at least one transition changed.
+	 */
+	public boolean addWeightsForTransitions(Map<Transition<N, D>, W> weights) {
+		List<Transition<N, D>> changed = Lists.newArrayList();
+		for (Entry<Transition<N, D>, W> e : weights.entrySet()) {
+			if (storeWeight(e.getKey(), e.getValue()))
+				changed.add(e.getKey());
+		}
+		for (Transition<N, D> t : changed) {
+			propagate(t);
+		}
+		return !changed.isEmpty();
+	}
+
+	/**
+	 * Combines the weight into the stored weight of the transition without notifying listeners.
+	 *
+	 * @return true if the stored weight changed.
+	 */
+	private boolean storeWeight(Transition<N, D> trans, W weight) {
 		if (weight == null)
 			throw new IllegalArgumentException("Weight must not be null!");
 		if (trans.getStart().equals(trans.getTarget()) && trans.getLabel().equals(epsilon())) {
 			failedAdditions++;
 			return false;
 		}
-		transitionsOutOf.get(trans.getStart()).add(trans);
-		transitionsInto.get(trans.getTarget()).add(trans);
 		states.add(trans.getTarget());
 		states.add(trans.getStart());
-		boolean added = transitions.add(trans);
-		W oldWeight = transitionToWeights.get(trans);
-		W newWeight = (W) (oldWeight == null ? weight : oldWeight.combineWith(weight));
+		if (weight instanceof NoWeight)
+			return storeUnweighted(trans, weight);
+		if (weightCache != null)
+			weight = weightCache.intern(weight);
+		W oldWeight = transitions.getWeight(trans);
+		if (oldWeight == weight) {
+			failedAdditions++;
+			return false;
+		}
+		boolean added = oldWeight == null;
+		W newWeight = (oldWeight == null ? weight : combine(oldWeight, weight));
 		if (!newWeight.equals(oldWeight)) {
-			transitionToWeights.put(trans, newWeight);
-			for (WPAUpdateListener<N, D, W> l : Lists.newArrayList(listeners)) {
-				l.onWeightAdded(trans, newWeight, this);
-			}
-			for (WPAStateListener<N, D, W> l : Lists.newArrayList(stateListeners.get(trans.getStart()))) {
-				l.onOutTransitionAdded(trans, newWeight, this);
-			}
-			for (WPAStateListener<N, D, W> l : Lists.newArrayList(stateListeners.get(trans.getTarget()))) {
-				l.onInTransitionAdded(trans, newWeight, this);
-			}
+			transitions.putWeight(trans, newWeight);
+			modifications++;
+			if (added)
+				transitionAdded(trans);
 			return true;
 		}
 		if(!added)
@@ -282,25 +314,177 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 		return added;
 	}
 
+	private void propagate(Transition<N, D> trans) {
+		if (worklist != null) {
+			worklist.schedule(this, trans);
+		} else {
+			dispatch(trans);
+		}
+	}
+
+	/**
+	 * Fast path for automata over {@link NoWeight}: the weight never changes, so a transition is
+	 * stored exactly once, when it is added, without combining and comparing weights.
+	 */
+	private boolean storeUnweighted(Transition<N, D> trans, W weight) {
+		if (transitions.size() == 0 && transitions.getClass() == HashTransitionStore.class)
+			transitions = new UnweightedTransitionStore<N, D, W>();
+		if (transitions.getWeight(trans) != null) {
+			failedAdditions++;
+			return false;
+		}
+		transitions.putWeight(trans, weight);
+		modifications++;
+		transitionAdded(trans);
+		return true;
+	}
+
+	/**
+	 * Adds transitions in bulk without notifying listeners, used to restore an
+	 * {@link AutomatonSnapshot}. Listeners registered afterwards see the transitions when they are
+	 * replayed.
+	 */
+	void loadTransitions(List<Transition<N, D>> loaded, List<W> loadedWeights) {
+		if (transitions.size() > 0)
+			throw new IllegalStateException("Transitions can only be loaded into an empty automaton");
+		if (!loadedWeights.isEmpty() && loadedWeights.get(0) instanceof NoWeight
+				&& transitions.getClass() == HashTransitionStore.class)
+			transitions = new UnweightedTransitionStore<N, D, W>();
+		for (int i = 0; i < loaded.size(); i++) {
+			Transition<N, D> trans = loaded.get(i);
+			W weight = loadedWeights.get(i);
+			if (weightCache != null)
+				weight = weightCache.intern(weight);
+			states.add(trans.getStart());
+			states.add(trans.getTarget());
+			transitions.putWeight(trans, weight);
+			transitionAdded(trans);
+		}
+		modifications++;
+	}
+
+	/**
+	 * Updates the indexes that are maintained incrementally once they are in use.
+	 */
+	private void transitionAdded(Transition<N, D> trans) {
+		if (sccIndex != null)
+			indexTransition(trans);
+		if (pathExpressions != null)
+			pathExpressions.transitionAdded(trans);
+	}
+
+	/**
+	 * Notifies the listeners without copying the listener lists: each list is iterated up to the size
+	 * it has when its loop starts. Listeners registered by a callback receive the transition through
+	 * their replay instead.
+	 */
+	void dispatch(Transition<N, D> trans) {
+		W weight = transitions.getWeight(trans);
+		Object[] ls = listeners.elements();
+		for (int i = 0, n = listeners.size(); i < n; i++) {
+			((WPAUpdateListener<N, D, W>) ls[i]).onWeightAdded(trans, weight, this);
+		}
+		ListenerList<WPAStateListener<N, D, W>> out = stateListeners.get(trans.getStart());
+		if (out != null) {
+			ls = out.elements();
+			for (int i = 0, n = out.size(); i < n; i++) {
+				((WPAStateListener<N, D, W>) ls[i]).onOutTransitionAdded(trans, weight, this);
+			}
+		}
+		ListenerList<WPAStateListener<N, D, W>> in = stateListeners.get(trans.getTarget());
+		if (in != null) {
+			ls = in.elements();
+			for (int i = 0, n = in.size(); i < n; i++) {
+				((WPAStateListener<N, D, W>) ls[i]).onInTransitionAdded(trans, weight, this);
+			}
+		}
+	}
+
+	/**
+	 * Attaches an explicit work queue to this automaton and all its nested automata. From then on,
+	 * listeners are notified from the queue instead of recursively from within
+	 * {@link #addWeightForTransition(Transition, Weight)}.
+	 */
+	public void setSaturationWorklist(SaturationWorklist<N, D, W> worklist) {
+		this.worklist = worklist;
+		Object[] nested = nestedAutomatons.elements();
+		for (int i = 0, n = nestedAutomatons.size(); i < n; i++) {
+			((WeightedPAutomaton<N, D, W>) nested[i]).setSaturationWorklist(worklist);
+		}
+	}
+
+	public SaturationWorklist<N, D, W> getSaturationWorklist() {
+		return worklist;
+	}
+
+	/**
+	 * Attaches a hash-consing cache to this automaton and all its nested automata. Stored weights
+	 * are then canonical instances, adding a weight that is identical to the stored one returns
+	 * immediately, and the saturation memoizes extend and combine through the cache.
+	 */
+	public void setWeightCache(WeightCache<W> weightCache) {
+		this.weightCache = weightCache;
+		Object[] nested = nestedAutomatons.elements();
+		for (int i = 0, n = nestedAutomatons.size(); i < n; i++) {
+			((WeightedPAutomaton<N, D, W>) nested[i]).setWeightCache(weightCache);
+		}
+	}
+
+	public WeightCache<W> getWeightCache() {
+		return weightCache;
+	}
+
+	W extend(W weight, W other) {
+		if (weightCache != null)
+			return weightCache.extend(weight, other);
+		return (W) weight.extendWith(other);
+	}
+
+	W combine(W weight, W other) {
+		if (weightCache != null)
+			return weightCache.combine(weight, other);
+		return (W) weight.combineWith(other);
+	}
+
 	public W getWeightFor(Transition<N, D> trans) {
-		return transitionToWeights.get(trans);
+		return transitions.getWeight(trans);
 	}
 
-	public void registerListener(WPAUpdateListener<N, D, W> listener) {
+	public void registerListener(final WPAUpdateListener<N, D, W> listener) {
 		if (!listeners.add(listener))
 			return;
-		for (Entry<Transition<N, D>, W> transAndWeight : Lists.newArrayList(transitionToWeights.entrySet())) {
-			listener.onWeightAdded(transAndWeight.getKey(), transAndWeight.getValue(), this);
+		if (worklist != null) {
+			worklist.scheduleReplay(new Runnable() {
+				@Override
+				public void run() {
+					replay(listener);
+				}
+			});
+		} else {
+			replay(listener);
 		}
-		for(WeightedPAutomaton<N, D, W> nested : Lists.newArrayList(nestedAutomatons)){
-			nested.registerListener(listener);
+	}
+
+	private void replay(WPAUpdateListener<N, D, W> listener) {
+		if (transitions instanceof OffHeapTransitionStore) {
+			OffHeapTransitionStore<N, D, W> store = (OffHeapTransitionStore<N, D, W>) transitions;
+			for (int id = 0, n = store.size(); id < n; id++) {
+				listener.onWeightAdded(store.getTransition(id), store.getWeight(id), this);
+			}
+		} else {
+			for (Transition<N, D> t : transitions.getTransitions()) {
+				listener.onWeightAdded(t, transitions.getWeight(t), this);
+			}
+		}
+		Object[] nested = nestedAutomatons.elements();
+		for (int i = 0, n = nestedAutomatons.size(); i < n; i++) {
+			((WeightedPAutomaton<N, D, W>) nested[i]).registerListener(listener);
 		}
 	}
 
-	private static int count = 0;
+	private static final AtomicInteger count = new AtomicInteger();
 	private void increaseListenerCount(WPAStateListener<N, D, W> l) {
-		count++;
-		if(count % 100000 == 0) {
+		if(count.incrementAndGet() % 100000 == 0) {
 			onManyStateListenerRegister();
 		}
 	}
@@ -308,22 +492,87 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 	public void onManyStateListenerRegister() {
 	}
 
-	public void registerListener(WPAStateListener<N, D, W> l) {
+	/**
+	 * @return The number of listeners registered at this automaton per listener class, excluding
+	 *         the listeners of nested automata.
+	 */
+	public Multiset<Class<?>> getListenerCounts() {
+		Multiset<Class<?>> counts = stateListeners.countByClass();
+		listeners.countByClass(counts);
+		conntectedPushListeners.countByClass(counts);
+		unbalancedPopListeners.countByClass(counts);
+		nestedAutomataListeners.countByClass(counts);
+		return counts;
+	}
+
+	public void registerListener(final WPAStateListener<N, D, W> l) {
 		if (!stateListeners.put(l.getState(), l)) {
 			return;
 		}
 		increaseListenerCount(l);
-		for (Transition<N, D> t : Lists.newArrayList(transitionsOutOf.get(l.getState()))) {
-			l.onOutTransitionAdded(t,transitionToWeights.get(t), this);
+		if (worklist != null) {
+			worklist.scheduleReplay(new Runnable() {
+				@Override
+				public void run() {
+					replay(l);
+				}
+			});
+		} else {
+			replay(l);
+		}
+	}
+
+	/**
+	 * Notifies the listener of the transitions out of its state in this automaton and its nested
+	 * automata, without registering it.
+	 */
+	void notifyOutTransitions(WPAStateListener<N, D, W> l) {
+		replayOut(l);
+		Object[] nested = nestedAutomatons.elements();
+		for (int i = 0, n = nestedAutomatons.size(); i < n; i++) {
+			((WeightedPAutomaton<N, D, W>) nested[i]).notifyOutTransitions(l);
 		}
-		for (Transition<N, D> t : Lists.newArrayList(transitionsInto.get(l.getState()))) {
-			l.onInTransitionAdded(t,transitionToWeights.get(t), this);
+	}
+
+	private void replay(WPAStateListener<N, D, W> l) {
+		replayOut(l);
+		replayIn(l);
+
+		Object[] nested = nestedAutomatons.elements();
+		for (int i = 0, n = nestedAutomatons.size(); i < n; i++) {
+			((WeightedPAutomaton<N, D, W>) nested[i]).registerListener(l);
 		}
 
-		for(WeightedPAutomaton<N, D, W> nested : Lists.newArrayList(nestedAutomatons)){
-			nested.registerListener(l);
+	}
+
+	/**
+	 * Walks the adjacency of an {@link OffHeapTransitionStore} in place. Transitions added while
+	 * walking are prepended to the adjacency and reach the listener through its registration.
+	 */
+	private void replayOut(WPAStateListener<N, D, W> l) {
+		if (transitions instanceof OffHeapTransitionStore) {
+			OffHeapTransitionStore<N, D, W> store = (OffHeapTransitionStore<N, D, W>) transitions;
+			for (int id = store.firstOutOf(l.getState()); id >= 0; id = store.nextOutOf(id)) {
+				l.onOutTransitionAdded(store.getTransition(id), store.getWeight(id), this);
+			}
+			return;
+		}
+		for (Transition<N, D> t : transitions.getTransitionsOutOf(l.getState())) {
+			l.onOutTransitionAdded(t, transitions.getWeight(t), this);
 		}
+	}
 
+	private void replayIn(WPAStateListener<N, D, W> l) {
+		if (transitions instanceof OffHeapTransitionStore) {
+			OffHeapTransitionStore<N, D, W> store = (OffHeapTransitionStore<N, D, W>) transitions;
+			for (int id = store.firstInto(l.getState()); id >= 0; id = store.nextInto(id)) {
+				l.onInTransitionAdded(store.getTransition(id), store.getWeight(id), this);
+			}
+			return;
+		}
+		for (Transition<N, D> t : transitions.getTransitionsInto(l.getState())) {
+			l.onInTransitionAdded(t, transitions.getWeight(t), this);
+		}
 	}
 
 	public void addFinalState(D state) {
@@ -349,8 +598,9 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 			dfsEpsVisitor = new ForwardDFSEpsilonVisitor<N, D, W>(this);
 			this.registerListener(dfsEpsVisitor);
 		}
-		for(WeightedPAutomaton<N, D, W> nested : Lists.newLinkedList(nestedAutomatons)){
-			nested.registerDFSEpsilonListener(state, l);
+		Object[] nested = nestedAutomatons.elements();
+		for (int i = 0, n = nestedAutomatons.size(); i < n; i++) {
+			((WeightedPAutomaton<N, D, W>) nested[i]).registerDFSEpsilonListener(state, l);
 		}
 		dfsEpsVisitor.registerListener(state,l);
 	}
@@ -390,6 +640,11 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 			public boolean isGeneratedState(D d) {
 				return WeightedPAutomaton.this.isGeneratedState(d);
 			}
+
+			@Override
+			protected TransitionStore<N, D, W> createTransitionStore() {
+				return WeightedPAutomaton.this.createTransitionStore();
+			}
 			
 			@Override
 			protected Map<D, ForwardDFSVisitor<N, D, W>> getStateToDFS() {
@@ -409,6 +664,8 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 				return "NESTED: \n" + super.toString();
 			}
 		};
+		nested.setSaturationWorklist(worklist);
+		nested.setWeightCache(weightCache);
 		addNestedAutomaton(nested);
 		return nested;
 	}
@@ -416,7 +673,9 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 	public void reconnectPush(N callSite, N returnSite,D returnedFact, W returnedWeight) {
 		WeightedPAutomaton<N, D, W>.ReturnSiteWithWeights returnSiteWithWeights = new ReturnSiteWithWeights(callSite, returnSite, returnedFact, returnedWeight);
 		if(connectedPushes.add(returnSiteWithWeights )){
-			for(ConnectPushListener<N, D, W> l : Lists.newArrayList(conntectedPushListeners)){
+			Object[] ls = conntectedPushListeners.elements();
+			for (int i = 0, n = conntectedPushListeners.size(); i < n; i++) {
+				ConnectPushListener<N, D, W> l = (ConnectPushListener<N, D, W>) ls[i];
 				l.connect(returnSiteWithWeights.callSite, returnSiteWithWeights.returnSite, returnSiteWithWeights.returnedFact, returnSiteWithWeights.returnedWeight);
 			}
 		}
@@ -444,7 +703,9 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 		W newVal = (oldVal == null ? weight : (W) oldVal.combineWith(weight));
 		if(!newVal.equals(oldVal)){
 			unbalancedPops.put(t, newVal);
-			for(UnbalancedPopListener<N, D, W> l : Lists.newArrayList(unbalancedPopListeners)){
+			Object[] ls = unbalancedPopListeners.elements();
+			for (int i = 0, n = unbalancedPopListeners.size(); i < n; i++) {
+				UnbalancedPopListener<N, D, W> l = (UnbalancedPopListener<N, D, W>) ls[i];
 				l.unbalancedPop(targetState,trans, newVal);
 			}
 		}
@@ -566,70 +827,52 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 		
 	}
 
+	/**
+	 * @return For each transition that leads to an unbalanced state, the weight of the path from
+	 *         the transition to that state. Paths continue through generated states only. The map
+	 *         is recomputed when the automaton has changed since the previous call.
+	 */
 	public Map<Transition<N,D>, W> getTransitionsToFinalWeights() {
-		for(D s : unbalancedStates) {
-			registerListener(new ValueComputationListener(s,getOne()));
-		}
-		return transitionsToFinalWeights;
+		if (finalWeights == null)
+			finalWeights = new FinalWeightSolver<N, D, W>(this);
+		return finalWeights.getWeights();
 	}
-	
-	private class ValueComputationListener extends WPAStateListener<N, D, W>{
-
-		private W weight;
 
-		public ValueComputationListener(D state, W weight) {
-			super(state);
-			this.weight = weight;
-		}
-
-		@Override
-		public void onOutTransitionAdded(Transition<N,D> t, W w, WeightedPAutomaton<N, D, W> aut) {
-		}
-
-		@Override
-		public void onInTransitionAdded(Transition<N,D> t, W w, WeightedPAutomaton<N, D, W> aut) {
-			W newWeight = (W) weight.extendWith(w);
-			W weightAtTarget = transitionsToFinalWeights.get(t);
-			W newVal = (weightAtTarget == null ? newWeight : (W) weightAtTarget.combineWith(newWeight));
-			transitionsToFinalWeights.put(t, newVal);
-			if(isGeneratedState(t.getStart())){
-				registerListener(new ValueComputationListener(t.getStart(),newVal));
-			}
-		}
+	/**
+	 * Lets {@link #getTransitionsToFinalWeights()} settle states in order of their weights instead
+	 * of iterating cyclic components to a fixed point. Only valid for idempotent semirings whose
+	 * combine picks the smaller of two weights in the given order and whose extend never yields a
+	 * weight smaller than its operands.
+	 */
+	public void setWeightOrder(Comparator<? super W> order) {
+		if (finalWeights == null)
+			finalWeights = new FinalWeightSolver<N, D, W>(this);
+		finalWeights.setOrder(order);
+	}
 
-		@Override
-		public int hashCode() {
-			final int prime = 31;
-			int result = super.hashCode();
-			result = prime * result + getOuterType().hashCode();
-			result = prime * result + ((weight == null) ? 0 : weight.hashCode());
-			return result;
-		}
+	/**
+	 * @return A counter that increases whenever a transition weight or the unbalanced states change.
+	 */
+	long modifications() {
+		return modifications;
+	}
 
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj)
-				return true;
-			if (!super.equals(obj))
-				return false;
-			if (getClass() != obj.getClass())
-				return false;
-			ValueComputationListener other = (ValueComputationListener) obj;
-			if (!getOuterType().equals(other.getOuterType()))
-				return false;
-			if (weight == null) {
-				if (other.weight != null)
-					return false;
-			} else if (!weight.equals(other.weight))
-				return false;
-			return true;
-		}
+	/**
+	 * @return The number of transitions, without taking a snapshot of them.
+	 */
+	int transitionCount() {
+		return transitions.size();
+	}
 
-		private WeightedPAutomaton getOuterType() {
-			return WeightedPAutomaton.this;
+	List<WeightedPAutomaton<N, D, W>> nestedAutomata() {
+		List<WeightedPAutomaton<N, D, W>> res = Lists.newArrayList();
+		Object[] nested = nestedAutomatons.elements();
+		for (int i = 0, n = nestedAutomatons.size(); i < n; i++) {
+			res.add((WeightedPAutomaton<N, D, W>) nested[i]);
 		}
-
+		return res;
 	}
+
 	public boolean nested() {
 		return false;
 	}
@@ -637,18 +880,24 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 	public void addNestedAutomaton(WeightedPAutomaton<N, D, W> nested) {
 		if(!nestedAutomatons.add(nested))
 			return;
-		for(WPAStateListener<N, D, W> e : Lists.newArrayList(stateListeners.values())){
-			nested.registerListener(e);
+		for(ListenerList<WPAStateListener<N, D, W>> forState : stateListeners.lists()){
+			Object[] ls = forState.elements();
+			for (int i = 0, n = forState.size(); i < n; i++) {
+				nested.registerListener((WPAStateListener<N, D, W>) ls[i]);
+			}
 		}
-		for(WPAUpdateListener<N, D, W> e : Lists.newArrayList(listeners)){
-			nested.registerListener(e);
+		Object[] ls = listeners.elements();
+		for (int i = 0, n = listeners.size(); i < n; i++) {
+			nested.registerListener((WPAUpdateListener<N, D, W>) ls[i]);
 		}
-		for(ConnectPushListener<N, D, W> e : Lists.newArrayList(conntectedPushListeners)){
-			nested.registerConnectPushListener(e);
+		ls = conntectedPushListeners.elements();
+		for (int i = 0, n = conntectedPushListeners.size(); i < n; i++) {
+			nested.registerConnectPushListener((ConnectPushListener<N, D, W>) ls[i]);
 		}
 
-		for(UnbalancedPopListener<N, D, W> e : Lists.newArrayList(unbalancedPopListeners)){
-			nested.registerUnbalancedPopListener(e);
+		ls = unbalancedPopListeners.elements();
+		for (int i = 0, n = unbalancedPopListeners.size(); i < n; i++) {
+			nested.registerUnbalancedPopListener((UnbalancedPopListener<N, D, W>) ls[i]);
 		}
 
 		for(Entry<D, ReachabilityListener<N, D>> e : Lists.newArrayList(stateToEpsilonReachabilityListener.entrySet())){
@@ -662,7 +911,9 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 		}
 		
 
-		for(NestedAutomatonListener<N, D, W> e : Lists.newArrayList(nestedAutomataListeners)){
+		ls = nestedAutomataListeners.elements();
+		for (int i = 0, n = nestedAutomataListeners.size(); i < n; i++) {
+			NestedAutomatonListener<N, D, W> e = (NestedAutomatonListener<N, D, W>) ls[i];
 			e.nestedAutomaton(this, nested);
 			nested.registerNestedAutomatonListener(e);
 		}
@@ -672,8 +923,9 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 		if(!nestedAutomataListeners.add(l)){
 			return;
 		}
-		for(WeightedPAutomaton<N, D, W> nested : Lists.newArrayList(nestedAutomatons)){
-			l.nestedAutomaton(this, nested);
+		Object[] nested = nestedAutomatons.elements();
+		for (int i = 0, n = nestedAutomatons.size(); i < n; i++) {
+			l.nestedAutomaton(this, (WeightedPAutomaton<N, D, W>) nested[i]);
 		}
 	}
 	
@@ -686,79 +938,65 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 	}
 
 	public IRegEx<N> toRegEx(D start, D end){
-		if(pathExpressionComputer == null) {
-			pathExpressionComputer = new PathExpressionComputer<D,N>(this);
-		}
-		
-		return RegEx.reverse(pathExpressionComputer.getExpressionBetween(end, start));
+		return RegEx.reverse(getPathExpressions().getExpressionBetween(end, start));
 	}
 
-	public boolean containsLoop() {
-		//Performs a backward DFS
-		HashSet<D> visited = Sets.newHashSet();
-		LinkedList<D> worklist = Lists.newLinkedList();
-		worklist.add(initialState);
-		while(!worklist.isEmpty()) {
-			D pop = worklist.pop();
-			visited.add(pop);
-			Collection<Transition<N, D>> inTrans = transitionsInto.get(pop);
-			for(Transition<N, D> t : inTrans) {
-				if(t.getLabel().equals(this.epsilon()))
-					continue;
-				if(!isGeneratedState(t.getStart()))
-					continue;
-				if(visited.contains(t.getStart())) {
-					return true;
-				}
-				worklist.add(t.getStart());
-			}
+	/**
+	 * Batch version of {@link #toRegEx(Object, Object)} for many start states and the same end
+	 * state. The end state is the source of all expressions in the path-expression graph, so they
+	 * are all solved by one path-expression computation.
+	 */
+	public Map<D, IRegEx<N>> toRegEx(Collection<D> starts, D end) {
+		Map<D, IRegEx<N>> res = getPathExpressions().getExpressionsBetween(end, starts);
+		for (Map.Entry<D, IRegEx<N>> e : res.entrySet()) {
+			e.setValue(RegEx.reverse(e.getValue()));
 		}
-		return false;
+		return res;
 	}
-	
-	public Set<N> getLongestPath() {
-		//Performs a backward DFS
-		LinkedList<D> worklist = Lists.newLinkedList();
-		worklist.add(initialState);
-		Map<D,Set<N>> pathReachingD = Maps.newHashMap();
-		while(!worklist.isEmpty()) {
-			D pop = worklist.pop();
-			Set<N> atCurr = getOrCreate(pathReachingD,pop);
-			Collection<Transition<N, D>> inTrans = transitionsInto.get(pop);
-			for(Transition<N, D> t : inTrans) {
-				if(t.getLabel().equals(this.epsilon()))
-					continue;
-				D next = t.getStart();
-				if(!isGeneratedState(next))
-					continue;
-				if(next.equals(pop))
-					continue;
-				Set<N> atNext = getOrCreate(pathReachingD,next);
-				Set<N> newAtCurr = Sets.newHashSet(atCurr);
-				if(newAtCurr.add(t.getLabel())) {
-					boolean addAll = atNext.addAll(newAtCurr);
-					if(addAll) {
-						worklist.add(next);
-					}
-				}
-			}
-		}
-		Set<N> longest = Sets.newHashSet();
-		for(Set<N> l : pathReachingD.values()) {
-			if(longest.size() < l.size()) {
-				longest = l;
+
+	/**
+	 * Path expressions are cached until a transition is added that lies on a path from the source
+	 * of the expression, see {@link PathExpressionCache}.
+	 */
+	private PathExpressionCache<N, D> getPathExpressions() {
+		if (pathExpressions == null)
+			pathExpressions = new PathExpressionCache<N, D>(this);
+		return pathExpressions;
+	}
+
+	/**
+	 * @return true if the initial state is reachable from a cycle of generated states. Epsilon
+	 *         transitions and transitions out of states that are not generated are ignored.
+	 */
+	public boolean containsLoop() {
+		return getSccIndex().containsLoop();
+	}
+
+	/**
+	 * @return The labels of a longest acyclic path into the initial state, in the order of the path.
+	 *         Cycles are collapsed, and the same edges as for {@link #containsLoop()} are considered.
+	 */
+	public List<N> getLongestPath() {
+		return getSccIndex().getLongestPath();
+	}
+
+	/**
+	 * The index is built on the first query and then maintained as transitions are added, so
+	 * automata that are never queried do not pay for it.
+	 */
+	private SccIndex<N, D> getSccIndex() {
+		if (sccIndex == null) {
+			sccIndex = new SccIndex<N, D>(initialState);
+			for (Transition<N, D> t : transitions.getTransitions()) {
+				indexTransition(t);
 			}
 		}
-		return longest;
+		return sccIndex;
 	}
 
-	private Set<N> getOrCreate(Map<D,Set<N>> pathReachingD, D pop) {
-		Set<N> collection = pathReachingD.get(pop);
-		if(collection == null) {
-			collection = Sets.newHashSet();
-			pathReachingD.put(pop, collection);
-		}
-		return collection;
+	private void indexTransition(Transition<N, D> t) {
+		if (!t.getLabel().equals(epsilon()) && isGeneratedState(t.getStart()))
+			sccIndex.addEdge(t.getStart(), t.getLabel(), t.getTarget());
 	}
 	
 	public boolean isUnbalancedState(D target) {
@@ -766,7 +1004,8 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 	} 
 	
 	public void addUnbalancedState(D state) {
-		unbalancedStates.add(state);
+		if (unbalancedStates.add(state))
+			modifications++;
 	}
 
 	public void clearListener() {
@@ -11,10 +11,11 @@
  *******************************************************************************/
 package wpds.impl;
 
-import java.util.HashSet;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
@@ -32,6 +33,9 @@ public class WeightedPushdownSystem<N extends Location, D extends State, W exten
 	protected final Set<PopRule<N, D, W>> popRules = Sets.newHashSet();
 	protected final Set<NormalRule<N, D, W>> normalRules = Sets.newHashSet();
 	protected final Set<WPDSUpdateListener<N, D, W>> listeners = Sets.newHashSet();
+	private final RuleIndex<N, D, W> ruleIndex = new RuleIndex<>();
+	private SaturationWorklist<N, D, W> saturationWorklist;
+	private WeightCache<W> weightCache;
 
 	@Override
 	public boolean addRule(Rule<N, D, W> rule) {
@@ -44,14 +48,43 @@ public class WeightedPushdownSystem<N extends Location, D extends State, W exten
 		return false;
 	}
 
+	/**
+	 * Adds and indexes all rules before any listener is notified, then notifies the listeners of
+	 * the new rules in one pass. Rules that are already contained are skipped.
+	 *
+	 * @return true if at least one rule was added.
+	 */
+	@Override
+	public boolean addRules(Collection<? extends Rule<N, D, W>> rules) {
+		List<Rule<N, D, W>> added = Lists.newArrayList();
+		for (Rule<N, D, W> rule : rules) {
+			if (addRuleInternal(rule))
+				added.add(rule);
+		}
+		if (added.isEmpty())
+			return false;
+		List<WPDSUpdateListener<N, D, W>> ls = Lists.newArrayList(listeners);
+		for (Rule<N, D, W> rule : added) {
+			for (WPDSUpdateListener<N, D, W> l : ls) {
+				l.onRuleAdded(rule);
+			}
+		}
+		return true;
+	}
+
 	private boolean addRuleInternal(Rule<N, D, W> rule) {
+		boolean added;
 		if (rule instanceof PushRule)
-			return pushRules.add((PushRule) rule);
+			added = pushRules.add((PushRule) rule);
 		else if (rule instanceof PopRule)
-			return popRules.add((PopRule) rule);
+			added = popRules.add((PopRule) rule);
 		else if (rule instanceof NormalRule)
-			return normalRules.add((NormalRule) rule);
-		throw new RuntimeException("Try to add a rule of wrong type");
+			added = normalRules.add((NormalRule) rule);
+		else
+			throw new RuntimeException("Try to add a rule of wrong type");
+		if (added)
+			ruleIndex.add(rule);
+		return added;
 	}
 
 	public void registerUpdateListener(WPDSUpdateListener<N, D, W> listener) {
@@ -89,60 +122,62 @@ public class WeightedPushdownSystem<N extends Location, D extends State, W exten
 
 	@Override
 	public Set<Rule<N, D, W>> getRulesStarting(D start, N string) {
-		Set<Rule<N, D, W>> result = new HashSet<>();
-		getRulesStartingWithinSet(start, string, popRules, result);
-		getRulesStartingWithinSet(start, string, normalRules, result);
-		getRulesStartingWithinSet(start, string, pushRules, result);
-		return result;
-	}
-
-	private void getRulesStartingWithinSet(D start, N string, Set<? extends Rule<N, D, W>> rules,
-			Set<Rule<N, D, W>> res) {
-		for (Rule<N, D, W> r : rules) {
-			if (r.getS1().equals(start) && (r.getL1().equals(string) || r.getL1() instanceof Wildcard))
-				res.add(r);
-			if (string instanceof Wildcard && r.getS1().equals(start)) {
-				res.add(r);
-			}
+		if (string instanceof Wildcard) {
+			return Sets.newHashSet(ruleIndex.getRulesStartingIn(start));
 		}
+		Set<Rule<N, D, W>> result = Sets.newHashSet(ruleIndex.getRulesStarting(start, string));
+		result.addAll(ruleIndex.getWildcardRulesStartingIn(start));
+		return result;
 	}
 
 	@Override
 	public Set<NormalRule<N, D, W>> getNormalRulesEnding(D start, N string) {
-		Set<NormalRule<N, D, W>> allRules = getNormalRules();
-		Set<NormalRule<N, D, W>> result = new HashSet<>();
-		for (NormalRule<N, D, W> r : allRules) {
-			if (r.getS2().equals(start) && r.getL2().equals(string))
-				result.add(r);
-		}
-		return result;
+		return ruleIndex.getNormalRulesEnding(start, string);
 	}
 
 	@Override
 	public Set<PushRule<N, D, W>> getPushRulesEnding(D start, N string) {
-		Set<PushRule<N, D, W>> allRules = getPushRules();
-		Set<PushRule<N, D, W>> result = new HashSet<>();
-		for (PushRule<N, D, W> r : allRules) {
-			if (r.getS2().equals(start) && r.getL2().equals(string))
-				result.add(r);
-		}
-		return result;
+		return ruleIndex.getPushRulesEnding(start, string);
+	}
+
+	@Override
+	public Set<PushRule<N, D, W>> getPushRulesWithCallSite(N callSite) {
+		return ruleIndex.getPushRulesWithCallSite(callSite);
+	}
+
+	protected RuleIndex<N, D, W> getRuleIndex() {
+		return ruleIndex;
 	}
 
 	@Override
 	public Set<D> getStates() {
-		Set<D> states = Sets.newHashSet();
-		for (Rule<N, D, W> r : getAllRules()) {
-			states.add(r.getS1());
-			states.add(r.getS2());
-		}
-		return states;
+		return Sets.newHashSet(ruleIndex.getStates());
+	}
+
+	/**
+	 * Selects the worklist-driven post* engine for all subsequent calls to poststar. If no
+	 * worklist is set, saturation propagates recursively through the automaton listeners.
+	 */
+	public void setSaturationWorklist(SaturationWorklist<N, D, W> worklist) {
+		this.saturationWorklist = worklist;
+	}
+
+	public SaturationWorklist<N, D, W> getSaturationWorklist() {
+		return saturationWorklist;
+	}
+
+	/**
+	 * Attaches the hash-consing cache to the automata of all subsequent calls to poststar, see
+	 * {@link WeightedPAutomaton#setWeightCache(WeightCache)}.
+	 */
+	public void setWeightCache(WeightCache<W> weightCache) {
+		this.weightCache = weightCache;
 	}
 
 	@Override
 	public void poststar(WeightedPAutomaton<N, D, W> initialAutomaton,
 			final NestedWeightedPAutomatons<N,D,W> summaries) {
-		new PostStar<N, D, W>() {
+		saturate(initialAutomaton, new PostStar<N, D, W>() {
 
 			@Override
 			public void putSummaryAutomaton(D target, WeightedPAutomaton<N, D, W> aut) {
@@ -153,12 +188,12 @@ public class WeightedPushdownSystem<N extends Location, D extends State, W exten
 			public WeightedPAutomaton<N, D, W> getSummaryAutomaton(D target) {
 				return summaries.getSummaryAutomaton(target);
 			};
-		}.poststar(this, initialAutomaton);
+		});
 	}
 
 	@Override
 	public void poststar(final WeightedPAutomaton<N, D, W> initialAutomaton) {
-		new PostStar<N, D, W>(){
+		saturate(initialAutomaton, new PostStar<N, D, W>(){
 
 			@Override
 			public void putSummaryAutomaton(D target, WeightedPAutomaton<N, D, W> aut) {
@@ -168,7 +203,30 @@ public class WeightedPushdownSystem<N extends Location, D extends State, W exten
 			@Override
 			public WeightedPAutomaton<N, D, W> getSummaryAutomaton(D target) {
 				return initialAutomaton;
-			}}.poststar(this, initialAutomaton);
+			}});
+	}
+
+	/**
+	 * Attaches the worklist and the weight cache of this system to the automaton and starts postStar
+	 * on it.
+	 */
+	void saturate(WeightedPAutomaton<N, D, W> initialAutomaton, PostStar<N, D, W> postStar) {
+		if (saturationWorklist != null)
+			initialAutomaton.setSaturationWorklist(saturationWorklist);
+		if (weightCache != null)
+			initialAutomaton.setWeightCache(weightCache);
+		postStar.poststar(this, initialAutomaton);
+	}
+
+	/**
+	 * Saturates the automaton with the rules of this system on the given pool, see
+	 * {@link ParallelPostStar}. Intended for large systems that are built completely before the
+	 * analysis starts: rules added after this call are not applied to the automaton.
+	 */
+	public void poststar(WeightedPAutomaton<N, D, W> initialAutomaton, ForkJoinPool pool) {
+		if (weightCache != null)
+			initialAutomaton.setWeightCache(weightCache);
+		new ParallelPostStar<N, D, W>(pool).poststar(this, initialAutomaton);
 	}
 
 	@Override
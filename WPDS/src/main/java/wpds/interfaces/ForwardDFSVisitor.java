@@ -11,35 +11,63 @@
  *******************************************************************************/
 package wpds.interfaces;
 
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
 import java.util.Map;
 
-import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Table;
 
 import wpds.impl.Transition;
 import wpds.impl.Weight;
 import wpds.impl.WeightedPAutomaton;
 
+/**
+ * Reports to a {@link ReachabilityListener} registered for a state all out transitions of the
+ * states reachable from it, including the state itself. Only transitions accepted by
+ * {@link #continueWith(Transition)} are followed.
+ *
+ * Reachability is only tracked from states that have a listener: each such source has a bit set of
+ * the states it reaches, over dense state ids, and each reached state keeps the list of sources
+ * that reach it. The successor relation is built from the edges delivered to
+ * {@link #onWeightAdded(Transition, Weight, WeightedPAutomaton)}, so edges of nested automata are
+ * followed as well. When an edge a -> b is added, the search continues from b for every source
+ * that reaches a but not yet b, so every pair of source and reached state is discovered once.
+ */
 public class ForwardDFSVisitor<N extends Location,D extends State, W extends Weight> implements WPAUpdateListener<N, D,W>{
+	private static final int[] EMPTY = new int[0];
 	private Multimap<D, ReachabilityListener<N,D>> listeners = HashMultimap.create();
 	protected WeightedPAutomaton<N, D, W> aut;
-	private Multimap<D, D> adjacent = HashMultimap.create();
-	private Multimap<D, D> reaches = HashMultimap.create();
-	private Multimap<D, D> inverseReaches = HashMultimap.create();
-	private Table<D,D,Integer> refCount = HashBasedTable.create();
+	private final Map<D, Integer> ids = Maps.newHashMap();
+	private final List<D> idToState = new ArrayList<>();
+	/** Per source id: the ids of the states reached, or null if the state has no listener. */
+	private final List<BitSet> reached = new ArrayList<>();
+	/** Per state id: the ids of the sources reaching it. */
+	private int[][] reachedBy = new int[16][];
+	private int[] reachedBySize = new int[16];
+	/** Per state id: the ids of the targets of the followed edges out of it. */
+	private final Multimap<Integer, Integer> successors = HashMultimap.create();
 	
 	public ForwardDFSVisitor(WeightedPAutomaton<N,D,W> aut){
 		this.aut = aut;
 	}
 	public void registerListener(D state, final ReachabilityListener<N, D> l) {
 		if(listeners.put(state, l)){
-			for(D d : Lists.newArrayList(inverseReaches.get(state))){
-				aut.registerListener(new TransitiveClosure(d,state, l));
+			int source = id(state);
+			BitSet reach = reached.get(source);
+			if (reach == null) {
+				reached.set(source, new BitSet());
+				visit(source, source);
+				return;
+			}
+			for (int x = reach.nextSetBit(0); x >= 0; x = reach.nextSetBit(x + 1)) {
+				aut.registerListener(new TransitiveClosure(idToState.get(x), state, l));
 			}
 		}	
 	}
@@ -111,105 +139,73 @@ public class ForwardDFSVisitor<N extends Location,D extends State, W extends Wei
 	}
 	@Override
 	public void onWeightAdded(Transition<N, D> t, W w, WeightedPAutomaton<N, D, W> aut) {
-
-		D a = t.getStart();
-		D b = t.getTarget();
-		inverseReaches(a,a);
-//		inverseReaches(b,b);
 		if(!continueWith(t))
 			return;
-		insertEdge(a,b);
+		int a = id(t.getStart());
+		int b = id(t.getTarget());
+		if (!successors.put(a, b) || reachedBySize[a] == 0)
+			return;
+		int[] sources = reachedBy[a];
+		for (int i = 0, n = reachedBySize[a]; i < n; i++) {
+			if (!reached.get(sources[i]).get(b))
+				visit(sources[i], b);
+		}
 	}
 
-	private void insertEdge(D a, D b) {
-		LinkedList<Edge> worklist = Lists.newLinkedList();
-		if(refCount.get(a,b) == null){
-			makeClosure(a, b);
-			worklist.add(new Edge(a,b));
-			refCount.put(a, b, 1);
-		}
-		makeEdge(a,b);
-		
-		for(D x : Lists.newArrayList(reaches.get(a))){
-			if(refCount.get(x,b) == null){
-				makeClosure(x,b);
-				worklist.add(new Edge(x,b));
-				refCount.put(x,b,1);
+	/**
+	 * Marks everything reachable from the state as reached from the source. Callbacks of the
+	 * registered listeners may add transitions, those are handled by
+	 * {@link #onWeightAdded(Transition, Weight, WeightedPAutomaton)} as the marks are set before
+	 * the listeners are registered.
+	 */
+	private void visit(int source, int state) {
+		BitSet reach = reached.get(source);
+		D sourceState = idToState.get(source);
+		Deque<Integer> worklist = new ArrayDeque<>();
+		reach.set(state);
+		addReachedBy(state, source);
+		worklist.add(state);
+		while (!worklist.isEmpty()) {
+			int x = worklist.poll();
+			D curr = idToState.get(x);
+			for (ReachabilityListener<N, D> l : Lists.newArrayList(listeners.get(sourceState))) {
+				aut.registerListener(new TransitiveClosure(curr, sourceState, l));
 			}
-		}
-		while(!worklist.isEmpty()){
-			Edge e = worklist.poll();
-			D x = e.from;
-			D y = e.to; 
-			for(D z : Lists.newArrayList(adjacent.get(y))){
-				if(refCount.get(x,z) == null){
-					makeClosure(x, z);
-					worklist.add(new Edge(x,z));
-					refCount.put(x,z,1);
+			for (int y : successors.get(x)) {
+				if (!reach.get(y)) {
+					reach.set(y);
+					addReachedBy(y, source);
+					worklist.add(y);
 				}
 			}
 		}
 	}
 
-	private void makeEdge(D from, D to){
-		adjacent.put(from, to);
-		inverseReaches(from,to);
+	private void addReachedBy(int state, int source) {
+		int[] sources = reachedBy[state];
+		int size = reachedBySize[state];
+		if (size == sources.length)
+			reachedBy[state] = sources = Arrays.copyOf(sources, Math.max(2, size * 2));
+		sources[size] = source;
+		reachedBySize[state] = size + 1;
 	}
-	
-	private void inverseReaches(D from, D to) {
-		if(inverseReaches.put(from, to)){
-			for(ReachabilityListener<N, D> l : Lists.newArrayList(listeners.get(from))){
-				aut.registerListener(new TransitiveClosure(to, from, l));
-			}
-		}
-		
-	}
-	private void makeClosure(D from, D to){
-		if(reaches.put(to,from)){
-			inverseReaches(from,to);
-		}
-	}
-	private class Index{
-		int refcount;
-	}
-	private class Edge{
-		final D from;
-		final D to;
-		private Edge(D from, D to){
-			this.from = from;
-			this.to = to;
-		}
-		@Override
-		public int hashCode() {
-			final int prime = 31;
-			int result = 1;
-			result = prime * result + ((from == null) ? 0 : from.hashCode());
-			result = prime * result + ((to == null) ? 0 : to.hashCode());
-			return result;
-		}
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (getClass() != obj.getClass())
-				return false;
-			Edge other = (Edge) obj;
-			if (from == null) {
-				if (other.from != null)
-					return false;
-			} else if (!from.equals(other.from))
-				return false;
-			if (to == null) {
-				if (other.to != null)
-					return false;
-			} else if (!to.equals(other.to))
-				return false;
-			return true;
+
+	private int id(D state) {
+		Integer id = ids.get(state);
+		if (id != null)
+			return id;
+		int i = idToState.size();
+		if (i == reachedBy.length) {
+			reachedBy = Arrays.copyOf(reachedBy, i * 2);
+			reachedBySize = Arrays.copyOf(reachedBySize, i * 2);
 		}
-		
+		reachedBy[i] = EMPTY;
+		idToState.add(state);
+		reached.add(null);
+		ids.put(state, i);
+		return i;
 	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
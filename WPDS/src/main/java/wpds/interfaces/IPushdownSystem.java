@@ -11,6 +11,7 @@
  *******************************************************************************/
 package wpds.interfaces;
 
+import java.util.Collection;
 import java.util.Set;
 
 import wpds.impl.NestedWeightedPAutomatons;
@@ -25,6 +26,8 @@ public interface IPushdownSystem<N extends Location, D extends State, W extends
 
   public boolean addRule(Rule<N, D, W> rule);
 
+  public boolean addRules(Collection<? extends Rule<N, D, W>> rules);
+
   public Set<D> getStates();
 
   public Set<NormalRule<N, D, W>> getNormalRules();
@@ -41,6 +44,8 @@ public interface IPushdownSystem<N extends Location, D extends State, W extends
 
   public Set<PushRule<N, D, W>> getPushRulesEnding(D start, N string);
 
+  public Set<PushRule<N, D, W>> getPushRulesWithCallSite(N callSite);
+
   public void prestar(WeightedPAutomaton<N, D, W> initialAutomaton);
 
   public void poststar(WeightedPAutomaton<N, D, W> initialAutomaton);
@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *  
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.interfaces;
+
+import java.util.Collection;
+
+import wpds.impl.Rule;
+import wpds.impl.Weight;
+
+/**
+ * Source of the rules of an implicit pushdown system, queried on demand by
+ * {@link wpds.impl.LazyPushdownSystem}.
+ */
+public interface RuleProvider<N extends Location, D extends State, W extends Weight> {
+
+	/**
+	 * @return The rules whose left-hand side is the configuration of state with label on top of
+	 *         the stack. The label is never a wildcard, rules for wildcards are expected to be
+	 *         instantiated for the given label.
+	 */
+	public Collection<? extends Rule<N, D, W>> getRulesStarting(D state, N label);
+
+}
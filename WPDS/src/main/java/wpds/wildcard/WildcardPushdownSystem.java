@@ -19,6 +19,7 @@ import wpds.impl.PopRule;
 import wpds.impl.PushRule;
 import wpds.impl.PushdownSystem;
 import wpds.impl.Rule;
+import wpds.impl.RuleIndex;
 import wpds.impl.UNormalRule;
 import wpds.impl.UPopRule;
 import wpds.impl.UPushRule;
@@ -32,19 +33,17 @@ public abstract class WildcardPushdownSystem<N extends Location, D extends State
   @Override
   public Set<Rule<N, D, NoWeight>> getRulesStarting(D start, N string) {
     assert !string.equals(anyTransition());
-    Set<Rule<N, D, NoWeight>> allRules = getAllRules();
-    Set<Rule<N, D, NoWeight>> result = new HashSet<>();
-    for (Rule<N, D, NoWeight> r : allRules) {
-      if (r.getS1().equals(start) && r.getL1().equals(string))
-        result.add(r);
-      if (anyTransition() != null && r.getS1().equals(start) && r.getL1().equals(anyTransition())) {
-        if (r instanceof NormalRule) {
-          result.add(new UNormalRule<N, D>(r.getS1(), string, r.getS2(), string));
-        } else if (r instanceof PopRule) {
-          result.add(new UPopRule<N, D>(r.getS1(), string, r.getS2()));
-        } else if (r instanceof PushRule) {
-          result.add(new UPushRule<N, D>(r.getS1(), string, r.getS2(), r.getL2(), string));
-        }
+    RuleIndex<N, D, NoWeight> index = getRuleIndex();
+    Set<Rule<N, D, NoWeight>> result = new HashSet<>(index.getRulesStarting(start, string));
+    if (anyTransition() == null)
+      return result;
+    for (Rule<N, D, NoWeight> r : index.getRulesStarting(start, anyLabel())) {
+      if (r instanceof NormalRule) {
+        result.add(new UNormalRule<N, D>(r.getS1(), string, r.getS2(), string));
+      } else if (r instanceof PopRule) {
+        result.add(new UPopRule<N, D>(r.getS1(), string, r.getS2()));
+      } else if (r instanceof PushRule) {
+        result.add(new UPushRule<N, D>(r.getS1(), string, r.getS2(), r.getL2(), string));
       }
     }
     return result;
@@ -54,14 +53,12 @@ public abstract class WildcardPushdownSystem<N extends Location, D extends State
   @Override
   public Set<NormalRule<N, D, NoWeight>> getNormalRulesEnding(D start, N string) {
     assert !string.equals(anyTransition());
-    Set<NormalRule<N, D, NoWeight>> allRules = getNormalRules();
-    Set<NormalRule<N, D, NoWeight>> result = new HashSet<>();
-    for (NormalRule<N, D, NoWeight> r : allRules) {
-      if (r.getS2().equals(start) && r.getL2().equals(string))
-        result.add(r);
-      if (r.getS2().equals(start) && r.getL2().equals(anyTransition())) {
-        result.add(new UNormalRule<N, D>(r.getS1(), string, r.getS2(), string));
-      }
+    RuleIndex<N, D, NoWeight> index = getRuleIndex();
+    Set<NormalRule<N, D, NoWeight>> result = new HashSet<>(index.getNormalRulesEnding(start, string));
+    if (anyTransition() == null)
+      return result;
+    for (NormalRule<N, D, NoWeight> r : index.getNormalRulesEnding(start, anyLabel())) {
+      result.add(new UNormalRule<N, D>(r.getS1(), string, r.getS2(), string));
     }
     return result;
   }
@@ -69,15 +66,16 @@ public abstract class WildcardPushdownSystem<N extends Location, D extends State
   @Override
   public Set<PushRule<N, D, NoWeight>> getPushRulesEnding(D start, N string) {
     assert !string.equals(anyTransition());
-    Set<PushRule<N, D, NoWeight>> allRules = getPushRules();
-    Set<PushRule<N, D, NoWeight>> result = new HashSet<>();
-    for (PushRule<N, D, NoWeight> r : allRules) {
-      if (r.getS2().equals(start) && r.getL2().equals(string))
-        result.add(r);
-    }
-    return result;
+    return getRuleIndex().getPushRulesEnding(start, string);
   }
 
   public abstract Wildcard anyTransition();
 
+  /**
+   * The wildcard as a label of this system. Rules with a wildcard label are stored under it.
+   */
+  private N anyLabel() {
+    return (N) anyTransition();
+  }
+
 }
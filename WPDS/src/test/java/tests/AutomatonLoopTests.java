@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static tests.TestHelper.a;
+import static tests.TestHelper.accepts;
+import static tests.TestHelper.s;
+import static tests.TestHelper.t;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.PAutomaton;
+
+public class AutomatonLoopTests {
+
+  @Test
+  public void diamondIsNoLoop() {
+    PAutomaton<StackSymbol, Abstraction> aut = accepts(1, "a");
+    aut.addTransition(t(g(2), s("x"), a(1)));
+    aut.addTransition(t(g(3), s("y"), g(4)));
+    aut.addTransition(t(g(4), s("z"), a(1)));
+    aut.addTransition(t(g(5), s("u"), g(2)));
+    aut.addTransition(t(g(5), s("v"), g(3)));
+    assertFalse(aut.containsLoop());
+    assertEquals(Lists.newArrayList(s("v"), s("y"), s("z")), aut.getLongestPath());
+    aut.addTransition(t(g(4), s("w"), g(5)));
+    assertTrue(aut.containsLoop());
+    assertEquals(Lists.newArrayList(s("u"), s("x")), aut.getLongestPath());
+  }
+
+  @Test
+  public void randomGraphsMatchClosure() {
+    Random random = new Random(7);
+    for (int round = 0; round < 300; round++) {
+      int n = 2 + random.nextInt(8);
+      PAutomaton<StackSymbol, Abstraction> aut = accepts(1, "a");
+      boolean[][] edge = new boolean[n + 1][n + 1];
+      int edges = random.nextInt(3 * n);
+      for (int i = 0; i < edges; i++) {
+        // Node 0 is the initial state, the others are generated.
+        int from = 1 + random.nextInt(n);
+        int to = random.nextInt(n + 1);
+        edge[from][to] = true;
+        aut.addTransition(t(node(from), s("l" + i), node(to)));
+        aut.addTransition(t(a(100 + to), s("ignored"), node(to)));
+        if (random.nextInt(3) == 0) {
+          assertEquals("Round " + round, expectedLoop(edge), aut.containsLoop());
+          assertEquals("Round " + round, expectedLongestPath(edge), aut.getLongestPath().size());
+        }
+      }
+      assertEquals("Round " + round, expectedLoop(edge), aut.containsLoop());
+      assertEquals("Round " + round, expectedLongestPath(edge), aut.getLongestPath().size());
+    }
+  }
+
+  private static boolean[][] closure(boolean[][] edge) {
+    int n = edge.length;
+    boolean[][] reach = new boolean[n][];
+    for (int i = 0; i < n; i++)
+      reach[i] = edge[i].clone();
+    for (int k = 0; k < n; k++)
+      for (int i = 0; i < n; i++)
+        for (int j = 0; j < n; j++)
+          reach[i][j] |= reach[i][k] && reach[k][j];
+    return reach;
+  }
+
+  private static boolean expectedLoop(boolean[][] edge) {
+    boolean[][] reach = closure(edge);
+    for (int i = 1; i < edge.length; i++) {
+      if (reach[i][i] && reach[i][0])
+        return true;
+    }
+    return false;
+  }
+
+  private static int expectedLongestPath(boolean[][] edge) {
+    boolean[][] reach = closure(edge);
+    int[] longest = new int[edge.length];
+    // Relax along edges between components, n rounds suffice for an acyclic condensation.
+    for (int round = 0; round < edge.length; round++) {
+      for (int i = 1; i < edge.length; i++) {
+        for (int j = 0; j < edge.length; j++) {
+          boolean sameComponent = reach[i][j] && reach[j][i];
+          if (edge[i][j] && !sameComponent && (j == 0 || reach[j][0]))
+            longest[i] = Math.max(longest[i], longest[j] + 1);
+        }
+      }
+      // Members of a component share their longest path.
+      for (int i = 1; i < edge.length; i++)
+        for (int j = 1; j < edge.length; j++)
+          if (reach[i][j] && reach[j][i])
+            longest[i] = Math.max(longest[i], longest[j]);
+    }
+    int max = 0;
+    for (int l : longest)
+      max = Math.max(max, l);
+    return max;
+  }
+
+  private static Abstraction node(int i) {
+    return i == 0 ? a(1) : g(i);
+  }
+
+  private static Abstraction g(int i) {
+    return a(i, "g");
+  }
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static tests.TestHelper.a;
+import static tests.TestHelper.s;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import tests.PersistentSummaryStoreTests.Codec;
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.AutomatonSnapshot;
+import wpds.impl.Transition;
+import wpds.impl.WeightedPAutomaton;
+import wpds.interfaces.WPAUpdateListener;
+
+public class AutomatonSnapshotTests {
+
+  @Test
+  public void roundTrip() throws IOException {
+    roundTrip(false);
+  }
+
+  @Test
+  public void roundTripMapped() throws IOException {
+    roundTrip(true);
+  }
+
+  private void roundTrip(boolean mapped) throws IOException {
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut =
+        PersistentSummaryStoreTests.saturated();
+    aut.addUnbalancedState(a(3));
+    File file = File.createTempFile("automaton", ".snapshot");
+    file.deleteOnExit();
+    new AutomatonSnapshot<>(new Codec("v1")).save(aut, file.toPath());
+
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> restored = empty();
+    final AtomicInteger notified = new AtomicInteger();
+    WPAUpdateListener<StackSymbol, Abstraction, NumWeight> listener =
+        new WPAUpdateListener<StackSymbol, Abstraction, NumWeight>() {
+          @Override
+          public void onWeightAdded(Transition<StackSymbol, Abstraction> t, NumWeight w,
+              WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut) {
+            notified.incrementAndGet();
+          }
+        };
+    assertTrue(new AutomatonSnapshot<>(new Codec("v1")).load(file.toPath(), restored, mapped));
+    assertEquals(new HashSet<>(aut.getTransitions()), new HashSet<>(restored.getTransitions()));
+    for (Transition<StackSymbol, Abstraction> t : aut.getTransitions()) {
+      assertEquals(aut.getWeightFor(t), restored.getWeightFor(t));
+    }
+    assertEquals(aut.getFinalState(), restored.getFinalState());
+    assertTrue(restored.isUnbalancedState(a(3)));
+    assertEquals(aut.getTransitionsToFinalWeights(), restored.getTransitionsToFinalWeights());
+    restored.registerListener(listener);
+    assertEquals(aut.getTransitions().size(), notified.get());
+  }
+
+  @Test
+  public void otherCodecIsIgnored() throws IOException {
+    File file = File.createTempFile("automaton", ".snapshot");
+    file.deleteOnExit();
+    new AutomatonSnapshot<>(new Codec("v1")).save(PersistentSummaryStoreTests.saturated(), file.toPath());
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> restored = empty();
+    assertFalse(new AutomatonSnapshot<>(new Codec("v2")).load(file.toPath(), restored, false));
+    assertTrue(restored.getTransitions().isEmpty());
+  }
+
+  private static WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> empty() {
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut =
+        new WeightedPAutomaton<StackSymbol, Abstraction, NumWeight>(a(1)) {
+
+          @Override
+          public Abstraction createState(Abstraction d, StackSymbol loc) {
+            return new Abstraction(d, loc);
+          }
+
+          @Override
+          public StackSymbol epsilon() {
+            return s("EPS");
+          }
+
+          @Override
+          public NumWeight getOne() {
+            return NumWeight.one();
+          }
+
+          @Override
+          public NumWeight getZero() {
+            return NumWeight.zero();
+          }
+
+          @Override
+          public boolean isGeneratedState(Abstraction d) {
+            return d.s != null;
+          }
+        };
+    return aut;
+  }
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static tests.TestHelper.ACC;
+import static tests.TestHelper.a;
+import static tests.TestHelper.accepts;
+import static tests.TestHelper.t;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+import com.google.common.base.Predicate;
+
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.AutomatonWriter;
+import wpds.impl.PAutomaton;
+
+public class AutomatonWriterTests {
+
+  @Test
+  public void json() throws IOException {
+    PAutomaton<StackSymbol, Abstraction> aut = accepts(1, "a");
+    StringWriter out = new StringWriter();
+    new AutomatonWriter<>(aut).writeJson(out);
+    assertEquals("{\"initialState\":\"1\",\"finalStates\":[\"999\"],\"transitions\":["
+        + "\n{\"start\":\"1\",\"label\":\"a\",\"target\":\"999\",\"weight\":\"\"}],\"nested\":[]}",
+        out.toString());
+  }
+
+  @Test
+  public void filterAndSampling() throws IOException {
+    PAutomaton<StackSymbol, Abstraction> aut = accepts(1, "a");
+    for (int i = 0; i < 10; i++) {
+      aut.addTransition(t(2, "b" + i, ACC));
+      aut.addTransition(t(3, "c" + i, ACC));
+    }
+    AutomatonWriter<StackSymbol, Abstraction, ?> writer = new AutomatonWriter<>(aut);
+    writer.setStateFilter(new Predicate<Abstraction>() {
+      @Override
+      public boolean apply(Abstraction input) {
+        return input.equals(a(2));
+      }
+    });
+    writer.setSampling(3);
+    StringWriter out = new StringWriter();
+    writer.writeDot(out);
+    String dot = out.toString();
+    assertTrue(dot, dot.contains("\"2\" -> \"TO: 999\""));
+    assertEquals(dot, 4, dot.split(" W: ").length - 1);
+    assertFalse(dot, dot.contains("c0"));
+  }
+}
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static tests.TestHelper.ACC;
+import static tests.TestHelper.t;
+import static tests.TestHelper.waccepts;
+import static tests.TestHelper.wnormal;
+
+import org.junit.Test;
+
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.WeightCache;
+import wpds.impl.WeightedPAutomaton;
+import wpds.impl.WeightedPushdownSystem;
+
+public class CachedWPDSPostStarTests extends WPDSPostStarTests {
+  private WeightCache<NumWeight> cache;
+
+  @Override
+  protected WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight> createPushdownSystem() {
+    WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight> pds = super.createPushdownSystem();
+    cache = new WeightCache<NumWeight>(100);
+    pds.setWeightCache(cache);
+    return pds;
+  }
+
+  @Test
+  public void storesCanonicalWeights() {
+    WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight> pds = createPushdownSystem();
+    pds.addRule(wnormal(1, "a", 2, "b", new NumWeight(2)));
+    pds.addRule(wnormal(1, "a", 3, "c", new NumWeight(2)));
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> fa =
+        waccepts(1, "a", new NumWeight(0));
+    pds.poststar(fa);
+    assertSame(fa.getWeightFor(t(2, "b", ACC)), fa.getWeightFor(t(3, "c", ACC)));
+    assertSame(cache.intern(new NumWeight(2)), fa.getWeightFor(t(2, "b", ACC)));
+    int failed = fa.failedAdditions;
+    assertFalse(fa.addWeightForTransition(t(2, "b", ACC), new NumWeight(2)));
+    assertEquals(failed + 1, fa.failedAdditions);
+  }
+}
@@ -22,6 +22,9 @@ import static tests.TestHelper.s;
 import static tests.TestHelper.t;
 
 import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.Assert;
@@ -29,6 +32,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 import tests.TestHelper.Abstraction;
@@ -39,6 +43,7 @@ import wpds.impl.PushdownSystem;
 import wpds.impl.SummaryNestedWeightedPAutomatons;
 import wpds.impl.Transition;
 import wpds.impl.Weight.NoWeight;
+import wpds.impl.WeightedPAutomaton;
 import wpds.interfaces.ReachabilityListener;
 
 public class ForwardDFSVisitorTest {
@@ -194,6 +199,82 @@ public class ForwardDFSVisitorTest {
 		System.out.println(faSummaries.toDotString());
 		assertSetEquals(reachableFrom(fa,a(1)), reachableFrom(faSummaries,a(1)));
 	}
+	@Test
+	public void randomGraphsReportAllReachableTransitions() {
+		Random random = new Random(11);
+		for (int round = 0; round < 200; round++) {
+			PAutomaton<StackSymbol, Abstraction> aut = accepts(0, "a");
+			int n = 2 + random.nextInt(10);
+			List<Set<Transition<StackSymbol, Abstraction>>> reported = Lists.newArrayList();
+			List<Abstraction> sources = Lists.newArrayList();
+			int steps = random.nextInt(4 * n);
+			for (int i = 0; i < steps; i++) {
+				if (random.nextInt(4) == 0) {
+					Abstraction source = a(random.nextInt(n));
+					sources.add(source);
+					reported.add(reachableFrom(aut, source));
+				}
+				aut.addTransition(t(random.nextInt(n), "l" + random.nextInt(3), random.nextInt(n)));
+			}
+			for (int i = 0; i < sources.size(); i++) {
+				assertSetEquals(closure(sources.get(i), aut), reported.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void randomNestedGraphsReportAllReachableTransitions() {
+		Random random = new Random(13);
+		for (int round = 0; round < 200; round++) {
+			PAutomaton<StackSymbol, Abstraction> aut = accepts(0, "a");
+			WeightedPAutomaton<StackSymbol, Abstraction, NoWeight> nested = null;
+			int n = 2 + random.nextInt(10);
+			List<Set<Transition<StackSymbol, Abstraction>>> reported = Lists.newArrayList();
+			List<Abstraction> sources = Lists.newArrayList();
+			int steps = random.nextInt(4 * n);
+			for (int i = 0; i < steps; i++) {
+				if (random.nextInt(4) == 0) {
+					Abstraction source = a(random.nextInt(n));
+					sources.add(source);
+					reported.add(reachableFrom(aut, source));
+				}
+				// The nested automaton is created after some listeners and transitions exist.
+				if (nested == null && random.nextInt(steps) == 0)
+					nested = aut.createNestedAutomaton(a(random.nextInt(n)));
+				Transition<StackSymbol, Abstraction> t = t(random.nextInt(n), "l" + random.nextInt(3), random.nextInt(n));
+				if (nested != null && random.nextBoolean())
+					nested.addTransition(t);
+				else
+					aut.addTransition(t);
+			}
+			for (int i = 0; i < sources.size(); i++) {
+				if (nested == null)
+					assertSetEquals(closure(sources.get(i), aut), reported.get(i));
+				else
+					assertSetEquals(closure(sources.get(i), aut, nested), reported.get(i));
+			}
+		}
+	}
+
+	@SafeVarargs
+	private static Set<Transition<StackSymbol, Abstraction>> closure(Abstraction source,
+			WeightedPAutomaton<StackSymbol, Abstraction, NoWeight>... automata) {
+		Set<Transition<StackSymbol, Abstraction>> res = Sets.newHashSet();
+		Set<Abstraction> visited = Sets.newHashSet(source);
+		LinkedList<Abstraction> worklist = Lists.newLinkedList(visited);
+		while (!worklist.isEmpty()) {
+			Abstraction curr = worklist.poll();
+			for (WeightedPAutomaton<StackSymbol, Abstraction, NoWeight> aut : automata) {
+				for (Transition<StackSymbol, Abstraction> t : aut.getTransitionsOutOf(curr)) {
+					res.add(t);
+					if (visited.add(t.getTarget()))
+						worklist.add(t.getTarget());
+				}
+			}
+		}
+		return res;
+	}
+
 	private void assertSetEquals(Set<Transition<StackSymbol, Abstraction>> s1,
 			Set<Transition<StackSymbol, Abstraction>> s2) {
 		if(s1.equals(s2))
@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static tests.MinSeminringPostStarTests.waccepts;
+import static tests.MinSeminringPostStarTests.wnormal;
+import static tests.MinSeminringPostStarTests.wpop;
+import static tests.MinSeminringPostStarTests.wpush;
+import static tests.TestHelper.a;
+import static tests.TestHelper.s;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.GoalDirectedPostStar;
+import wpds.impl.SaturationWorklist;
+import wpds.impl.Transition;
+import wpds.impl.WeightedPAutomaton;
+import wpds.impl.WeightedPushdownSystem;
+import wpds.interfaces.WPAUpdateListener;
+
+public class GoalDirectedPostStarTests {
+  private static final Comparator<MinSemiring> ORDER = new Comparator<MinSemiring>() {
+    @Override
+    public int compare(MinSemiring o1, MinSemiring o2) {
+      return Integer.compare(o1.i, o2.i);
+    }
+  };
+
+  @Test
+  public void stopsOnceReachable() {
+    WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds = chain(2000);
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = waccepts(1, "s0", w(0));
+    GoalDirectedPostStar<StackSymbol, Abstraction, MinSemiring> goal = goal(pds, fa, 1, "s5");
+    assertTrue(goal.run());
+    assertTrue(goal.isReachable(a(1), prefix("s5")));
+    assertFalse(goal.isCancelled());
+    assertTrue(fa.getTransitions().size() < 100);
+    fa.getSaturationWorklist().resume();
+    assertEquals(2001, fa.getTransitions().size());
+  }
+
+  @Test
+  public void unreachableIsDecidedAtFixedPoint() {
+    WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds = chain(20);
+    pds.addRule(wpush(1, "s20", 2, "b", "c", w(1)));
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = waccepts(1, "s0", w(0));
+    GoalDirectedPostStar<StackSymbol, Abstraction, MinSemiring> goal =
+        new GoalDirectedPostStar<StackSymbol, Abstraction, MinSemiring>(pds, fa);
+    goal.addTarget(a(2), prefix("b", "c"));
+    goal.addTarget(a(2), prefix("c"));
+    assertTrue(goal.run());
+    assertTrue(goal.isReachable(a(2), prefix("b", "c")));
+    assertFalse(goal.isReachable(a(2), prefix("c")));
+    assertTrue(goal.isDecided(a(2), prefix("c")));
+    assertTrue(fa.getSaturationWorklist().isEmpty());
+  }
+
+  @Test
+  public void finalWeight() {
+    WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds =
+        new WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring>();
+    pds.addRule(wnormal(1, "a", 1, "b", w(1)));
+    pds.addRule(wnormal(1, "b", 1, "c", w(5)));
+    pds.addRule(wnormal(1, "a", 1, "d", w(1)));
+    pds.addRule(wnormal(1, "d", 1, "c", w(1)));
+    pds.addRule(wnormal(1, "c", 1, "s0", w(1)));
+    for (int i = 0; i < 100; i++)
+      pds.addRule(wnormal(1, "s" + i, 1, "s" + (i + 1), w(1)));
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = waccepts(1, "a", w(0));
+    GoalDirectedPostStar<StackSymbol, Abstraction, MinSemiring> goal = goal(pds, fa, 1, "c");
+    goal.setWeightOrder(ORDER);
+    assertTrue(goal.run());
+    assertEquals(2, goal.getWeight(a(1), prefix("c")).i);
+    assertFalse(fa.getSaturationWorklist().isEmpty());
+    int transitions = fa.getTransitions().size();
+    fa.getSaturationWorklist().resume();
+    assertTrue(transitions < fa.getTransitions().size());
+  }
+
+  @Test
+  public void cancelFromListener() {
+    WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds = chain(2000);
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = waccepts(1, "s0", w(0));
+    final GoalDirectedPostStar<StackSymbol, Abstraction, MinSemiring> goal = goal(pds, fa, 1, "s1999");
+    fa.registerListener(new WPAUpdateListener<StackSymbol, Abstraction, MinSemiring>() {
+      int count;
+
+      @Override
+      public void onWeightAdded(Transition<StackSymbol, Abstraction> t, MinSemiring w,
+          WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> aut) {
+        if (++count == 10)
+          goal.cancel();
+      }
+    });
+    assertFalse(goal.run());
+    assertTrue(goal.isCancelled());
+    assertFalse(goal.isReachable(a(1), prefix("s1999")));
+    assertTrue(fa.getTransitions().size() < 20);
+    fa.getSaturationWorklist().resume();
+    assertEquals(2001, fa.getTransitions().size());
+  }
+
+  @Test
+  public void cancelBeforeRun() {
+    WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds = chain(2000);
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = waccepts(1, "s0", w(0));
+    GoalDirectedPostStar<StackSymbol, Abstraction, MinSemiring> goal = goal(pds, fa, 1, "s1999");
+    goal.cancel();
+    assertFalse(goal.run());
+    assertTrue(goal.isCancelled());
+    assertTrue(fa.getTransitions().size() < 20);
+    fa.getSaturationWorklist().resume();
+    assertEquals(2001, fa.getTransitions().size());
+  }
+
+  @Test
+  public void sharedWorklistIsNotLeftCancelled() {
+    WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds = chain(2000);
+    pds.setSaturationWorklist(SaturationWorklist.<StackSymbol, Abstraction, MinSemiring>fifo());
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = waccepts(1, "s0", w(0));
+    GoalDirectedPostStar<StackSymbol, Abstraction, MinSemiring> goal = goal(pds, fa, 1, "s5");
+    assertTrue(goal.run());
+    assertFalse(pds.getSaturationWorklist().isCancelled());
+    assertTrue(fa.getTransitions().size() < 100);
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> other = waccepts(1, "s1000", w(0));
+    pds.poststar(other);
+    assertEquals(1001, other.getTransitions().size());
+    assertEquals(2001, fa.getTransitions().size());
+  }
+
+  @Test
+  public void cancelledWorklistStaysCancelled() {
+    WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds = chain(20);
+    pds.setSaturationWorklist(SaturationWorklist.<StackSymbol, Abstraction, MinSemiring>fifo());
+    pds.getSaturationWorklist().cancel();
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = waccepts(1, "s0", w(0));
+    assertTrue(goal(pds, fa, 1, "s5").run());
+    assertTrue(pds.getSaturationWorklist().isCancelled());
+  }
+
+  @Test
+  public void randomWeightsMatchFixedPoint() {
+    Random random = new Random(5);
+    for (int round = 0; round < 300; round++) {
+      WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds =
+          new WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring>();
+      for (int i = random.nextInt(40); i >= 0; i--) {
+        int from = 1 + random.nextInt(3);
+        int to = 1 + random.nextInt(3);
+        String l = "s" + random.nextInt(5);
+        MinSemiring weight = w(random.nextInt(6));
+        switch (random.nextInt(4)) {
+        case 0:
+          pds.addRule(wpush(from, l, to, "s" + random.nextInt(5), "s" + random.nextInt(5), weight));
+          break;
+        case 1:
+          pds.addRule(wpop(from, l, to, weight));
+          break;
+        default:
+          pds.addRule(wnormal(from, l, to, "s" + random.nextInt(5), weight));
+        }
+      }
+      int state = 1 + random.nextInt(3);
+      List<StackSymbol> prefix = random.nextBoolean() ? prefix("s" + random.nextInt(5))
+          : prefix("s" + random.nextInt(5), "s" + random.nextInt(5));
+
+      WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> early = waccepts(1, "s0", w(0));
+      GoalDirectedPostStar<StackSymbol, Abstraction, MinSemiring> goal =
+          new GoalDirectedPostStar<StackSymbol, Abstraction, MinSemiring>(pds, early);
+      goal.addTarget(a(state), prefix);
+      goal.setWeightOrder(ORDER);
+      assertTrue(goal.run());
+
+      WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> saturated = waccepts(1, "s0", w(0));
+      pds.poststar(saturated);
+      GoalDirectedPostStar<StackSymbol, Abstraction, MinSemiring> reference =
+          new GoalDirectedPostStar<StackSymbol, Abstraction, MinSemiring>(pds, saturated);
+      reference.addTarget(a(state), prefix);
+      reference.setWeightOrder(ORDER);
+      assertTrue(reference.run());
+
+      MinSemiring expected = reference.getWeight(a(state), prefix);
+      MinSemiring actual = goal.getWeight(a(state), prefix);
+      if (expected == null)
+        assertTrue("Round " + round, actual == null);
+      else
+        assertEquals("Round " + round, expected.i, actual.i);
+    }
+  }
+
+  private static WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> chain(int length) {
+    WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds =
+        new WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring>();
+    for (int i = 0; i < length; i++)
+      pds.addRule(wnormal(1, "s" + i, 1, "s" + (i + 1), w(1)));
+    return pds;
+  }
+
+  private static GoalDirectedPostStar<StackSymbol, Abstraction, MinSemiring> goal(
+      WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds,
+      WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa, int state, String label) {
+    GoalDirectedPostStar<StackSymbol, Abstraction, MinSemiring> goal =
+        new GoalDirectedPostStar<StackSymbol, Abstraction, MinSemiring>(pds, fa);
+    goal.addTarget(a(state), prefix(label));
+    return goal;
+  }
+
+  private static List<StackSymbol> prefix(String... labels) {
+    List<StackSymbol> res = Arrays.asList(new StackSymbol[labels.length]);
+    for (int i = 0; i < labels.length; i++)
+      res.set(i, s(labels[i]));
+    return Collections.unmodifiableList(res);
+  }
+
+  private static MinSemiring w(int i) {
+    return new MinSemiring(i);
+  }
+}
@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static tests.MinSeminringPostStarTests.waccepts;
+import static tests.MinSeminringPostStarTests.wnormal;
+import static tests.MinSeminringPostStarTests.wpop;
+import static tests.MinSeminringPostStarTests.wpush;
+import static tests.TestHelper.ACC;
+import static tests.TestHelper.a;
+import static tests.TestHelper.s;
+import static tests.TestHelper.t;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.LazyPushdownSystem;
+import wpds.impl.Rule;
+import wpds.impl.Transition;
+import wpds.impl.WeightedPAutomaton;
+import wpds.impl.WeightedPushdownSystem;
+import wpds.interfaces.RuleProvider;
+
+public class LazyPushdownSystemTests {
+
+  @Test
+  public void onlyReachedConfigurationsAreExpanded() {
+    CountingProvider provider = new CountingProvider() {
+      @Override
+      List<Rule<StackSymbol, Abstraction, MinSemiring>> rules(Abstraction state, StackSymbol label) {
+        // An unbounded chain s0 -> s1 -> ..., cut off at s100.
+        int i = Integer.parseInt(label.s.substring(1));
+        if (i >= 100)
+          return Collections.emptyList();
+        return Lists.<Rule<StackSymbol, Abstraction, MinSemiring>>newArrayList(
+            wnormal(1, "s" + i, 1, "s" + (i + 1), w(1)));
+      }
+    };
+    LazyPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds =
+        new LazyPushdownSystem<StackSymbol, Abstraction, MinSemiring>(provider);
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = waccepts(1, "s50", w(0));
+    pds.poststar(fa);
+    assertEquals(51, fa.getTransitions().size());
+    assertEquals(51, provider.calls);
+    assertEquals(50, fa.getWeightFor(t(1, "s100", ACC)).i);
+    assertTrue(pds.getAllRules().isEmpty());
+
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> other = waccepts(1, "s40", w(0));
+    pds.poststar(other);
+    assertEquals(61, other.getTransitions().size());
+    assertEquals(61, provider.calls);
+  }
+
+  @Test
+  public void parallelPoststarFallsBackToSequential() {
+    CountingProvider provider = new CountingProvider() {
+      @Override
+      List<Rule<StackSymbol, Abstraction, MinSemiring>> rules(Abstraction state, StackSymbol label) {
+        int i = Integer.parseInt(label.s.substring(1));
+        if (i >= 10)
+          return Collections.emptyList();
+        return Lists.<Rule<StackSymbol, Abstraction, MinSemiring>>newArrayList(
+            wnormal(1, "s" + i, 1, "s" + (i + 1), w(1)));
+      }
+    };
+    LazyPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds =
+        new LazyPushdownSystem<StackSymbol, Abstraction, MinSemiring>(provider);
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = waccepts(1, "s0", w(0));
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      pds.poststar(fa, pool);
+    } finally {
+      pool.shutdown();
+    }
+    assertEquals(11, fa.getTransitions().size());
+    assertEquals(10, fa.getWeightFor(t(1, "s10", ACC)).i);
+  }
+
+  @Test
+  public void cacheIsBounded() {
+    CountingProvider provider = new CountingProvider() {
+      @Override
+      List<Rule<StackSymbol, Abstraction, MinSemiring>> rules(Abstraction state, StackSymbol label) {
+        return Collections.emptyList();
+      }
+    };
+    LazyPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds =
+        new LazyPushdownSystem<StackSymbol, Abstraction, MinSemiring>(provider, 10);
+    for (int i = 0; i < 100; i++)
+      pds.getRulesStarting(a(1), s("s" + i));
+    assertEquals(100, provider.calls);
+    assertTrue(pds.getCacheSize() <= 10);
+  }
+
+  @Test
+  public void randomSystemsMatchEagerSaturation() {
+    Random random = new Random(3);
+    for (int round = 0; round < 200; round++) {
+      final Multimap<String, Rule<StackSymbol, Abstraction, MinSemiring>> rules = HashMultimap.create();
+      WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> eager =
+          new WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring>();
+      for (int i = random.nextInt(20); i >= 0; i--) {
+        int from = 1 + random.nextInt(3);
+        int to = 1 + random.nextInt(3);
+        String l = "s" + random.nextInt(5);
+        MinSemiring weight = w(random.nextInt(6));
+        Rule<StackSymbol, Abstraction, MinSemiring> rule;
+        switch (random.nextInt(4)) {
+        case 0:
+          rule = wpush(from, l, to, "s" + random.nextInt(5), "s" + random.nextInt(5), weight);
+          break;
+        case 1:
+          rule = wpop(from, l, to, weight);
+          break;
+        default:
+          rule = wnormal(from, l, to, "s" + random.nextInt(5), weight);
+        }
+        rules.put(from + l, rule);
+        eager.addRule(rule);
+      }
+      LazyPushdownSystem<StackSymbol, Abstraction, MinSemiring> lazy =
+          new LazyPushdownSystem<StackSymbol, Abstraction, MinSemiring>(
+              new RuleProvider<StackSymbol, Abstraction, MinSemiring>() {
+                @Override
+                public Collection<Rule<StackSymbol, Abstraction, MinSemiring>> getRulesStarting(
+                    Abstraction state, StackSymbol label) {
+                  return rules.get(state.a + label.s);
+                }
+              });
+      WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> expected = waccepts(1, "s0", w(0));
+      eager.poststar(expected);
+      WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> actual = waccepts(1, "s0", w(0));
+      lazy.poststar(actual);
+      assertEquals("Round " + round, values(expected), values(actual));
+    }
+  }
+
+  private static Map<Transition<StackSymbol, Abstraction>, Integer> values(
+      WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> aut) {
+    Map<Transition<StackSymbol, Abstraction>, Integer> res = Maps.newHashMap();
+    for (Transition<StackSymbol, Abstraction> t : aut.getTransitions())
+      res.put(t, aut.getWeightFor(t).i);
+    return res;
+  }
+
+  private static abstract class CountingProvider implements RuleProvider<StackSymbol, Abstraction, MinSemiring> {
+    int calls;
+
+    @Override
+    public Collection<Rule<StackSymbol, Abstraction, MinSemiring>> getRulesStarting(Abstraction state,
+        StackSymbol label) {
+      calls++;
+      return rules(state, label);
+    }
+
+    abstract List<Rule<StackSymbol, Abstraction, MinSemiring>> rules(Abstraction state, StackSymbol label);
+  }
+
+  private static MinSemiring w(int i) {
+    return new MinSemiring(i);
+  }
+}
@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static tests.TestHelper.ACC;
+import static tests.TestHelper.a;
+import static tests.TestHelper.s;
+import static tests.TestHelper.t;
+import static tests.TestHelper.waccepts;
+import static tests.TestHelper.wnormal;
+import static tests.TestHelper.wpop;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.Rule;
+import wpds.impl.SaturationWorklist;
+import wpds.impl.Transition;
+import wpds.impl.WeightedPAutomaton;
+import wpds.impl.WeightedPushdownSystem;
+import wpds.interfaces.Empty;
+import wpds.interfaces.WPAStateListener;
+import wpds.interfaces.WPAUpdateListener;
+import wpds.interfaces.WPDSUpdateListener;
+
+public class ListenerDispatchTests {
+
+  @Test
+  public void updateListenerRegisteredDuringDispatch() {
+    final WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut = waccepts(1, "a", w(1));
+    final Recorder late = new Recorder();
+    aut.registerListener(new WPAUpdateListener<StackSymbol, Abstraction, NumWeight>() {
+      @Override
+      public void onWeightAdded(Transition<StackSymbol, Abstraction> t, NumWeight w,
+          WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut) {
+        if (t.equals(t(2, "b", 1)))
+          aut.registerListener(late);
+      }
+    });
+    aut.addWeightForTransition(t(2, "b", 1), w(2));
+    aut.addWeightForTransition(t(3, "c", 2), w(3));
+    // Each transition is seen exactly once, the first two through the replay.
+    assertEquals(3, late.seen.size());
+    assertEquals(Sets.newHashSet(t(1, "a", ACC), t(2, "b", 1), t(3, "c", 2)),
+        Sets.newHashSet(late.seen));
+  }
+
+  @Test
+  public void stateListenerRegisteredDuringDispatch() {
+    final WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut = waccepts(1, "a", w(1));
+    final List<Transition<StackSymbol, Abstraction>> in = Lists.newArrayList();
+    final List<Transition<StackSymbol, Abstraction>> out = Lists.newArrayList();
+    aut.registerListener(new WPAStateListener<StackSymbol, Abstraction, NumWeight>(a(2)) {
+      @Override
+      public void onOutTransitionAdded(Transition<StackSymbol, Abstraction> t, NumWeight w,
+          WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut) {
+        aut.registerListener(new WPAStateListener<StackSymbol, Abstraction, NumWeight>(a(1)) {
+          @Override
+          public void onOutTransitionAdded(Transition<StackSymbol, Abstraction> t, NumWeight w,
+              WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut) {
+            out.add(t);
+          }
+
+          @Override
+          public void onInTransitionAdded(Transition<StackSymbol, Abstraction> t, NumWeight w,
+              WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut) {
+            in.add(t);
+          }
+        });
+      }
+
+      @Override
+      public void onInTransitionAdded(Transition<StackSymbol, Abstraction> t, NumWeight w,
+          WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut) {}
+    });
+    aut.addWeightForTransition(t(2, "b", 1), w(2));
+    aut.addWeightForTransition(t(1, "c", 4), w(3));
+    aut.addWeightForTransition(t(5, "d", 1), w(4));
+    assertEquals(Lists.newArrayList(t(1, "a", ACC), t(1, "c", 4)), out);
+    assertEquals(Sets.newHashSet(t(2, "b", 1), t(5, "d", 1)), Sets.newHashSet(in));
+  }
+
+  @Test
+  public void batchIsStoredBeforeDispatch() {
+    final WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut = waccepts(1, "a", w(1));
+    final List<Integer> sizes = Lists.newArrayList();
+    aut.registerListener(new WPAUpdateListener<StackSymbol, Abstraction, NumWeight>() {
+      @Override
+      public void onWeightAdded(Transition<StackSymbol, Abstraction> t, NumWeight w,
+          WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut) {
+        sizes.add(aut.getTransitions().size());
+      }
+    });
+    Map<Transition<StackSymbol, Abstraction>, NumWeight> batch = Maps.newLinkedHashMap();
+    batch.put(t(2, "b", 1), w(2));
+    batch.put(t(3, "c", 2), w(3));
+    assertTrue(aut.addWeightsForTransitions(batch));
+    assertEquals(Lists.newArrayList(1, 3, 3), sizes);
+    assertTrue(aut.addTransitions(Lists.newArrayList(t(4, "d", 3), t(4, "d", 3))));
+    assertEquals(Lists.newArrayList(1, 3, 3, 4), sizes);
+  }
+
+  @Test
+  public void rulesAreIndexedBeforeDispatch() {
+    final WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight> pds =
+        new WeightedPushdownSystem<>();
+    final List<Integer> sizes = Lists.newArrayList();
+    pds.registerUpdateListener(new WPDSUpdateListener<StackSymbol, Abstraction, NumWeight>() {
+      @Override
+      public void onRuleAdded(Rule<StackSymbol, Abstraction, NumWeight> rule) {
+        sizes.add(pds.getAllRules().size());
+      }
+    });
+    List<Rule<StackSymbol, Abstraction, NumWeight>> rules = Lists.newArrayList();
+    rules.add(wnormal(1, "a", 1, "b", w(1)));
+    rules.add(wpop(1, "b", 2, w(2)));
+    rules.add(wnormal(1, "a", 1, "b", w(1)));
+    assertTrue(pds.addRules(rules));
+    assertEquals(Lists.newArrayList(2, 2), sizes);
+    assertFalse(pds.addRules(rules));
+  }
+
+  @Test
+  public void rulesAddedDuringSaturationMatchEagerSaturation() {
+    Random random = new Random(11);
+    for (int round = 0; round < 300; round++) {
+      List<Rule<StackSymbol, Abstraction, MinSemiring>> rules = Lists.newArrayList();
+      for (int i = random.nextInt(30); i >= 0; i--) {
+        int from = 1 + random.nextInt(3);
+        int to = 1 + random.nextInt(3);
+        String l = "s" + random.nextInt(4);
+        MinSemiring weight = new MinSemiring(random.nextInt(6));
+        switch (random.nextInt(4)) {
+        case 0:
+          rules.add(MinSeminringPostStarTests.wpush(from, l, to, "s" + random.nextInt(4),
+              "s" + random.nextInt(4), weight));
+          break;
+        case 1:
+          rules.add(MinSeminringPostStarTests.wpop(from, l, to, weight));
+          break;
+        default:
+          rules.add(MinSeminringPostStarTests.wnormal(from, l, to, "s" + random.nextInt(4), weight));
+        }
+      }
+      WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> eager = new WeightedPushdownSystem<>();
+      eager.addRules(rules);
+      WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> expected =
+          MinSeminringPostStarTests.waccepts(1, "s0", new MinSemiring(0));
+      eager.poststar(expected);
+
+      final boolean worklist = random.nextBoolean();
+      final WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> incremental =
+          new WeightedPushdownSystem<>();
+      if (worklist)
+        incremental.setSaturationWorklist(SaturationWorklist.<StackSymbol, Abstraction, MinSemiring>fifo());
+      int before = random.nextInt(rules.size() + 1);
+      incremental.addRules(rules.subList(0, before));
+      WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> actual =
+          MinSeminringPostStarTests.waccepts(1, "s0", new MinSemiring(0));
+      // The remaining rules arrive one by one while transitions are dispatched.
+      final List<Rule<StackSymbol, Abstraction, MinSemiring>> remaining =
+          Lists.newArrayList(rules.subList(before, rules.size()));
+      actual.registerListener(new WPAUpdateListener<StackSymbol, Abstraction, MinSemiring>() {
+        @Override
+        public void onWeightAdded(Transition<StackSymbol, Abstraction> t, MinSemiring w,
+            WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> aut) {
+          if (!remaining.isEmpty())
+            incremental.addRule(remaining.remove(0));
+        }
+      });
+      incremental.poststar(actual);
+      incremental.addRules(remaining);
+      if (worklist)
+        actual.getSaturationWorklist().drain();
+      assertEquals("Round " + round, values(expected), values(actual));
+    }
+  }
+
+  @Test
+  public void popReachesPastEmptyTransition() {
+    WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight> pds = new WeightedPushdownSystem<>();
+    pds.addRule(wpop(1, "a", 4, w(2)));
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> fa = waccepts(1, "c", w(1));
+    fa.addWeightForTransition(t(a(1), new EmptySymbol("empty"), a(2)), w(1));
+    fa.addWeightForTransition(t(a(2), s("a"), a(3, "g")), w(1));
+    fa.addWeightForTransition(t(a(3, "g"), s("b"), ACC), w(1));
+    pds.poststar(fa);
+    // The pop rule of <1,a> is forwarded across 1 --empty--> 2 and applied to 2 --a--> 3g.
+    assertEquals(Sets.newHashSet(t(a(1), s("c"), ACC), t(a(1), new EmptySymbol("empty"), a(2)),
+        t(a(2), s("a"), a(3, "g")), t(a(3, "g"), s("b"), ACC), t(a(4), s("EPS"), a(3, "g")),
+        t(a(4), s("b"), ACC)), Sets.newHashSet(fa.getTransitions()));
+  }
+
+  private static Map<Transition<StackSymbol, Abstraction>, Integer> values(
+      WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> aut) {
+    Map<Transition<StackSymbol, Abstraction>, Integer> res = Maps.newHashMap();
+    for (Transition<StackSymbol, Abstraction> t : aut.getTransitions())
+      res.put(t, aut.getWeightFor(t).i);
+    return res;
+  }
+
+  private static class Recorder implements WPAUpdateListener<StackSymbol, Abstraction, NumWeight> {
+    private final List<Transition<StackSymbol, Abstraction>> seen = Lists.newArrayList();
+
+    @Override
+    public void onWeightAdded(Transition<StackSymbol, Abstraction> t, NumWeight w,
+        WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut) {
+      seen.add(t);
+    }
+  }
+
+  private static NumWeight w(int i) {
+    return new NumWeight(i);
+  }
+
+  private static class EmptySymbol extends StackSymbol implements Empty {
+    EmptySymbol(String s) {
+      super(s);
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static tests.TestHelper.a;
+
+import org.junit.Test;
+
+import com.google.common.collect.Multiset;
+
+import tests.TestHelper.Abstraction;
+import wpds.impl.ListenerList;
+import wpds.impl.ListenerRegistry;
+
+public class ListenerListTests {
+
+  @Test
+  public void deduplicatesBelowAndAboveIndexThreshold() {
+    ListenerList<Object> list = new ListenerList<>();
+    for (int i = 0; i < 50; i++) {
+      // Distinct but equal instances.
+      assertTrue(list.add("l" + i));
+      assertFalse(list.add("l" + i));
+      assertFalse(list.add("l" + (i / 2)));
+    }
+    assertEquals(50, list.size());
+    for (int i = 0; i < 50; i++) {
+      assertEquals("l" + i, list.elements()[i]);
+    }
+    assertTrue(list.contains("l" + 7));
+    assertFalse(list.contains("l" + 50));
+  }
+
+  @Test
+  public void registryCountsByClass() {
+    ListenerRegistry<Abstraction, Object> registry = new ListenerRegistry<>();
+    assertTrue(registry.put(a(1), "x"));
+    assertTrue(registry.put(a(1), "y"));
+    assertFalse(registry.put(a(1), "x"));
+    assertTrue(registry.put(a(2), "x"));
+    assertTrue(registry.put(a(2), Integer.valueOf(3)));
+    assertEquals(4, registry.size());
+    assertEquals(2, registry.get(a(1)).size());
+    Multiset<Class<?>> counts = registry.countByClass();
+    assertEquals(3, counts.count(String.class));
+    assertEquals(1, counts.count(Integer.class));
+    registry.clear();
+    assertEquals(null, registry.get(a(1)));
+    assertEquals(0, registry.size());
+  }
+}
@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static tests.TestHelper.ACC;
+import static tests.TestHelper.a;
+import static tests.TestHelper.s;
+import static tests.TestHelper.t;
+import static tests.TestHelper.waccepts;
+import static tests.TestHelper.wnormal;
+import static tests.TestHelper.wpop;
+import static tests.TestHelper.wpush;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.OffHeapTransitionStore;
+import wpds.impl.Transition;
+import wpds.impl.TransitionStore;
+import wpds.impl.WeightedPAutomaton;
+import wpds.impl.WeightedPushdownSystem;
+import wpds.interfaces.WPAStateListener;
+
+public class OffHeapTransitionStoreTests {
+
+  @Test
+  public void putAndGet() {
+    OffHeapTransitionStore<StackSymbol, Abstraction, NumWeight> store = new OffHeapTransitionStore<>();
+    assertNull(store.getWeight(t(1, "a", 2)));
+    assertNull(store.putWeight(t(1, "a", 2), new NumWeight(1)));
+    assertEquals(new NumWeight(1), store.putWeight(t(1, "a", 2), new NumWeight(2)));
+    assertEquals(new NumWeight(2), store.getWeight(t(1, "a", 2)));
+    store.putWeight(t(1, "b", 3), new NumWeight(3));
+    store.putWeight(t(3, "b", 2), new NumWeight(3));
+    assertEquals(3, store.size());
+    assertEquals(2, store.getTransitionsOutOf(a(1)).size());
+    assertEquals(2, store.getTransitionsInto(a(2)).size());
+    assertTrue(store.getTransitionsInto(a(1)).isEmpty());
+    assertTrue(store.getTransitionsOutOf(a(4)).isEmpty());
+    Set<Abstraction> targets = Sets.newHashSet();
+    for (int id = store.firstOutOf(a(1)); id >= 0; id = store.nextOutOf(id))
+      targets.add(store.getTarget(id));
+    assertEquals(Sets.newHashSet(a(2), a(3)), targets);
+  }
+
+  @Test
+  public void manyTransitionsInMappedFile() throws IOException {
+    File file = File.createTempFile("transitions", ".bin");
+    file.deleteOnExit();
+    try (OffHeapTransitionStore<StackSymbol, Abstraction, NumWeight> store =
+        new OffHeapTransitionStore<>(file.toPath())) {
+      for (int i = 0; i < 1000; i++) {
+        store.putWeight(t(i, "l" + (i % 7), i + 1), new NumWeight(i % 10));
+        store.putWeight(t(i, "m", 0), new NumWeight(1));
+      }
+      assertEquals(2000, store.size());
+      assertEquals(1000, store.getTransitionsInto(a(0)).size());
+      for (int i = 0; i < 1000; i++) {
+        assertEquals(new NumWeight(i % 10), store.getWeight(t(i, "l" + (i % 7), i + 1)));
+        assertNull(store.getWeight(t(i, "l" + ((i + 1) % 7), i + 1)));
+      }
+    }
+  }
+
+  @Test
+  public void poststarMatchesHashStore() {
+    WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight> pds = new WeightedPushdownSystem<>();
+    pds.addRule(wnormal(1, "a", 1, "b", w(1)));
+    pds.addRule(wpush(1, "b", 2, "call", "d", w(2)));
+    pds.addRule(wnormal(2, "call", 2, "e", w(3)));
+    pds.addRule(wpop(2, "e", 3, w(4)));
+    pds.addRule(wnormal(3, "d", 1, "f", w(5)));
+    pds.addRule(wpush(1, "f", 2, "call", "g", w(6)));
+    pds.addRule(wnormal(3, "g", 4, "h", w(7)));
+
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> hashed = waccepts(1, "a", w(0));
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> offHeap = offHeapAccepts(1, "a", w(0));
+    pds.poststar(hashed);
+    pds.poststar(offHeap);
+
+    assertEquals(new HashSet<>(hashed.getTransitions()), new HashSet<>(offHeap.getTransitions()));
+    for (Transition<StackSymbol, Abstraction> t : hashed.getTransitions()) {
+      assertEquals(hashed.getWeightFor(t), offHeap.getWeightFor(t));
+    }
+    assertEquals(w(35), offHeap.getWeightFor(t(4, "h", ACC)));
+  }
+
+  @Test
+  public void stateListenerSeesEachTransitionOnce() {
+    final WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut = offHeapAccepts(1, "a", w(1));
+    aut.addWeightForTransition(t(1, "b", ACC), w(2));
+    aut.addWeightForTransition(t(2, "c", 1), w(3));
+    final Multiset<Transition<StackSymbol, Abstraction>> out = HashMultiset.create();
+    final Multiset<Transition<StackSymbol, Abstraction>> in = HashMultiset.create();
+    aut.registerListener(new WPAStateListener<StackSymbol, Abstraction, NumWeight>(a(1)) {
+      @Override
+      public void onOutTransitionAdded(Transition<StackSymbol, Abstraction> t, NumWeight w,
+          WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> weightedPAutomaton) {
+        out.add(t);
+        // Transitions added while the adjacency is walked reach the listener once, through its
+        // registration.
+        if (out.size() < 10)
+          aut.addWeightForTransition(t(1, "n" + out.size(), ACC), w(1));
+      }
+
+      @Override
+      public void onInTransitionAdded(Transition<StackSymbol, Abstraction> t, NumWeight w,
+          WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> weightedPAutomaton) {
+        in.add(t);
+      }
+    });
+    assertEquals(out.size(), out.elementSet().size());
+    assertEquals(new HashSet<>(aut.getTransitionsOutOf(a(1))), out.elementSet());
+    assertEquals(1, in.count(t(2, "c", 1)));
+  }
+
+  private static WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> offHeapAccepts(int a,
+      String c, NumWeight weight) {
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut =
+        new WeightedPAutomaton<StackSymbol, Abstraction, NumWeight>(a(a)) {
+
+          @Override
+          public Abstraction createState(Abstraction d, StackSymbol loc) {
+            return new Abstraction(d, loc);
+          }
+
+          @Override
+          public StackSymbol epsilon() {
+            return s("EPS");
+          }
+
+          @Override
+          public NumWeight getOne() {
+            return NumWeight.one();
+          }
+
+          @Override
+          public NumWeight getZero() {
+            return NumWeight.zero();
+          }
+
+          @Override
+          public boolean isGeneratedState(Abstraction d) {
+            return d.s != null;
+          }
+
+          @Override
+          protected TransitionStore<StackSymbol, Abstraction, NumWeight> createTransitionStore() {
+            return new OffHeapTransitionStore<>();
+          }
+        };
+    aut.addFinalState(ACC);
+    aut.addTransition(t(a, c, ACC));
+    aut.addWeightForTransition(t(a, c, ACC), weight);
+    return aut;
+  }
+
+  private static NumWeight w(int i) {
+    return new NumWeight(i);
+  }
+}
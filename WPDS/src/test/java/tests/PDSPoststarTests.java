@@ -42,7 +42,11 @@ public class PDSPoststarTests {
 
   @Before
   public void init() {
-    pds = new PushdownSystem<StackSymbol, Abstraction>() {};
+    pds = createPushdownSystem();
+  }
+
+  protected PushdownSystem<StackSymbol, Abstraction> createPushdownSystem() {
+    return new PushdownSystem<StackSymbol, Abstraction>() {};
   }
 
   @Test
@@ -25,7 +25,6 @@ import java.util.Collection;
 import java.util.Set;
 
 import org.junit.Before;
-import org.junit.Ignore;
 import org.junit.Test;
 
 import tests.TestHelper.Abstraction;
@@ -34,7 +33,6 @@ import wpds.impl.PAutomaton;
 import wpds.impl.PushdownSystem;
 import wpds.impl.Transition;
 
-@Ignore 
 public class PDSPrestarTests {
 
   private PushdownSystem<StackSymbol, Abstraction> pds;
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static tests.MinSeminringPostStarTests.waccepts;
+import static tests.MinSeminringPostStarTests.wnormal;
+import static tests.MinSeminringPostStarTests.wpop;
+import static tests.MinSeminringPostStarTests.wpush;
+import static tests.TestHelper.ACC;
+import static tests.TestHelper.t;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.Transition;
+import wpds.impl.WeightedPAutomaton;
+import wpds.impl.WeightedPushdownSystem;
+
+public class ParallelPostStarTests {
+  private ForkJoinPool pool;
+
+  @Before
+  public void init() {
+    pool = new ForkJoinPool(4);
+  }
+
+  @After
+  public void shutdown() {
+    pool.shutdown();
+  }
+
+  @Test
+  public void twoCall() {
+    WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds =
+        new WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring>();
+    pds.addRule(wnormal(1, "a", 1, "b", w(1)));
+    pds.addRule(wpush(1, "b", 1, "call", "d", w(1)));
+    pds.addRule(wnormal(1, "call", 1, "e", w(1)));
+    pds.addRule(wpop(1, "e", 1, w(1)));
+    pds.addRule(wnormal(1, "d", 1, "f", w(1)));
+    pds.addRule(wpush(1, "f", 1, "call", "g", w(1)));
+    pds.addRule(wnormal(1, "g", 1, "h", w(1)));
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = waccepts(1, "a", w(0));
+    pds.poststar(fa, pool);
+    assertEquals(w(9), fa.getWeightFor(t(1, "h", ACC)));
+  }
+
+  @Test
+  public void randomSystemsMatchSequentialPoststar() {
+    Random random = new Random(42);
+    for (int round = 0; round < 200; round++) {
+      WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds =
+          new WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring>();
+      int rules = 5 + random.nextInt(60);
+      for (int i = 0; i < rules; i++) {
+        int kind = random.nextInt(5);
+        int from = 1 + random.nextInt(4);
+        int to = 1 + random.nextInt(4);
+        String l1 = label(random);
+        if (kind < 3) {
+          pds.addRule(wnormal(from, l1, to, label(random), w(random.nextInt(5))));
+        } else if (kind == 3) {
+          pds.addRule(wpush(from, l1, to, label(random), label(random), w(random.nextInt(5))));
+        } else {
+          pds.addRule(wpop(from, l1, to, w(random.nextInt(5))));
+        }
+      }
+      WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> sequential =
+          waccepts(1, "a", w(0));
+      pds.poststar(sequential);
+      WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> parallel =
+          waccepts(1, "a", w(0));
+      pds.poststar(parallel, pool);
+      assertEquals("Round " + round, weights(sequential), weights(parallel));
+    }
+  }
+
+  /**
+   * The sequential engine may store the distinct but equivalent MinSemiring.one() and w(0) for the
+   * same transition, depending on how often it is updated, so only the values are compared.
+   */
+  private static Map<Transition<StackSymbol, Abstraction>, Integer> weights(
+      WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> aut) {
+    Map<Transition<StackSymbol, Abstraction>, Integer> res = Maps.newHashMap();
+    for (Transition<StackSymbol, Abstraction> t : aut.getTransitions()) {
+      res.put(t, aut.getWeightFor(t).i);
+    }
+    return res;
+  }
+
+  private static String label(Random random) {
+    return Character.toString((char) ('a' + random.nextInt(6)));
+  }
+
+  private static MinSemiring w(int i) {
+    return new MinSemiring(i);
+  }
+}
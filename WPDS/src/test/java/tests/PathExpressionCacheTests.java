@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static tests.TestHelper.a;
+import static tests.TestHelper.accepts;
+import static tests.TestHelper.t;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Table;
+
+import pathexpression.IRegEx;
+import pathexpression.PathExpressionComputer;
+import pathexpression.RegEx;
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.PAutomaton;
+
+public class PathExpressionCacheTests {
+  private static final int STATES = 8;
+
+  @Test
+  public void randomAdditionsMatchUncachedComputer() {
+    Random random = new Random(17);
+    for (int round = 0; round < 100; round++) {
+      PAutomaton<StackSymbol, Abstraction> aut = accepts(0, "s0");
+      // All states exist up front, through epsilon transitions that are not edges of the
+      // path-expression graph, so the computer numbers the states alike in every snapshot.
+      for (int i = 0; i < STATES; i++)
+        aut.addTransition(t(i, "EPS", i + 1));
+      // One label per pair of states, so the edges between two states do not depend on the order
+      // in which the graph is iterated.
+      Table<Integer, Integer, String> labels = HashBasedTable.create();
+      for (int step = 0; step < 30; step++) {
+        int from = random.nextInt(STATES);
+        int to = random.nextInt(STATES);
+        if (!labels.contains(from, to)) {
+          labels.put(from, to, "s" + random.nextInt(3));
+          aut.addTransition(t(from, labels.get(from, to), to));
+        }
+        int end = random.nextInt(STATES);
+        List<Abstraction> starts = Lists.newArrayList();
+        for (int i = random.nextInt(4); i >= 0; i--)
+          starts.add(a(random.nextInt(STATES)));
+        PathExpressionComputer<Abstraction, StackSymbol> uncached =
+            new PathExpressionComputer<Abstraction, StackSymbol>(aut);
+        Map<Abstraction, IRegEx<StackSymbol>> batch = aut.toRegEx(starts, a(end));
+        for (Abstraction start : starts) {
+          String expected = RegEx.reverse(uncached.getExpressionBetween(a(end), start)).toString();
+          assertEquals("Round " + round, expected, aut.toRegEx(start, a(end)).toString());
+          assertEquals("Round " + round, expected, batch.get(start).toString());
+        }
+      }
+    }
+  }
+}
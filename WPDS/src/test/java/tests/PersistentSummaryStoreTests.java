@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static tests.TestHelper.a;
+import static tests.TestHelper.waccepts;
+import static tests.TestHelper.wnormal;
+import static tests.TestHelper.wpop;
+import static tests.TestHelper.wpush;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.PersistentSummaryStore;
+import wpds.impl.SummaryCodec;
+import wpds.impl.Transition;
+import wpds.impl.WeightedPAutomaton;
+import wpds.impl.WeightedPushdownSystem;
+
+public class PersistentSummaryStoreTests {
+
+  @Test
+  public void roundTrip() throws IOException {
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut = saturated();
+    PersistentSummaryStore<StackSymbol, Abstraction, NumWeight> store =
+        new PersistentSummaryStore<>(new Codec("v1"));
+    store.record("m", "h1", a(1), aut);
+
+    PersistentSummaryStore<StackSymbol, Abstraction, NumWeight> loaded = reload(store, "v1");
+    assertEquals(1, loaded.size());
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> restored = waccepts(1, "a", w(0));
+    assertTrue(loaded.restore("m", "h1", a(1), restored));
+    assertEquals(new HashSet<>(aut.getTransitions()), new HashSet<>(restored.getTransitions()));
+    for (Transition<StackSymbol, Abstraction> t : aut.getTransitions()) {
+      assertEquals(aut.getWeightFor(t), restored.getWeightFor(t));
+    }
+  }
+
+  @Test
+  public void changedFingerprintInvalidates() throws IOException {
+    PersistentSummaryStore<StackSymbol, Abstraction, NumWeight> store =
+        new PersistentSummaryStore<>(new Codec("v1"));
+    store.record("m", "h1", a(1), saturated());
+    PersistentSummaryStore<StackSymbol, Abstraction, NumWeight> loaded = reload(store, "v1");
+    assertFalse(loaded.restore("m", "h2", a(1), waccepts(1, "a", w(0))));
+    assertFalse(loaded.contains("m", "h1"));
+    assertFalse(loaded.restore("m", "h1", a(1), waccepts(1, "a", w(0))));
+  }
+
+  @Test
+  public void otherCodecIsIgnored() throws IOException {
+    PersistentSummaryStore<StackSymbol, Abstraction, NumWeight> store =
+        new PersistentSummaryStore<>(new Codec("v1"));
+    store.record("m", "h1", a(1), saturated());
+    PersistentSummaryStore<StackSymbol, Abstraction, NumWeight> loaded = reload(store, "v2");
+    assertEquals(0, loaded.size());
+  }
+
+  @Test
+  public void decodedOnFirstRestore() throws IOException {
+    PersistentSummaryStore<StackSymbol, Abstraction, NumWeight> store =
+        new PersistentSummaryStore<>(new Codec("v1"));
+    store.record("m", "h1", a(1), saturated());
+    store.record("n", "h1", a(1), saturated());
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    store.write(bytes);
+    // The codec cannot resolve locations while the store is loaded.
+    Codec codec = new Codec("v1");
+    codec.resolvable = false;
+    PersistentSummaryStore<StackSymbol, Abstraction, NumWeight> loaded = new PersistentSummaryStore<>(codec);
+    assertTrue(loaded.read(new ByteArrayInputStream(bytes.toByteArray())));
+    assertEquals(2, loaded.size());
+    codec.resolvable = true;
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> restored = waccepts(1, "a", w(0));
+    assertTrue(loaded.restore("m", "h1", a(1), restored));
+    assertEquals(new HashSet<>(saturated().getTransitions()), new HashSet<>(restored.getTransitions()));
+
+    // The group that was never restored is written back unchanged.
+    PersistentSummaryStore<StackSymbol, Abstraction, NumWeight> again = reload(loaded, "v1");
+    assertEquals(2, again.size());
+    assertTrue(again.restore("n", "h1", a(1), waccepts(1, "a", w(0))));
+  }
+
+  static WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> saturated() {
+    WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight> pds = new WeightedPushdownSystem<>();
+    pds.addRule(wnormal(1, "a", 1, "b", w(1)));
+    pds.addRule(wpush(1, "b", 2, "call", "d", w(2)));
+    pds.addRule(wnormal(2, "call", 2, "e", w(3)));
+    pds.addRule(wpop(2, "e", 3, w(4)));
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut = waccepts(1, "a", w(0));
+    pds.poststar(aut);
+    return aut;
+  }
+
+  private static PersistentSummaryStore<StackSymbol, Abstraction, NumWeight> reload(
+      PersistentSummaryStore<StackSymbol, Abstraction, NumWeight> store, String codecId)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    store.write(bytes);
+    PersistentSummaryStore<StackSymbol, Abstraction, NumWeight> loaded =
+        new PersistentSummaryStore<>(new Codec(codecId));
+    loaded.read(new ByteArrayInputStream(bytes.toByteArray()));
+    return loaded;
+  }
+
+  private static NumWeight w(int i) {
+    return new NumWeight(i);
+  }
+
+  static class Codec implements SummaryCodec<StackSymbol, Abstraction, NumWeight> {
+    private final String id;
+    boolean resolvable = true;
+
+    Codec(String id) {
+      this.id = id;
+    }
+
+    @Override
+    public String id() {
+      return id;
+    }
+
+    @Override
+    public void writeLocation(StackSymbol location, DataOutput out) throws IOException {
+      out.writeUTF(location.s);
+    }
+
+    @Override
+    public StackSymbol readLocation(DataInput in) throws IOException {
+      if (!resolvable)
+        throw new IOException("Not resolvable yet");
+      return new StackSymbol(in.readUTF());
+    }
+
+    @Override
+    public void writeState(Abstraction state, DataOutput out) throws IOException {
+      out.writeInt(state.a);
+      out.writeBoolean(state.s != null);
+      if (state.s != null)
+        writeLocation(state.s, out);
+    }
+
+    @Override
+    public Abstraction readState(DataInput in) throws IOException {
+      Abstraction state = new Abstraction(in.readInt());
+      return in.readBoolean() ? new Abstraction(state, readLocation(in)) : state;
+    }
+
+    @Override
+    public void writeWeight(NumWeight weight, DataOutput out) throws IOException {
+      out.writeUTF(weight.toString());
+    }
+
+    @Override
+    public NumWeight readWeight(DataInput in) throws IOException {
+      String w = in.readUTF();
+      if (w.equals(NumWeight.one().toString()))
+        return NumWeight.one();
+      if (w.equals(NumWeight.zero().toString()))
+        return NumWeight.zero();
+      return new NumWeight(Integer.parseInt(w));
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static tests.TestHelper.a;
+import static tests.TestHelper.normal;
+import static tests.TestHelper.pop;
+import static tests.TestHelper.push;
+import static tests.TestHelper.s;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.PushdownSystem;
+
+public class RuleIndexTests {
+
+  private PushdownSystem<StackSymbol, Abstraction> pds;
+
+  @Before
+  public void init() {
+    pds = new PushdownSystem<StackSymbol, Abstraction>() {};
+  }
+
+  @Test
+  public void rulesStarting() {
+    pds.addRule(normal(1, "a", 2, "b"));
+    pds.addRule(push(1, "a", 3, "c", "d"));
+    pds.addRule(pop(1, "b", 4));
+    pds.addRule(normal(2, "a", 2, "b"));
+    assertEquals(2, pds.getRulesStarting(a(1), s("a")).size());
+    assertTrue(pds.getRulesStarting(a(1), s("b")).contains(pop(1, "b", 4)));
+    assertTrue(pds.getRulesStarting(a(3), s("a")).isEmpty());
+  }
+
+  @Test
+  public void rulesEnding() {
+    pds.addRule(normal(1, "a", 2, "b"));
+    pds.addRule(normal(3, "c", 2, "b"));
+    pds.addRule(push(1, "a", 2, "b", "d"));
+    assertEquals(2, pds.getNormalRulesEnding(a(2), s("b")).size());
+    assertEquals(1, pds.getPushRulesEnding(a(2), s("b")).size());
+    assertTrue(pds.getNormalRulesEnding(a(1), s("a")).isEmpty());
+  }
+
+  @Test
+  public void pushRulesWithCallSite() {
+    pds.addRule(push(1, "a", 2, "b", "d"));
+    pds.addRule(push(3, "a", 2, "b", "e"));
+    assertEquals(1, pds.getPushRulesWithCallSite(s("d")).size());
+    assertTrue(pds.getPushRulesWithCallSite(s("f")).isEmpty());
+  }
+
+  @Test
+  public void indexIsUpdatedIncrementally() {
+    pds.addRule(normal(1, "a", 2, "b"));
+    assertEquals(1, pds.getRulesStarting(a(1), s("a")).size());
+    pds.addRule(normal(1, "a", 3, "b"));
+    pds.addRule(normal(1, "a", 3, "b"));
+    assertEquals(2, pds.getRulesStarting(a(1), s("a")).size());
+    assertEquals(3, pds.getStates().size());
+  }
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static tests.MinSeminringPostStarTests.waccepts;
+import static tests.TestHelper.a;
+import static tests.TestHelper.s;
+import static tests.TestHelper.t;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.Transition;
+import wpds.impl.WeightedPAutomaton;
+
+public class TransitionsToFinalWeightsTests {
+
+  @Test
+  public void cachedUntilChanged() {
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> aut = waccepts(1, "a", w(0));
+    aut.addWeightForTransition(t(g(2), s("x"), a(1)), w(3));
+    aut.addWeightForTransition(t(g(3), s("y"), g(2)), w(4));
+    Map<Transition<StackSymbol, Abstraction>, MinSemiring> weights = aut.getTransitionsToFinalWeights();
+    assertEquals(7, weights.get(t(g(3), s("y"), g(2))).i);
+    assertSame(weights, aut.getTransitionsToFinalWeights());
+    aut.addWeightForTransition(t(g(3), s("y"), g(2)), w(1));
+    weights = aut.getTransitionsToFinalWeights();
+    assertEquals(4, weights.get(t(g(3), s("y"), g(2))).i);
+    aut.addWeightForTransition(t(a(5), s("z"), g(3)), w(2));
+    assertEquals(6, aut.getTransitionsToFinalWeights().get(t(a(5), s("z"), g(3))).i);
+    aut.addUnbalancedState(g(3));
+    assertEquals(2, aut.getTransitionsToFinalWeights().get(t(a(5), s("z"), g(3))).i);
+  }
+
+  @Test
+  public void randomGraphsMatchFixedPoint() {
+    Random random = new Random(11);
+    for (int round = 0; round < 300; round++) {
+      int n = 2 + random.nextInt(8);
+      WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> components = waccepts(1, "a", w(0));
+      WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> ordered = waccepts(1, "a", w(0));
+      ordered.setWeightOrder(new Comparator<MinSemiring>() {
+        @Override
+        public int compare(MinSemiring o1, MinSemiring o2) {
+          return Integer.compare(o1.i, o2.i);
+        }
+      });
+      int[][] edge = new int[n + 1][n + 1];
+      int edges = random.nextInt(3 * n);
+      for (int i = 0; i < edges; i++) {
+        // Node 0 is the unbalanced initial state, the others are generated.
+        int from = 1 + random.nextInt(n);
+        int to = random.nextInt(n + 1);
+        int weight = 1 + random.nextInt(9);
+        if (edge[from][to] != 0)
+          continue;
+        edge[from][to] = weight;
+        for (WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> aut : Arrays.asList(components, ordered)) {
+          aut.addWeightForTransition(t(node(from), s("l" + from + "_" + to), node(to)), w(weight));
+          aut.addWeightForTransition(t(a(100 + to), s("in" + to), node(to)), w(1));
+        }
+      }
+      Map<Transition<StackSymbol, Abstraction>, Integer> expected = expected(edge);
+      assertEquals("Round " + round, expected, values(components.getTransitionsToFinalWeights()));
+      assertEquals("Round " + round, expected, values(ordered.getTransitionsToFinalWeights()));
+    }
+  }
+
+  private static Map<Transition<StackSymbol, Abstraction>, Integer> expected(int[][] edge) {
+    int n = edge.length;
+    Integer[] dist = new Integer[n];
+    dist[0] = 0;
+    for (int round = 0; round < n; round++) {
+      for (int i = 1; i < n; i++) {
+        for (int j = 0; j < n; j++) {
+          if (edge[i][j] != 0 && dist[j] != null && (dist[i] == null || dist[j] + edge[i][j] < dist[i]))
+            dist[i] = dist[j] + edge[i][j];
+        }
+      }
+    }
+    Map<Transition<StackSymbol, Abstraction>, Integer> res = Maps.newHashMap();
+    for (int i = 1; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        if (edge[i][j] != 0 && dist[j] != null) {
+          res.put(t(node(i), s("l" + i + "_" + j), node(j)), dist[j] + edge[i][j]);
+          res.put(t(a(100 + j), s("in" + j), node(j)), dist[j] + 1);
+        }
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Compares the int values, the one of {@link MinSemiring} is not equal to a weight of 0.
+   */
+  private static Map<Transition<StackSymbol, Abstraction>, Integer> values(
+      Map<Transition<StackSymbol, Abstraction>, MinSemiring> weights) {
+    Map<Transition<StackSymbol, Abstraction>, Integer> res = Maps.newHashMap();
+    for (Entry<Transition<StackSymbol, Abstraction>, MinSemiring> e : weights.entrySet())
+      res.put(e.getKey(), e.getValue().i);
+    return res;
+  }
+
+  private static Abstraction node(int i) {
+    return i == 0 ? a(1) : g(i);
+  }
+
+  private static Abstraction g(int i) {
+    return a(i, "g");
+  }
+
+  private static MinSemiring w(int i) {
+    return new MinSemiring(i);
+  }
+}
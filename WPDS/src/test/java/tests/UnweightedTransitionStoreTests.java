@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static tests.TestHelper.ACC;
+import static tests.TestHelper.a;
+import static tests.TestHelper.accepts;
+import static tests.TestHelper.t;
+
+import org.junit.Test;
+
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.PAutomaton;
+import wpds.impl.UnweightedTransitionStore;
+import wpds.impl.Weight;
+import wpds.impl.Weight.NoWeight;
+
+public class UnweightedTransitionStoreTests {
+
+  @Test
+  public void putAndGet() {
+    UnweightedTransitionStore<StackSymbol, Abstraction, NoWeight> store =
+        new UnweightedTransitionStore<>();
+    assertNull(store.getWeight(t(1, "a", 2)));
+    assertNull(store.putWeight(t(1, "a", 2), Weight.NO_WEIGHT_ONE));
+    assertSame(Weight.NO_WEIGHT_ONE, store.putWeight(t(1, "a", 2), Weight.NO_WEIGHT_ONE));
+    assertSame(Weight.NO_WEIGHT_ONE, store.getWeight(t(1, "a", 2)));
+    store.putWeight(t(1, "b", 3), Weight.NO_WEIGHT_ONE);
+    store.putWeight(t(3, "b", 2), Weight.NO_WEIGHT_ONE);
+    assertEquals(3, store.size());
+    assertEquals(3, store.getTransitions().size());
+    assertEquals(2, store.getTransitionsOutOf(a(1)).size());
+    assertEquals(2, store.getTransitionsInto(a(2)).size());
+    assertTrue(store.getTransitionsInto(a(1)).isEmpty());
+  }
+
+  @Test
+  public void automatonAddsEachTransitionOnce() {
+    PAutomaton<StackSymbol, Abstraction> aut = accepts(1, "a");
+    assertFalse(aut.addTransition(t(1, "a", ACC)));
+    assertTrue(aut.addTransition(t(1, "b", ACC)));
+    assertEquals(2, aut.getTransitions().size());
+    assertSame(Weight.NO_WEIGHT_ONE, aut.getWeightFor(t(1, "b", ACC)));
+  }
+}
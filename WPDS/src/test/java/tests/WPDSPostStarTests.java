@@ -37,7 +37,11 @@ public class WPDSPostStarTests {
 
   @Before
   public void init() {
-    pds = new WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight>();
+    pds = createPushdownSystem();
+  }
+
+  protected WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight> createPushdownSystem() {
+    return new WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight>();
   }
 
   @Test
@@ -20,7 +20,6 @@ import static tests.TestHelper.wpop;
 import static tests.TestHelper.wpush;
 
 import org.junit.Before;
-import org.junit.Ignore;
 import org.junit.Test;
 
 import tests.TestHelper.Abstraction;
@@ -28,7 +27,6 @@ import tests.TestHelper.StackSymbol;
 import wpds.impl.WeightedPAutomaton;
 import wpds.impl.WeightedPushdownSystem;
 
-@Ignore 
 public class WPDSPreStarTests {
   private WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight> pds;
 
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package tests;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static tests.TestHelper.ACC;
+import static tests.TestHelper.accepts;
+import static tests.TestHelper.normal;
+import static tests.TestHelper.pop;
+import static tests.TestHelper.push;
+import static tests.TestHelper.t;
+
+import org.junit.Test;
+
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.PAutomaton;
+import wpds.impl.PushdownSystem;
+import wpds.impl.SaturationWorklist;
+import wpds.impl.Weight.NoWeight;
+
+public class WorklistPDSPostStarTests extends PDSPoststarTests {
+  private static final long SMALL_STACK = 256 * 1024;
+
+  @Override
+  protected PushdownSystem<StackSymbol, Abstraction> createPushdownSystem() {
+    PushdownSystem<StackSymbol, Abstraction> pds = super.createPushdownSystem();
+    pds.setSaturationWorklist(SaturationWorklist.<StackSymbol, Abstraction, NoWeight>lifo());
+    return pds;
+  }
+
+  /**
+   * Saturates a deep call chain on a thread with a small stack, on which the recursive engine
+   * overflows.
+   */
+  @Test
+  public void longCallChain() throws InterruptedException {
+    assertNull(saturateOnSmallStack(createPushdownSystem()));
+    assertTrue(saturateOnSmallStack(new PushdownSystem<StackSymbol, Abstraction>() {})
+        instanceof StackOverflowError);
+  }
+
+  private static Throwable saturateOnSmallStack(final PushdownSystem<StackSymbol, Abstraction> pds)
+      throws InterruptedException {
+    int depth = 1000;
+    for (int i = 0; i < depth; i++) {
+      pds.addRule(push(1, "n" + i, 1, "n" + (i + 1), "r" + i));
+      pds.addRule(normal(1, "r" + i, 1, "r" + i + "'"));
+      pds.addRule(pop(1, "r" + i + "'", 1));
+    }
+    pds.addRule(pop(1, "n" + depth, 1));
+    final PAutomaton<StackSymbol, Abstraction> fa = accepts(1, "n0");
+    final Throwable[] failure = new Throwable[1];
+    Thread thread = new Thread(null, new Runnable() {
+      @Override
+      public void run() {
+        try {
+          pds.poststar(fa);
+        } catch (Throwable e) {
+          failure[0] = e;
+        }
+      }
+    }, "poststar", SMALL_STACK);
+    thread.start();
+    thread.join();
+    if (failure[0] == null)
+      assertTrue(fa.getTransitions().contains(t(1, "r0'", ACC)));
+    return failure[0];
+  }
+}
@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package tests;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.PushdownSystem;
+import wpds.impl.SaturationWorklist;
+import wpds.impl.Transition;
+import wpds.impl.Weight.NoWeight;
+
+@RunWith(Parameterized.class)
+public class WorklistSummaryPDSPostStarTests extends SummaryPDSPostStarTests {
+  private final String order;
+
+  public WorklistSummaryPDSPostStarTests(String order) {
+    this.order = order;
+  }
+
+  @Parameters(name = "{0}")
+  public static Collection<Object[]> orders() {
+    return Arrays.asList(new Object[][] {{"fifo"}, {"lifo"}, {"priority"}});
+  }
+
+  @Override
+  protected PushdownSystem<StackSymbol, Abstraction> createPushdownSystem() {
+    PushdownSystem<StackSymbol, Abstraction> pds = super.createPushdownSystem();
+    pds.setSaturationWorklist(worklist());
+    return pds;
+  }
+
+  private SaturationWorklist<StackSymbol, Abstraction, NoWeight> worklist() {
+    if (order.equals("fifo"))
+      return SaturationWorklist.fifo();
+    if (order.equals("lifo"))
+      return SaturationWorklist.lifo();
+    return SaturationWorklist.priority(new Comparator<Transition<StackSymbol, Abstraction>>() {
+      @Override
+      public int compare(Transition<StackSymbol, Abstraction> o1, Transition<StackSymbol, Abstraction> o2) {
+        return o1.toString().compareTo(o2.toString());
+      }
+    });
+  }
+}
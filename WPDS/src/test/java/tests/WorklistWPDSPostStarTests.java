@@ -0,0 +1,26 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package tests;
+
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.SaturationWorklist;
+import wpds.impl.WeightedPushdownSystem;
+
+public class WorklistWPDSPostStarTests extends WPDSPostStarTests {
+  @Override
+  protected WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight> createPushdownSystem() {
+    WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight> pds = super.createPushdownSystem();
+    pds.setSaturationWorklist(SaturationWorklist.<StackSymbol, Abstraction, NumWeight>fifo());
+    return pds;
+  }
+}
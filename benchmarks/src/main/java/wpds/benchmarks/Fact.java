@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.benchmarks;
+
+import wpds.interfaces.State;
+
+/**
+ * Control state of the synthetic pushdown systems. States generated by the post* saturation
+ * additionally carry the statement they were generated for.
+ */
+public class Fact implements State {
+	private final int id;
+	private final Statement generatedFor;
+
+	public Fact(int id) {
+		this(id, null);
+	}
+
+	public Fact(int id, Statement generatedFor) {
+		this.id = id;
+		this.generatedFor = generatedFor;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public boolean isGenerated() {
+		return generatedFor != null;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * id + (generatedFor == null ? 0 : generatedFor.hashCode());
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		Fact other = (Fact) obj;
+		if (id != other.id)
+			return false;
+		return generatedFor == null ? other.generatedFor == null : generatedFor.equals(other.generatedFor);
+	}
+
+	@Override
+	public String toString() {
+		return generatedFor == null ? Integer.toString(id) : "<" + id + "," + generatedFor + ">";
+	}
+}
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Maps;
+
+import wpds.impl.Transition;
+import wpds.impl.Weight;
+import wpds.impl.WeightedPAutomaton;
+import wpds.impl.WeightedPushdownSystem;
+import wpds.interfaces.ReachabilityListener;
+
+/**
+ * Throughput of post* and pre* on the synthetic pushdown systems. Post* registers a listener on the
+ * pushdown system, so every invocation of it saturates a fresh automaton with a pushdown system
+ * built for that invocation. Pre* leaves the pushdown system unchanged, which is built once per
+ * trial. The number of transitions of the largest saturated automaton of each iteration is printed
+ * at the end of the iteration. It is not an auxiliary counter, JMH would sum those over the
+ * iterations instead of reporting the maximum.
+ *
+ * The automaton benchmarks insert the transitions of the saturated post* automaton into a fresh
+ * automaton, once without listeners and once with a reachability listener on the initial state
+ * that is maintained by the {@link wpds.interfaces.ForwardDFSVisitor}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xss128m")
+public class SaturationBenchmark {
+
+	@Param({ "CALL_CHAIN", "RECURSION", "FAN_OUT", "POP_HEAVY" })
+	public Shape shape;
+
+	@Param({ "10", "100", "1000" })
+	public int size;
+
+	@Param({ "NO_WEIGHT", "NUM", "MIN" })
+	public Semiring semiring;
+
+	private SyntheticPDS synthetic;
+	private WeightedPushdownSystem<Statement, Fact, Weight> pds;
+	private final Map<Transition<Statement, Fact>, Weight> saturated = Maps.newLinkedHashMap();
+
+	@Setup(Level.Trial)
+	public void setup() {
+		synthetic = new SyntheticPDS(shape, size, semiring);
+		pds = synthetic.getPushdownSystem();
+		WeightedPAutomaton<Statement, Fact, Weight> aut = synthetic.initialAutomaton();
+		new SyntheticPDS(shape, size, semiring).getPushdownSystem().poststar(aut);
+		saturated.clear();
+		for (Transition<Statement, Fact> t : aut.getTransitions()) {
+			saturated.put(t, aut.getWeightFor(t));
+		}
+	}
+
+	@Benchmark
+	public WeightedPAutomaton<Statement, Fact, Weight> poststar(FreshSystem fresh, TransitionCounter counter) {
+		WeightedPAutomaton<Statement, Fact, Weight> aut = fresh.synthetic.initialAutomaton();
+		fresh.synthetic.getPushdownSystem().poststar(aut);
+		counter.record(aut);
+		return aut;
+	}
+
+	@Benchmark
+	public WeightedPAutomaton<Statement, Fact, Weight> prestar(TransitionCounter counter) {
+		WeightedPAutomaton<Statement, Fact, Weight> aut = synthetic.targetAutomaton();
+		pds.prestar(aut);
+		counter.record(aut);
+		return aut;
+	}
+
+	@Benchmark
+	public WeightedPAutomaton<Statement, Fact, Weight> insertTransitions(TransitionCounter counter) {
+		WeightedPAutomaton<Statement, Fact, Weight> aut = synthetic.initialAutomaton();
+		for (Map.Entry<Transition<Statement, Fact>, Weight> e : saturated.entrySet()) {
+			aut.addWeightForTransition(e.getKey(), e.getValue());
+		}
+		counter.record(aut);
+		return aut;
+	}
+
+	@Benchmark
+	public long reachability() {
+		WeightedPAutomaton<Statement, Fact, Weight> aut = synthetic.initialAutomaton();
+		ReachableCount count = new ReachableCount();
+		aut.registerDFSListener(aut.getInitialState(), count);
+		for (Map.Entry<Transition<Statement, Fact>, Weight> e : saturated.entrySet()) {
+			aut.addWeightForTransition(e.getKey(), e.getValue());
+		}
+		return count.reached;
+	}
+
+	/**
+	 * A pushdown system built anew for every invocation.
+	 */
+	@State(Scope.Thread)
+	public static class FreshSystem {
+		SyntheticPDS synthetic;
+
+		@Setup(Level.Invocation)
+		public void setup(SaturationBenchmark benchmark) {
+			synthetic = new SyntheticPDS(benchmark.shape, benchmark.size, benchmark.semiring);
+		}
+	}
+
+	private static class ReachableCount implements ReachabilityListener<Statement, Fact> {
+		long reached;
+
+		@Override
+		public void reachable(Transition<Statement, Fact> t) {
+			reached++;
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class TransitionCounter {
+		private long peakTransitions;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			peakTransitions = 0;
+		}
+
+		@TearDown(Level.Iteration)
+		public void report() {
+			System.out.println("peakTransitions: " + peakTransitions);
+		}
+
+		void record(WeightedPAutomaton<Statement, Fact, Weight> aut) {
+			peakTransitions = Math.max(peakTransitions, aut.getTransitions().size());
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.benchmarks;
+
+import tests.MinSemiring;
+import tests.NumWeight;
+import wpds.impl.Weight;
+import wpds.impl.Weight.NoWeight;
+
+/**
+ * The weight domains the benchmarks are run with: the unweighted case and the two semirings of
+ * the WPDS test suite.
+ */
+public enum Semiring {
+	NO_WEIGHT {
+		@Override
+		public Weight one() {
+			return NoWeight.NO_WEIGHT_ONE;
+		}
+
+		@Override
+		public Weight zero() {
+			return NoWeight.NO_WEIGHT_ZERO;
+		}
+
+		@Override
+		public Weight weight(int i) {
+			return NoWeight.NO_WEIGHT_ONE;
+		}
+	},
+	NUM {
+		@Override
+		public Weight one() {
+			return NumWeight.one();
+		}
+
+		@Override
+		public Weight zero() {
+			return NumWeight.zero();
+		}
+
+		@Override
+		public Weight weight(int i) {
+			return new NumWeight(i);
+		}
+	},
+	MIN {
+		@Override
+		public Weight one() {
+			return MinSemiring.one();
+		}
+
+		@Override
+		public Weight zero() {
+			return MinSemiring.zero();
+		}
+
+		@Override
+		public Weight weight(int i) {
+			return new MinSemiring(i);
+		}
+	};
+
+	public abstract Weight one();
+
+	public abstract Weight zero();
+
+	public abstract Weight weight(int i);
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.benchmarks;
+
+/**
+ * The program shapes the synthetic pushdown systems are generated for. Each method m consists of
+ * the statements m.entry, m.call, m.ret and m.exit, the saturation starts in 0.entry with fact 0.
+ */
+public enum Shape {
+	/**
+	 * A chain of size methods where each method calls the next one.
+	 */
+	CALL_CHAIN {
+		@Override
+		void build(SyntheticPDS pds, int size) {
+			for (int m = 0; m < size; m++) {
+				pds.normal(0, entry(m), 0, call(m));
+				if (m + 1 < size) {
+					pds.push(0, call(m), 0, entry(m + 1), ret(m));
+				} else {
+					pds.normal(0, call(m), 0, ret(m));
+				}
+				pds.normal(0, ret(m), 0, exit(m));
+				pds.pop(0, exit(m), 0);
+			}
+		}
+	},
+	/**
+	 * size methods that call each other in a cycle, every call site can also be skipped. Facts are
+	 * renamed at every call, so each method is entered with two different facts.
+	 */
+	RECURSION {
+		@Override
+		void build(SyntheticPDS pds, int size) {
+			for (int m = 0; m < size; m++) {
+				for (int f = 0; f < 2; f++) {
+					pds.normal(f, entry(m), f, call(m));
+					pds.normal(f, call(m), f, ret(m));
+					pds.push(f, call(m), 1 - f, entry((m + 1) % size), ret(m));
+					pds.normal(f, ret(m), f, exit(m));
+					pds.pop(f, exit(m), 1 - f);
+				}
+			}
+		}
+	},
+	/**
+	 * A single call site that dispatches to size callees which all return to the same return site.
+	 */
+	FAN_OUT {
+		@Override
+		void build(SyntheticPDS pds, int size) {
+			pds.normal(0, entry(0), 0, call(0));
+			for (int m = 1; m <= size; m++) {
+				pds.push(0, call(0), 0, entry(m), ret(0));
+				pds.normal(0, entry(m), 0, exit(m));
+				pds.pop(0, exit(m), 0);
+			}
+			pds.normal(0, ret(0), 0, exit(0));
+			pds.pop(0, exit(0), 0);
+		}
+	},
+	/**
+	 * A call chain of size methods in which FACTS facts flow back from the deepest callee, and every
+	 * return pops each fact into a different one.
+	 */
+	POP_HEAVY {
+		private static final int FACTS = 4;
+
+		@Override
+		void build(SyntheticPDS pds, int size) {
+			for (int m = 0; m < size; m++) {
+				for (int f = 0; f < FACTS; f++) {
+					pds.normal(f, entry(m), f, call(m));
+					if (m + 1 < size) {
+						pds.push(f, call(m), f, entry(m + 1), ret(m));
+					} else {
+						for (int g = 0; g < FACTS; g++)
+							pds.normal(f, call(m), g, ret(m));
+					}
+					pds.normal(f, ret(m), f, exit(m));
+					pds.pop(f, exit(m), (f + 1) % FACTS);
+				}
+			}
+		}
+	};
+
+	abstract void build(SyntheticPDS pds, int size);
+
+	static Statement entry(int method) {
+		return new Statement(method + ".entry");
+	}
+
+	static Statement call(int method) {
+		return new Statement(method + ".call");
+	}
+
+	static Statement ret(int method) {
+		return new Statement(method + ".ret");
+	}
+
+	static Statement exit(int method) {
+		return new Statement(method + ".exit");
+	}
+}
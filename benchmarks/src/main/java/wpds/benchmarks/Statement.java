@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.benchmarks;
+
+import wpds.interfaces.Location;
+
+/**
+ * Stack symbol of the synthetic pushdown systems, a named statement of a method.
+ */
+public class Statement implements Location {
+	private final String name;
+
+	public Statement(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public int hashCode() {
+		return name.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		return name.equals(((Statement) obj).name);
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package wpds.benchmarks;
+
+import wpds.impl.NormalRule;
+import wpds.impl.PopRule;
+import wpds.impl.PushRule;
+import wpds.impl.Transition;
+import wpds.impl.Weight;
+import wpds.impl.WeightedPAutomaton;
+import wpds.impl.WeightedPushdownSystem;
+
+/**
+ * A generated pushdown system of a given {@link Shape} and size over a {@link Semiring}. All rules
+ * carry the weight 1 of the semiring.
+ */
+public class SyntheticPDS {
+	private static final Fact ACCEPTING = new Fact(-1);
+	private static final Statement EPSILON = new Statement("EPS");
+
+	private final WeightedPushdownSystem<Statement, Fact, Weight> pds = new WeightedPushdownSystem<>();
+	private final Semiring semiring;
+
+	public SyntheticPDS(Shape shape, int size, Semiring semiring) {
+		this.semiring = semiring;
+		shape.build(this, size);
+	}
+
+	public WeightedPushdownSystem<Statement, Fact, Weight> getPushdownSystem() {
+		return pds;
+	}
+
+	/**
+	 * The automaton accepting the initial configuration (0, 0.entry), the input of post*.
+	 */
+	public WeightedPAutomaton<Statement, Fact, Weight> initialAutomaton() {
+		return accepting(Shape.entry(0));
+	}
+
+	/**
+	 * The automaton accepting the configuration (0, 0.exit), the input of pre*.
+	 */
+	public WeightedPAutomaton<Statement, Fact, Weight> targetAutomaton() {
+		return accepting(Shape.exit(0));
+	}
+
+	void normal(int f1, Statement l1, int f2, Statement l2) {
+		pds.addRule(new NormalRule<Statement, Fact, Weight>(new Fact(f1), l1, new Fact(f2), l2, semiring.weight(1)));
+	}
+
+	void push(int f1, Statement l1, int f2, Statement l2, Statement callSite) {
+		pds.addRule(new PushRule<Statement, Fact, Weight>(new Fact(f1), l1, new Fact(f2), l2, callSite,
+				semiring.weight(1)));
+	}
+
+	void pop(int f1, Statement l1, int f2) {
+		pds.addRule(new PopRule<Statement, Fact, Weight>(new Fact(f1), l1, new Fact(f2), semiring.weight(1)));
+	}
+
+	private WeightedPAutomaton<Statement, Fact, Weight> accepting(Statement stmt) {
+		WeightedPAutomaton<Statement, Fact, Weight> aut = new WeightedPAutomaton<Statement, Fact, Weight>(new Fact(0)) {
+			@Override
+			public Fact createState(Fact d, Statement loc) {
+				return new Fact(d.getId(), loc);
+			}
+
+			@Override
+			public boolean isGeneratedState(Fact d) {
+				return d.isGenerated();
+			}
+
+			@Override
+			public Statement epsilon() {
+				return EPSILON;
+			}
+
+			@Override
+			public Weight getOne() {
+				return semiring.one();
+			}
+
+			@Override
+			public Weight getZero() {
+				return semiring.zero();
+			}
+		};
+		aut.addFinalState(ACCEPTING);
+		aut.addTransition(new Transition<Statement, Fact>(new Fact(0), stmt, ACCEPTING));
+		return aut;
+	}
+}
@@ -34,6 +34,12 @@ public interface BoomerangOptions {
 	
 	public boolean callSummaries();
 	public boolean fieldSummaries();
+
+	/**
+	 * @return If set to true, the call and field automata keep their transitions in an
+	 *         {@link wpds.impl.OffHeapTransitionStore}, outside of the Java heap.
+	 */
+	public boolean offHeapTransitions();
 	
 	public int analysisTimeoutMS();
 
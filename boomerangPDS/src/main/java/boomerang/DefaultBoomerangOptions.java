@@ -121,6 +121,11 @@ public class DefaultBoomerangOptions implements BoomerangOptions {
 		return false;
 	}
 
+	@Override
+	public boolean offHeapTransitions() {
+		return false;
+	}
+
 	public boolean trackAnySubclassOfThrowable(){
 		return false;
 	}
@@ -19,7 +19,7 @@ import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
 import soot.util.queue.QueueReader;
 
 public class Util {
-	private static int icfgEdges;
+	private static volatile long icfgEdges;
 
 	public static boolean isParameterLocal(Val val, SootMethod m) {
 		if(val.isStatic())
@@ -60,8 +60,18 @@ public class Util {
 	}
 
 	public static long getICFGEdges() {
-		if(icfgEdges > 0)
+		long edges = icfgEdges;
+		if(edges > 0)
+			return edges;
+		synchronized (Util.class) {
+			if(icfgEdges == 0)
+				icfgEdges = countICFGEdges();
 			return icfgEdges;
+		}
+	}
+
+	private static long countICFGEdges() {
+		long edges = 0;
 		ReachableMethods reachableMethods = Scene.v().getReachableMethods();
 		JimpleBasedInterproceduralCFG icfg = new JimpleBasedInterproceduralCFG();
 		QueueReader<MethodOrMethodContext> listener = reachableMethods.listener();
@@ -73,16 +83,16 @@ public class Util {
 			Body activeBody = method.getActiveBody();
 			for(Unit u : activeBody.getUnits()) {
 				List<Unit> succsOf = icfg.getSuccsOf(u);
-				icfgEdges += succsOf.size();
+				edges += succsOf.size();
 				if(icfg.isCallStmt(u)) {
-					icfgEdges += icfg.getCalleesOfCallAt(u).size();
+					edges += icfg.getCalleesOfCallAt(u).size();
 				}
 				if(icfg.isExitStmt(u)) {
-					icfgEdges += icfg.getCallersOf(method).size();
+					edges += icfg.getCallersOf(method).size();
 				}
 			}
 		}
-		return icfgEdges;
+		return edges;
 	}
 	
 	public static long getReallyUsedMemory() {
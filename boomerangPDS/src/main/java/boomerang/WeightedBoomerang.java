@@ -12,9 +12,7 @@
 package boomerang;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -53,6 +51,7 @@ import boomerang.solver.BackwardBoomerangSolver;
 import boomerang.solver.ForwardBoomerangSolver;
 import boomerang.solver.ReachableMethodListener;
 import boomerang.stats.IBoomerangStats;
+import boomerang.summaries.MethodFingerprints;
 import heros.utilities.DefaultValueMap;
 import soot.Local;
 import soot.Scene;
@@ -74,8 +73,10 @@ import sync.pds.solver.WeightFunctions;
 import sync.pds.solver.nodes.GeneratedState;
 import sync.pds.solver.nodes.INode;
 import sync.pds.solver.nodes.Node;
+import sync.pds.solver.nodes.NodeFactory;
 import sync.pds.solver.nodes.SingleNode;
 import wpds.impl.NestedWeightedPAutomatons;
+import wpds.impl.PersistentSummaryStore;
 import wpds.impl.StackListener;
 import wpds.impl.SummaryNestedWeightedPAutomatons;
 import wpds.impl.Transition;
@@ -88,7 +89,7 @@ import wpds.interfaces.WPAUpdateListener;
 
 public abstract class WeightedBoomerang<W extends Weight> {
 	private static final Logger logger = LogManager.getLogger();
-	private Map<Entry<INode<Node<Statement, Val>>, Field>, INode<Node<Statement, Val>>> genField = new HashMap<>();
+	private final NodeFactory<Statement, Val, Field> nodeFactory = new NodeFactory<>();
 	private long lastTick;
 	private IBoomerangStats<W> stats;
 	private List<SolverCreationListener<W>> solverCreationListeners = Lists.newArrayList();
@@ -225,7 +226,9 @@ public abstract class WeightedBoomerang<W extends Weight> {
 
 	private NestedWeightedPAutomatons<Statement, INode<Val>, W> backwardCallSummaries = new SummaryNestedWeightedPAutomatons<>();
 	private NestedWeightedPAutomatons<Field, INode<Node<Statement, Val>>, W> backwardFieldSummaries = new SummaryNestedWeightedPAutomatons<>();
-	private NestedWeightedPAutomatons<Statement, INode<Val>, W> forwardCallSummaries = new SummaryNestedWeightedPAutomatons<>();
+	private SummaryNestedWeightedPAutomatons<Statement, INode<Val>, W> forwardCallSummaries = new SummaryNestedWeightedPAutomatons<>();
+	private PersistentSummaryStore<Statement, INode<Val>, W> callSummaryStore;
+	private final MethodFingerprints fingerprints = new MethodFingerprints();
 	private NestedWeightedPAutomatons<Field, INode<Node<Statement, Val>>, W> forwardFieldSummaries = new SummaryNestedWeightedPAutomatons<>();
 	private DefaultValueMap<FieldWritePOI, FieldWritePOI> fieldWrites = new DefaultValueMap<FieldWritePOI, FieldWritePOI>() {
 		@Override
@@ -259,7 +262,7 @@ public abstract class WeightedBoomerang<W extends Weight> {
 	}
 
 	protected AbstractBoomerangSolver<W> createBackwardSolver(final BackwardQuery backwardQuery) {
-		final BackwardBoomerangSolver<W> solver = new BackwardBoomerangSolver<W>(bwicfg(), backwardQuery, genField,
+		final BackwardBoomerangSolver<W> solver = new BackwardBoomerangSolver<W>(bwicfg(), backwardQuery, nodeFactory,
 				options, createCallSummaries(backwardQuery, backwardCallSummaries),
 				createFieldSummaries(backwardQuery, backwardFieldSummaries)) {
 
@@ -390,7 +393,7 @@ public abstract class WeightedBoomerang<W extends Weight> {
 	}
 
 	protected ForwardBoomerangSolver<W> createForwardSolver(final ForwardQuery sourceQuery) {
-		final ForwardBoomerangSolver<W> solver = new ForwardBoomerangSolver<W>(icfg(), sourceQuery, genField, options,
+		final ForwardBoomerangSolver<W> solver = new ForwardBoomerangSolver<W>(icfg(), sourceQuery, nodeFactory, options,
 				createCallSummaries(sourceQuery, forwardCallSummaries),
 				createFieldSummaries(sourceQuery, forwardFieldSummaries)) {
 
@@ -466,6 +469,9 @@ public abstract class WeightedBoomerang<W extends Weight> {
 			@Override
 			public void putSummaryAutomaton(INode<Val> target, WeightedPAutomaton<Statement, INode<Val>, W> aut) {
 				summaries.putSummaryAutomaton(target, aut);
+				if (summaries == forwardCallSummaries) {
+					restoreCallSummary(target, aut);
+				}
 			}
 
 			@Override
@@ -1270,6 +1276,49 @@ public abstract class WeightedBoomerang<W extends Weight> {
 
 	protected abstract WeightFunctions<Statement, Val, Statement, W> getForwardCallWeights(ForwardQuery sourceQuery);
 
+	/**
+	 * Forward call summaries found in the store are restored into the summary automata when the
+	 * solvers create them. Summaries for which the body of the method or of one of its transitive
+	 * callees changed since they were recorded are dropped.
+	 */
+	public void setCallSummaryStore(PersistentSummaryStore<Statement, INode<Val>, W> store) {
+		this.callSummaryStore = store;
+	}
+
+	/**
+	 * Records the forward call summaries computed so far in the store, keyed by the signature of the
+	 * method the summary was computed for and by the fingerprint of the bodies of the method and its
+	 * transitive callees.
+	 */
+	public void recordCallSummaries(PersistentSummaryStore<Statement, INode<Val>, W> store) {
+		for (Entry<INode<Val>, WeightedPAutomaton<Statement, INode<Val>, W>> e : forwardCallSummaries
+				.getSummaryAutomata().entrySet()) {
+			SootMethod m = summaryMethod(e.getKey());
+			if (m != null) {
+				store.record(fingerprints.key(m), fingerprints.transitiveFingerprint(m, icfg()), e.getKey(),
+						e.getValue());
+			}
+		}
+	}
+
+	private void restoreCallSummary(INode<Val> target, WeightedPAutomaton<Statement, INode<Val>, W> aut) {
+		if (callSummaryStore == null)
+			return;
+		SootMethod m = summaryMethod(target);
+		if (m != null) {
+			callSummaryStore.restore(fingerprints.key(m), fingerprints.transitiveFingerprint(m, icfg()), target, aut);
+		}
+	}
+
+	private SootMethod summaryMethod(INode<Val> target) {
+		if (!(target instanceof GeneratedState))
+			return null;
+		Object location = ((GeneratedState<Val, ?>) target).location();
+		if (!(location instanceof Statement) || ((Statement) location).getMethod() == null)
+			return null;
+		return ((Statement) location).getMethod();
+	}
+
 	public DefaultValueMap<Query, AbstractBoomerangSolver<W>> getSolvers() {
 		return queryToSolvers;
 	}
@@ -13,24 +13,36 @@ package boomerang;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 import boomerang.debugger.Debugger;
 import boomerang.jimple.AllocVal;
+import boomerang.jimple.Field;
 import boomerang.jimple.Statement;
 import boomerang.jimple.Val;
 import boomerang.results.BackwardBoomerangResults;
 import boomerang.seedfactory.SeedFactory;
+import boomerang.solver.AbstractBoomerangSolver;
 import soot.SootMethod;
 import soot.Unit;
 import soot.jimple.AssignStmt;
 import soot.jimple.Stmt;
 import soot.jimple.toolkits.ide.icfg.BiDiInterproceduralCFG;
+import sync.pds.solver.WeightFunctions;
 import sync.pds.solver.nodes.Node;
 import wpds.impl.Weight;
 
 public abstract class WholeProgramBoomerang<W extends Weight> extends WeightedBoomerang<W>{
-	private int reachableMethodCount;
-	private int allocationSites;
 	private SeedFactory<W> seedFactory;
 
 	public WholeProgramBoomerang(BoomerangOptions opts){
@@ -47,6 +59,19 @@ public abstract class WholeProgramBoomerang<W extends Weight> extends WeightedBo
 	}
 	
 	public void wholeProgramAnalysis(){
+		wholeProgramAnalysis(1);
+	}
+
+	/**
+	 * Solves the forward queries of all allocation sites. With more than one thread, the queries are
+	 * partitioned round-robin across worker threads, each solving its part with its own instance
+	 * obtained from {@link #createWorker()}. Workers share the ICFG and the seed factory read-only.
+	 * Queries a worker depends on are solved again within that worker. Once all workers are done,
+	 * their solvers are merged into {@link #getSolvers()} and registered with the stats of this
+	 * instance, the solver of the worker that owns a seed takes precedence. The printed statistics
+	 * are computed from the merged solvers.
+	 */
+	public void wholeProgramAnalysis(int threads){
 		long before = System.currentTimeMillis();
 		seedFactory = new SeedFactory<W>() {
 
@@ -71,19 +96,133 @@ public abstract class WholeProgramBoomerang<W extends Weight> extends WeightedBo
 				return true;
 			}
 		};
-		for(Query s :seedFactory.computeSeeds()){
-			solve((ForwardQuery)s);
+		Collection<Query> seeds = seedFactory.computeSeeds();
+		if (threads > 1 && seeds.size() > 1) {
+			solveParallel(seeds, threads);
+		} else {
+			for(Query s : seeds){
+				solve((ForwardQuery)s);
+			}
 		}
 		
 		long after = System.currentTimeMillis();
+		Set<SootMethod> analyzedMethods = Sets.newHashSet();
+		for (AbstractBoomerangSolver<W> solver : getSolvers().values()) {
+			for (Node<Statement, Val> node : solver.getReachedStates()) {
+				analyzedMethods.add(node.stmt().getMethod());
+			}
+		}
 		System.out.println("Analysis Time (in ms):\t" + (after-before));
-		System.out.println("Analyzed methods:\t" + reachableMethodCount);
+		System.out.println("Analyzed methods:\t" + analyzedMethods.size());
 		System.out.println("Total solvers:\t" + this.getSolvers().size());
-		System.out.println("Allocation Sites:\t" + allocationSites);
+		System.out.println("Allocation Sites:\t" + seeds.size());
 		System.out.println(options.statsFactory());
 	}
 	
 
+	/**
+	 * Creates a fresh, unused instance to be used by a worker thread of
+	 * {@link #wholeProgramAnalysis(int)}. The worker shares the options and the ICFG of this instance
+	 * and obtains its weight functions from it, these must therefore be safe to use from several
+	 * threads. The options must hand out a new stats object per instance. Workers do not report to
+	 * the debugger of this instance.
+	 */
+	protected WholeProgramBoomerang<W> createWorker() {
+		return new WholeProgramBoomerang<W>(options) {
+
+			@Override
+			public BiDiInterproceduralCFG<Unit, SootMethod> icfg() {
+				return WholeProgramBoomerang.this.icfg();
+			}
+
+			@Override
+			public Debugger<W> createDebugger() {
+				return new Debugger<W>();
+			}
+
+			@Override
+			protected WeightFunctions<Statement, Val, Field, W> getForwardFieldWeights() {
+				return WholeProgramBoomerang.this.getForwardFieldWeights();
+			}
+
+			@Override
+			protected WeightFunctions<Statement, Val, Field, W> getBackwardFieldWeights() {
+				return WholeProgramBoomerang.this.getBackwardFieldWeights();
+			}
+
+			@Override
+			protected WeightFunctions<Statement, Val, Statement, W> getBackwardCallWeights() {
+				return WholeProgramBoomerang.this.getBackwardCallWeights();
+			}
+
+			@Override
+			protected WeightFunctions<Statement, Val, Statement, W> getForwardCallWeights(ForwardQuery sourceQuery) {
+				return WholeProgramBoomerang.this.getForwardCallWeights(sourceQuery);
+			}
+		};
+	}
+
+	private void solveParallel(Collection<Query> seeds, int threads) {
+		threads = Math.min(threads, seeds.size());
+		List<List<ForwardQuery>> partitions = Lists.newArrayList();
+		for (int i = 0; i < threads; i++) {
+			partitions.add(Lists.<ForwardQuery>newArrayList());
+		}
+		int next = 0;
+		for (Query s : seeds) {
+			// Computes the method scope of each seed up front, afterwards the seed factory is only read.
+			seedFactory.getMethodScope(s);
+			partitions.get(next++ % threads).add((ForwardQuery) s);
+		}
+		List<WholeProgramBoomerang<W>> workers = Lists.newArrayList();
+		List<Callable<Void>> tasks = Lists.newArrayList();
+		for (final List<ForwardQuery> partition : partitions) {
+			final WholeProgramBoomerang<W> worker = createWorker();
+			worker.seedFactory = seedFactory;
+			workers.add(worker);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (ForwardQuery q : partition) {
+						worker.solve(q);
+					}
+					return null;
+				}
+			});
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+		try {
+			for (Future<Void> f : executor.invokeAll(tasks)) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted during whole program analysis", e);
+		} catch (ExecutionException e) {
+			Throwables.throwIfUnchecked(e.getCause());
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		for (int i = 0; i < workers.size(); i++) {
+			merge(workers.get(i), partitions.get(i));
+		}
+		for (WholeProgramBoomerang<W> worker : workers) {
+			merge(worker, worker.getSolvers().keySet());
+		}
+	}
+
+	private void merge(WholeProgramBoomerang<W> worker, Collection<? extends Query> queries) {
+		for (Query q : queries) {
+			if (getSolvers().containsKey(q))
+				continue;
+			AbstractBoomerangSolver<W> solver = worker.getSolvers().get(q);
+			if (solver == null)
+				continue;
+			getSolvers().put(q, solver);
+			getStats().registerSolver(q, solver);
+		}
+	}
 	
 	@Override
 	protected void backwardSolve(BackwardQuery query) {
@@ -11,9 +11,11 @@
  *******************************************************************************/
 package boomerang.debugger;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -28,6 +30,8 @@ import org.apache.logging.log4j.Logger;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.HashMultimap;
@@ -67,6 +71,7 @@ public class IDEVizDebugger<W extends Weight> extends Debugger<W>{
 	private Table<Query, SootMethod, Set<Rule<Statement, INode<Val>, W>>> rules = HashBasedTable.create();
 	private Map<Object, Integer> objectToInteger = new HashMap<>();
 	private int charSize;
+	private Predicate<? super SootMethod> methodFilter = Predicates.alwaysTrue();
 	
 	
 	
@@ -95,52 +100,76 @@ public class IDEVizDebugger<W extends Weight> extends Debugger<W>{
 		return rules.get(q, method);
 	}
 
+	/**
+	 * Restricts the visualization to the methods accepted by the filter.
+	 */
+	public void setMethodFilter(Predicate<? super SootMethod> methodFilter) {
+		this.methodFilter = methodFilter;
+	}
+
+	/**
+	 * Writes the visualization method by method. Only the JSON of the current method is held in
+	 * memory, it is written to the file before the next method is processed.
+	 */
 	@Override
 	public void done(Map<Query, AbstractBoomerangSolver<W>> solvers){
 		logger.warn("Starting to compute visualization, this requires a large amount of memory, please ensure the VM has enough memory.");
 		Stopwatch watch = Stopwatch.createStarted();
-		JSONArray eventualData = new JSONArray();
 		if(!ONLY_CFG) {
 			for (Query q : solvers.keySet()) {
 				callRules(q, solvers.get(q).getCallPDS().getAllRules());
 			}
 		}
-		for(Entry<Query, AbstractBoomerangSolver<W>> e : solvers.entrySet()){
-			logger.debug("Computing results for {}",e.getKey());
-			Query query = e.getKey();
-			JSONQuery queryJSON = new JSONQuery(query);
-			JSONArray data = new JSONArray();
-			for(SootMethod m : e.getValue().getReachableMethods()) {
-				Table<Statement, RegExAccessPath, W> results = e.getValue().getResults(m);
-				if(results.isEmpty())
-					continue;
-				int labelYOffset = ONLY_CFG ? 0 : computeLabelYOffset(results.columnKeySet());
-				JSONMethod jsonMethod = new JSONMethod(m);
-				logger.debug("Creating control-flow graph for {}",m);
-				IDEVizDebugger<W>.JSONControlFlowGraph cfg = createControlFlowGraph(m, labelYOffset);
-				
-				jsonMethod.put("cfg", cfg);
-				if(!ONLY_CFG) {
-					Set<Rule<Statement, INode<Val>, W>> rulesInMethod = getOrCreateRuleSet(query,m);
-					logger.debug("Creating data-flow graph for {}",m);
-					DataFlowGraph dfg = createDataFlowGraph(query, results,rulesInMethod,cfg,m,labelYOffset);
-					jsonMethod.put("dfg", dfg);
+		try (Writer file = new BufferedWriter(new FileWriter(ideVizFile))) {
+			logger.info("Writing visualization to file {}", ideVizFile.getAbsolutePath());
+			file.write('[');
+			boolean firstQuery = true;
+			for(Entry<Query, AbstractBoomerangSolver<W>> e : solvers.entrySet()){
+				logger.debug("Computing results for {}",e.getKey());
+				Query query = e.getKey();
+				if (!firstQuery)
+					file.write(',');
+				firstQuery = false;
+				file.write('{');
+				for (Object entry : new JSONQuery(query).entrySet()) {
+					Entry<?, ?> keyValue = (Entry<?, ?>) entry;
+					file.write(JSONObject.toString(keyValue.getKey().toString(), keyValue.getValue()));
+					file.write(',');
+				}
+				file.write("\"methods\":[");
+				boolean firstMethod = true;
+				for(SootMethod m : e.getValue().getReachableMethods()) {
+					if (!methodFilter.apply(m))
+						continue;
+					Table<Statement, RegExAccessPath, W> results = e.getValue().getResults(m);
+					if(results.isEmpty())
+						continue;
+					int labelYOffset = ONLY_CFG ? 0 : computeLabelYOffset(results.columnKeySet());
+					JSONMethod jsonMethod = new JSONMethod(m);
+					logger.debug("Creating control-flow graph for {}",m);
+					IDEVizDebugger<W>.JSONControlFlowGraph cfg = createControlFlowGraph(m, labelYOffset);
+					
+					jsonMethod.put("cfg", cfg);
+					if(!ONLY_CFG) {
+						Set<Rule<Statement, INode<Val>, W>> rulesInMethod = getOrCreateRuleSet(query,m);
+						logger.debug("Creating data-flow graph for {}",m);
+						DataFlowGraph dfg = createDataFlowGraph(query, results,rulesInMethod,cfg,m,labelYOffset);
+						jsonMethod.put("dfg", dfg);
+					}
+					if (!firstMethod)
+						file.write(',');
+					firstMethod = false;
+					jsonMethod.writeJSONString(file);
 				}
-				data.add(jsonMethod);
+				file.write("]}");
 			}
-			queryJSON.put("methods",data);
-			eventualData.add(queryJSON);
-		};
-		logger.info("Computing visualization took: {}", watch.elapsed());
-		try (FileWriter file = new FileWriter(ideVizFile)) {
-			logger.info("Writing visualization to file {}", ideVizFile.getAbsolutePath());
-			file.write(eventualData.toJSONString());
+			file.write(']');
 			logger.info("Visualization available in file {}", ideVizFile.getAbsolutePath());
 		} catch (IOException e) {
 			e.printStackTrace();
 			logger.info("Exception in writing to visualization file {}", ideVizFile.getAbsolutePath());
 		}
-		
+		logger.info("Computing visualization took: {}", watch.elapsed());
 	}
 	
 
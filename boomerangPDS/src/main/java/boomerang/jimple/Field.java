@@ -11,9 +11,8 @@
  *******************************************************************************/
 package boomerang.jimple;
 
-import java.util.Map;
-
-import com.google.common.collect.Maps;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import soot.SootField;
 import wpds.interfaces.Empty;
@@ -22,10 +21,10 @@ import wpds.wildcard.ExclusionWildcard;
 import wpds.wildcard.Wildcard;
 
 public class Field implements Location {
-	private static Field wildcard;
-	private static Field epsilon;
-	private static Field empty;
-	private static Field array;
+	private static final Field wildcard = new WildcardField();
+	private static final Field epsilon = new EmptyField("eps_f");
+	private static final Field empty = new EmptyField("{}");
+	private static final Field array = new Field("array");
 	private final SootField delegate;
 	private final String rep;
 
@@ -92,16 +91,10 @@ public class Field implements Location {
 	}
 
 	public static Field wildcard() {
-		if (wildcard == null){
-			wildcard = new WildcardField();
-		}
 		return wildcard;
 	}
 
 	public static Field empty() {
-		if (empty == null) {
-			empty = new EmptyField("{}");
-		}
 		return empty;
 	}
 	
@@ -112,16 +105,10 @@ public class Field implements Location {
 	}
 
 	public static Field epsilon() {
-		if (epsilon == null) {
-			epsilon = new EmptyField("eps_f");
-		}
 		return epsilon;
 	}
 	
 	public static Field array() {
-		if (array == null) {
-			array = new Field("array");
-		}
 		return array;
 	}
 	private static class WildcardField extends Field implements Wildcard {
@@ -179,13 +166,17 @@ public class Field implements Location {
 		
 		
 	}
-	private static Map<Field,ExclusionWildcardField> exclusionWildcards = Maps.newHashMap();
+	private static final ConcurrentMap<Field,ExclusionWildcardField> exclusionWildcards = new ConcurrentHashMap<>();
 	
 	public static Field exclusionWildcard(Field exclusion) {
-		if(!exclusionWildcards.containsKey(exclusion)){
-			exclusionWildcards.put(exclusion, new ExclusionWildcardField(exclusion));
+		ExclusionWildcardField wildcard = exclusionWildcards.get(exclusion);
+		if(wildcard == null){
+			wildcard = new ExclusionWildcardField(exclusion);
+			ExclusionWildcardField existing = exclusionWildcards.putIfAbsent(exclusion, wildcard);
+			if(existing != null)
+				wildcard = existing;
 		}
-		return exclusionWildcards.get(exclusion);
+		return wildcard;
 	}
 
 	public SootField getSootField() {
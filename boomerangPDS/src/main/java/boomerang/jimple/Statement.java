@@ -28,7 +28,7 @@ import wpds.interfaces.Empty;
 import wpds.interfaces.Location;
 
 public class Statement implements Location {
-	private static Statement epsilon;
+	private static final Statement epsilon = new EpsStatement();
 	private final Stmt delegate;
 	private final SootMethod method;
 	private final String rep;
@@ -87,9 +87,6 @@ public class Statement implements Location {
 	}
 
 	public static Statement epsilon() {
-		if (epsilon == null) {
-			epsilon = new EpsStatement();
-		}
 		return epsilon;
 	}
 	
@@ -143,21 +140,25 @@ public class Statement implements Location {
 	}
 
 	private static boolean DEBUG = true;
-	private static Map<SootMethod, Integer> methodToInteger = new HashMap<>();
-	private static Map<Stmt, Integer> statementToInteger = new HashMap<>();
+	private static final Map<SootMethod, Integer> methodToInteger = new HashMap<>();
+	private static final Map<Stmt, Integer> statementToInteger = new HashMap<>();
 
 	public int stmtToInt(Stmt s) {
-		if (!statementToInteger.containsKey(s)) {
-			statementToInteger.put(s, statementToInteger.size());
+		synchronized (statementToInteger) {
+			if (!statementToInteger.containsKey(s)) {
+				statementToInteger.put(s, statementToInteger.size());
+			}
+			return statementToInteger.get(s);
 		}
-		return statementToInteger.get(s);
 	}
 
 	public int methodToInt(SootMethod method) {
-		if (!methodToInteger.containsKey(method)) {
-			methodToInteger.put(method, methodToInteger.size());
+		synchronized (methodToInteger) {
+			if (!methodToInteger.containsKey(method)) {
+				methodToInteger.put(method, methodToInteger.size());
+			}
+			return methodToInteger.get(method);
 		}
-		return methodToInteger.get(method);
 	}
 
 	public SootMethod getMethod() {
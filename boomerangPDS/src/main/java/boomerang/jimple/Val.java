@@ -23,7 +23,7 @@ public class Val {
 	private final String rep;
 	protected final Statement unbalancedStmt; 
 
-	private static Val zeroInstance;
+	private static final Val zeroInstance = new Val("ZERO");
 	
 	public Val(Value v, SootMethod m){
 		this(v, m, null);
@@ -110,8 +110,6 @@ public class Val {
 	}
 
 	public static Val zero() {
-		if(zeroInstance == null)
-			zeroInstance = new Val("ZERO");
 		return zeroInstance;
 	}
 
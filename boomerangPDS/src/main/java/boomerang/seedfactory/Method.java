@@ -19,7 +19,7 @@ import wpds.interfaces.Location;
  */
 public class Method implements Location {
 
-    private static Method epsilon;
+    private static final Method epsilon = new Method();
     private final SootMethod delegate;
 
     public Method(SootMethod m){
@@ -31,8 +31,6 @@ public class Method implements Location {
     }
 
     public static Method epsilon(){
-        if(epsilon == null)
-            epsilon = new Method();
         return epsilon;
     }
     @Override
@@ -18,19 +18,15 @@ import wpds.interfaces.State;
  */
 public class Reachable implements State {
 
-    private static Reachable instance;
-    private static Reachable entry;
+    private static final Reachable instance = new Reachable();
+    private static final Reachable entry = new Reachable();
     private Reachable(){}
 
     public static Reachable v(){
-        if(instance == null)
-            instance = new Reachable();
         return instance;
     }
 
     public static Reachable entry(){
-        if(entry == null)
-        	entry = new Reachable();
         return entry;
     }
     @Override
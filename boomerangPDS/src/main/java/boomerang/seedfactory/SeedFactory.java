@@ -17,6 +17,7 @@ import java.util.List;
 import java.util.Set;
 
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 
@@ -31,6 +32,7 @@ import sync.pds.solver.nodes.GeneratedState;
 import sync.pds.solver.nodes.INode;
 import sync.pds.solver.nodes.SingleNode;
 import wpds.impl.PushRule;
+import wpds.impl.Rule;
 import wpds.impl.Transition;
 import wpds.impl.Weight;
 import wpds.impl.Weight.NoWeight;
@@ -80,9 +82,11 @@ public abstract class SeedFactory<W extends Weight> {
 
 	public Collection<Query> computeSeeds() {
 		List<SootMethod> entryPoints = Scene.v().getEntryPoints();
+		List<Transition<Method, INode<Reachable>>> entryTransitions = Lists.newArrayList();
 		for (SootMethod m : entryPoints) {
-			automaton.addTransition(new Transition<>(wrap(Reachable.v()), new Method(m), automaton.getInitialState()));
+			entryTransitions.add(new Transition<>(wrap(Reachable.v()), new Method(m), automaton.getInitialState()));
 		}
+		automaton.addTransitions(entryTransitions);
 		pds.poststar(automaton);
 		automaton.registerListener(new WPAUpdateListener<Method, INode<Reachable>, Weight.NoWeight>() {
 			@Override
@@ -105,13 +109,15 @@ public abstract class SeedFactory<W extends Weight> {
 	}
 
 	private void addStaticInitializerFor(SootClass declaringClass) {
+		List<Rule<Method, INode<Reachable>, Weight.NoWeight>> rules = Lists.newArrayList();
 		for (SootMethod m : declaringClass.getMethods()) {
 			if (m.isStaticInitializer()) {
 				for (SootMethod ep : Scene.v().getEntryPoints()) {
-					addPushRule(new Method(ep), new Method(m));
+					rules.add(pushRule(new Method(ep), new Method(m)));
 				}
 			}
 		}
+		pds.addRules(rules);
 	}
 
 	protected boolean analyseClassInitializers() {
@@ -137,6 +143,7 @@ public abstract class SeedFactory<W extends Weight> {
 			return;
 		}
 		Set<Query> seeds = Sets.newHashSet();
+		List<Rule<Method, INode<Reachable>, Weight.NoWeight>> rules = Lists.newArrayList();
 		for (Unit u : m.getActiveBody().getUnits()) {
 			if(!icfg().isReachable(u))
 				continue;
@@ -147,16 +154,16 @@ public abstract class SeedFactory<W extends Weight> {
 				for (SootMethod callee : icfg().getCalleesOfCallAt(u)) {
 					if (!callee.hasActiveBody())
 						continue;
-					addPushRule(new Method(m), new Method(callee));
+					rules.add(pushRule(new Method(m), new Method(callee)));
 				}
 			}
 		}
 		seedsPerMethod.putAll(m, seeds);
+		pds.addRules(rules);
 	}
 
-	private void addPushRule(Method caller, Method callee) {
-		pds.addRule(
-				new PushRule<>(wrap(Reachable.v()), caller, wrap(Reachable.v()), callee, caller, Weight.NO_WEIGHT_ONE));
+	private PushRule<Method, INode<Reachable>, Weight.NoWeight> pushRule(Method caller, Method callee) {
+		return new PushRule<>(wrap(Reachable.v()), caller, wrap(Reachable.v()), callee, caller, Weight.NO_WEIGHT_ONE);
 	}
 
 	private INode<Reachable> wrap(Reachable r) {
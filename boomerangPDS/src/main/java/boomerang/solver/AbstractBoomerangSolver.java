@@ -11,7 +11,6 @@
  *******************************************************************************/
 package boomerang.solver;
 
-import java.util.AbstractMap;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -29,6 +28,7 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Multiset;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Table;
 
@@ -60,7 +60,10 @@ import sync.pds.solver.SyncPDSSolver;
 import sync.pds.solver.nodes.GeneratedState;
 import sync.pds.solver.nodes.INode;
 import sync.pds.solver.nodes.Node;
+import sync.pds.solver.nodes.NodeFactory;
 import sync.pds.solver.nodes.SingleNode;
+import wpds.impl.ListenerList;
+import wpds.impl.ListenerRegistry;
 import wpds.impl.NestedWeightedPAutomatons;
 import wpds.impl.NormalRule;
 import wpds.impl.PopRule;
@@ -78,28 +81,25 @@ public abstract class AbstractBoomerangSolver<W extends Weight> extends SyncPDSS
 	protected final BiDiInterproceduralCFG<Unit, SootMethod> icfg;
 	protected final Query query;
 	private boolean INTERPROCEDURAL = true;
-	protected final Map<Entry<INode<Node<Statement, Val>>, Field>, INode<Node<Statement, Val>>> generatedFieldState;
 	private Multimap<SootMethod, Transition<Field, INode<Node<Statement, Val>>>> perMethodFieldTransitions = HashMultimap
 			.create();
-	private Multimap<SootMethod, MethodBasedFieldTransitionListener<W>> perMethodFieldTransitionsListener = HashMultimap
-			.create();
+	private final ListenerRegistry<SootMethod, MethodBasedFieldTransitionListener<W>> perMethodFieldTransitionsListener = new ListenerRegistry<>();
 	private Multimap<Statement, Transition<Field, INode<Node<Statement, Val>>>> perStatementFieldTransitions = HashMultimap
 			.create();
-	private Multimap<Statement, StatementBasedFieldTransitionListener<W>> perStatementFieldTransitionsListener = HashMultimap
-			.create();
+	private final ListenerRegistry<Statement, StatementBasedFieldTransitionListener<W>> perStatementFieldTransitionsListener = new ListenerRegistry<>();
 	private HashBasedTable<Statement, Transition<Statement, INode<Val>>,W> perStatementCallTransitions = HashBasedTable.create();
-	private Multimap<Statement, StatementBasedCallTransitionListener<W>> perStatementCallTransitionsListener = HashMultimap
-			.create();
+	private final ListenerRegistry<Statement, StatementBasedCallTransitionListener<W>> perStatementCallTransitionsListener = new ListenerRegistry<>();
 	private Set<ReachableMethodListener<W>> reachableMethodListeners = Sets.newHashSet();
 	private Multimap<SootMethod, Runnable> queuedReachableMethod = HashMultimap.create();
 	private Collection<SootMethod> reachableMethods = Sets.newHashSet();
 	protected final BoomerangOptions options;
 	public AbstractBoomerangSolver(BiDiInterproceduralCFG<Unit, SootMethod> icfg,
-			Query query, Map<Entry<INode<Node<Statement, Val>>, Field>, INode<Node<Statement, Val>>> genField,
+			Query query, NodeFactory<Statement, Val, Field> nodeFactory,
 			BoomerangOptions options, NestedWeightedPAutomatons<Statement, INode<Val>, W> callSummaries,
 			 NestedWeightedPAutomatons<Field, INode<Node<Statement, Val>>, W> fieldSummaries) {
-		super(new SingleNode<Val>(query.asNode().fact()), new SingleNode<Node<Statement, Val>>(query.asNode()),
-				options.callSummaries(), callSummaries, options.fieldSummaries(), fieldSummaries);
+		super(nodeFactory, new SingleNode<Val>(query.asNode().fact()), new SingleNode<Node<Statement, Val>>(query.asNode()),
+				options.callSummaries(), callSummaries, options.fieldSummaries(), fieldSummaries,
+				options.offHeapTransitions());
 		this.options = options;
 		this.icfg = icfg;
 		this.query = query;
@@ -120,8 +120,6 @@ public abstract class AbstractBoomerangSolver<W extends Weight> extends SyncPDSS
 				addCallTransitionToStatement(t.getLabel(),t, w);
 			}
 		});
-		// TODO recap, I assume we can implement this more easily.
-		this.generatedFieldState = genField;
 		addReachable(query.asNode().stmt().getMethod());
 	}
 
@@ -181,9 +179,12 @@ public abstract class AbstractBoomerangSolver<W extends Weight> extends SyncPDSS
 
 	private void addTransitionToMethod(SootMethod method, Transition<Field, INode<Node<Statement, Val>>> t) {
 		if (perMethodFieldTransitions.put(method, t)) {
-			for (MethodBasedFieldTransitionListener<W> l : Lists
-					.newArrayList(perMethodFieldTransitionsListener.get(method))) {
-				l.onAddedTransition(t);
+			ListenerList<MethodBasedFieldTransitionListener<W>> ls = perMethodFieldTransitionsListener.get(method);
+			if (ls != null) {
+				Object[] elements = ls.elements();
+				for (int i = 0, n = ls.size(); i < n; i++) {
+					((MethodBasedFieldTransitionListener<W>) elements[i]).onAddedTransition(t);
+				}
 			}
 		}
 	}
@@ -199,9 +200,12 @@ public abstract class AbstractBoomerangSolver<W extends Weight> extends SyncPDSS
 
 	private void addTransitionToStatement(Statement s, Transition<Field, INode<Node<Statement, Val>>> t) {
 		if (perStatementFieldTransitions.put(s, t)) {
-			for (StatementBasedFieldTransitionListener<W> l : Lists
-					.newArrayList(perStatementFieldTransitionsListener.get(s))) {
-				l.onAddedTransition(t);
+			ListenerList<StatementBasedFieldTransitionListener<W>> ls = perStatementFieldTransitionsListener.get(s);
+			if (ls != null) {
+				Object[] elements = ls.elements();
+				for (int i = 0, n = ls.size(); i < n; i++) {
+					((StatementBasedFieldTransitionListener<W>) elements[i]).onAddedTransition(t);
+				}
 			}
 		}
 	}
@@ -221,17 +225,21 @@ public abstract class AbstractBoomerangSolver<W extends Weight> extends SyncPDSS
 			W combineWith = (W) put.combineWith(w);
 			if(!combineWith.equals(put)) {
 				perStatementCallTransitions.put(s, t,combineWith);
-				for (StatementBasedCallTransitionListener<W> l : Lists
-						.newArrayList(perStatementCallTransitionsListener.get(s))) {
-					l.onAddedTransition(t,w);
-				}
+				notifyStatementCallTransitionListeners(s, t, w);
 			}
 		} else {
 			perStatementCallTransitions.put(s, t,w);
-			for (StatementBasedCallTransitionListener<W> l : Lists
-					.newArrayList(perStatementCallTransitionsListener.get(s))) {
-				l.onAddedTransition(t,w);
-			}
+			notifyStatementCallTransitionListeners(s, t, w);
+		}
+	}
+
+	private void notifyStatementCallTransitionListeners(Statement s, Transition<Statement, INode<Val>> t, W w) {
+		ListenerList<StatementBasedCallTransitionListener<W>> ls = perStatementCallTransitionsListener.get(s);
+		if (ls == null)
+			return;
+		Object[] elements = ls.elements();
+		for (int i = 0, n = ls.size(); i < n; i++) {
+			((StatementBasedCallTransitionListener<W>) elements[i]).onAddedTransition(t, w);
 		}
 	}
 
@@ -244,13 +252,6 @@ public abstract class AbstractBoomerangSolver<W extends Weight> extends SyncPDSS
 			}
 		}
 	}
-	public INode<Node<Statement, Val>> generateFieldState(final INode<Node<Statement, Val>> d, final Field loc) {
-		Entry<INode<Node<Statement, Val>>, Field> e = new AbstractMap.SimpleEntry<>(d, loc);
-		if (!generatedFieldState.containsKey(e)) {
-			generatedFieldState.put(e, new GeneratedState<Node<Statement, Val>, Field>(d, loc));
-		}
-		return generatedFieldState.get(e);
-	}
 
 	@Override
 	public Collection<? extends State> computeSuccessor(Node<Statement, Val> node) {
@@ -652,74 +653,128 @@ public abstract class AbstractBoomerangSolver<W extends Weight> extends SyncPDSS
 	}
 	public Map<RegExAccessPath, W> getResultsAt(final Statement stmt){
 		final Map<RegExAccessPath, W> results = Maps.newHashMap();
-		fieldAutomaton.registerListener(new WPAUpdateListener<Field, INode<Node<Statement,Val>>, W>() {
+		new RegExCollector() {
 
 			@Override
-			public void onWeightAdded(Transition<Field, INode<Node<Statement, Val>>> t, W w,
-					WeightedPAutomaton<Field, INode<Node<Statement, Val>>, W> aut) {
-				if(t.getStart() instanceof GeneratedState) {
-					return;
-				}
-				if(t.getStart().fact().stmt().equals(stmt)) {
-					IRegEx<Field> regEx = fieldAutomaton.toRegEx(t.getStart(), fieldAutomaton.getInitialState());
-					results.put(new RegExAccessPath(t.getStart().fact().fact(), regEx),w);
-				}
+			boolean accepts(INode<Node<Statement, Val>> start) {
+				return start.fact().stmt().equals(stmt);
 			}
-		});
+
+			@Override
+			void onRegEx(Transition<Field, INode<Node<Statement, Val>>> t, W w, IRegEx<Field> regEx) {
+				results.put(new RegExAccessPath(t.getStart().fact().fact(), regEx),w);
+			}
+		}.register();
 		return results;
 	}
 	
-	public Table<Statement, RegExAccessPath, W> getResults(SootMethod m){
+	public Table<Statement, RegExAccessPath, W> getResults(final SootMethod m){
 		final Table<Statement, RegExAccessPath, W> results = HashBasedTable.create();
 		logger.debug("Start extracting results from {}", this);
-		fieldAutomaton.registerListener(new WPAUpdateListener<Field, INode<Node<Statement,Val>>, W>() {
+		new RegExCollector() {
 
 			@Override
-			public void onWeightAdded(Transition<Field, INode<Node<Statement, Val>>> t, W w,
-					WeightedPAutomaton<Field, INode<Node<Statement, Val>>, W> aut) {
-				if(t.getStart() instanceof GeneratedState) {
-					return;
-				}
-				if(t.getStart().fact().stmt().getMethod().equals(m)) {
-					IRegEx<Field> regEx = fieldAutomaton.toRegEx(t.getStart(), fieldAutomaton.getInitialState());
-					AbstractBoomerangSolver.this.callAutomaton.registerListener(new WPAUpdateListener<Statement, INode<Val>, W>() {
-
-						@Override
-						public void onWeightAdded(Transition<Statement, INode<Val>> callT, W w,
-								WeightedPAutomaton<Statement, INode<Val>, W> aut) {
-							if(callT.getStart().fact().equals(t.getStart().fact().fact()) && callT.getLabel().equals(t.getStart().fact().stmt())) {
-								results.put(t.getStart().fact().stmt(), new RegExAccessPath(t.getStart().fact().fact(),regEx),w);
-							}
+			boolean accepts(INode<Node<Statement, Val>> start) {
+				return start.fact().stmt().getMethod().equals(m);
+			}
+
+			@Override
+			void onRegEx(final Transition<Field, INode<Node<Statement, Val>>> t, W w, final IRegEx<Field> regEx) {
+				AbstractBoomerangSolver.this.callAutomaton.registerListener(new WPAUpdateListener<Statement, INode<Val>, W>() {
+
+					@Override
+					public void onWeightAdded(Transition<Statement, INode<Val>> callT, W w,
+							WeightedPAutomaton<Statement, INode<Val>, W> aut) {
+						if(callT.getStart().fact().equals(t.getStart().fact().fact()) && callT.getLabel().equals(t.getStart().fact().stmt())) {
+							results.put(t.getStart().fact().stmt(), new RegExAccessPath(t.getStart().fact().fact(),regEx),w);
 						}
-					});
-				}
+					}
+				});
 			}
-		});
+		}.register();
 		logger.debug("End extracted results from {}", this);
 		return results;
 	}
 	
 	public void debugFieldAutomaton(final Statement stmt) {
-		fieldAutomaton.registerListener(new WPAUpdateListener<Field, INode<Node<Statement,Val>>, W>() {
+		new RegExCollector() {
 
 			@Override
-			public void onWeightAdded(Transition<Field, INode<Node<Statement, Val>>> t, W w,
-					WeightedPAutomaton<Field, INode<Node<Statement, Val>>, W> aut) {
-				if(t.getStart() instanceof GeneratedState) {
-					return;
-				}
-				if(t.getStart().fact().stmt().equals(stmt)) {
-					IRegEx<Field> regEx = fieldAutomaton.toRegEx(t.getStart(), fieldAutomaton.getInitialState());
-					logger.debug(t.getStart().fact().fact() +" " + regEx);
-				}
+			boolean accepts(INode<Node<Statement, Val>> start) {
+				return start.fact().stmt().equals(stmt);
 			}
-		});
+
+			@Override
+			void onRegEx(Transition<Field, INode<Node<Statement, Val>>> t, W w, IRegEx<Field> regEx) {
+				logger.debug(t.getStart().fact().fact() +" " + regEx);
+			}
+		}.register();
+	}
+
+	/**
+	 * Computes the field access expression from the start state of each accepted transition of the
+	 * field automaton to its initial state. The transitions present when the collector is registered
+	 * are collected first and their expressions computed in one batch, see
+	 * {@link WeightedPAutomaton#toRegEx(Collection, Object)}. Transitions added later are handled one
+	 * by one.
+	 */
+	private abstract class RegExCollector implements WPAUpdateListener<Field, INode<Node<Statement, Val>>, W> {
+		private List<Transition<Field, INode<Node<Statement, Val>>>> collected = Lists.newArrayList();
+		private final List<W> collectedWeights = Lists.newArrayList();
+
+		@Override
+		public void onWeightAdded(Transition<Field, INode<Node<Statement, Val>>> t, W w,
+				WeightedPAutomaton<Field, INode<Node<Statement, Val>>, W> aut) {
+			if(t.getStart() instanceof GeneratedState || !accepts(t.getStart())) {
+				return;
+			}
+			if (collected != null) {
+				collected.add(t);
+				collectedWeights.add(w);
+			} else {
+				onRegEx(t, w, fieldAutomaton.toRegEx(t.getStart(), fieldAutomaton.getInitialState()));
+			}
+		}
+
+		void register() {
+			fieldAutomaton.registerListener(this);
+			List<Transition<Field, INode<Node<Statement, Val>>>> batch = collected;
+			collected = null;
+			if (batch.isEmpty())
+				return;
+			Set<INode<Node<Statement, Val>>> starts = Sets.newHashSet();
+			for (Transition<Field, INode<Node<Statement, Val>>> t : batch) {
+				starts.add(t.getStart());
+			}
+			Map<INode<Node<Statement, Val>>, IRegEx<Field>> regExes = fieldAutomaton.toRegEx(starts,
+					fieldAutomaton.getInitialState());
+			for (int i = 0; i < batch.size(); i++) {
+				Transition<Field, INode<Node<Statement, Val>>> t = batch.get(i);
+				onRegEx(t, collectedWeights.get(i), regExes.get(t.getStart()));
+			}
+		}
+
+		abstract boolean accepts(INode<Node<Statement, Val>> start);
+
+		abstract void onRegEx(Transition<Field, INode<Node<Statement, Val>>> t, W w, IRegEx<Field> regEx);
 	}
 
 	public Collection<SootMethod> getReachableMethods() {
 		return reachableMethods;
 	}
 
+	/**
+	 * @return The number of listeners registered at this solver and its automata per listener class.
+	 */
+	@Override
+	public Multiset<Class<?>> getListenerCounts() {
+		Multiset<Class<?>> counts = super.getListenerCounts();
+		counts.addAll(perMethodFieldTransitionsListener.countByClass());
+		counts.addAll(perStatementFieldTransitionsListener.countByClass());
+		counts.addAll(perStatementCallTransitionsListener.countByClass());
+		return counts;
+	}
+
 	public void cleanup() {
 		this.callAutomaton.clearListener();
 		this.fieldAutomaton.clearListener();
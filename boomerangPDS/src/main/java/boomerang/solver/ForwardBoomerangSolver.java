@@ -11,12 +11,9 @@
  *******************************************************************************/
 package boomerang.solver;
 
-import java.util.AbstractMap;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import com.google.common.collect.Sets;
@@ -53,9 +50,9 @@ import soot.jimple.internal.JNeExpr;
 import soot.jimple.toolkits.ide.icfg.BiDiInterproceduralCFG;
 import sync.pds.solver.nodes.CallPopNode;
 import sync.pds.solver.nodes.ExclusionNode;
-import sync.pds.solver.nodes.GeneratedState;
 import sync.pds.solver.nodes.INode;
 import sync.pds.solver.nodes.Node;
+import sync.pds.solver.nodes.NodeFactory;
 import sync.pds.solver.nodes.NodeWithLocation;
 import sync.pds.solver.nodes.PopNode;
 import sync.pds.solver.nodes.PushNode;
@@ -64,8 +61,8 @@ import wpds.impl.Weight;
 import wpds.interfaces.State;
 
 public abstract class ForwardBoomerangSolver<W extends Weight> extends AbstractBoomerangSolver<W> {
-	public ForwardBoomerangSolver(BiDiInterproceduralCFG<Unit, SootMethod> icfg, ForwardQuery query, Map<Entry<INode<Node<Statement, Val>>, Field>, INode<Node<Statement, Val>>> genField, BoomerangOptions options, NestedWeightedPAutomatons<Statement, INode<Val>, W> callSummaries, NestedWeightedPAutomatons<Field, INode<Node<Statement, Val>>,W> fieldSummaries) {
-		super(icfg, query, genField, options, callSummaries, fieldSummaries);
+	public ForwardBoomerangSolver(BiDiInterproceduralCFG<Unit, SootMethod> icfg, ForwardQuery query, NodeFactory<Statement, Val, Field> nodeFactory, BoomerangOptions options, NestedWeightedPAutomatons<Statement, INode<Val>, W> callSummaries, NestedWeightedPAutomatons<Field, INode<Node<Statement, Val>>,W> fieldSummaries) {
+		super(icfg, query, nodeFactory, options, callSummaries, fieldSummaries);
 	}
 	
 	@Override
@@ -102,11 +99,7 @@ public abstract class ForwardBoomerangSolver<W extends Weight> extends AbstractB
 	
 
 	public INode<Node<Statement,Val>> generateFieldState(final INode<Node<Statement, Val>> d, final Field loc) {
-		Entry<INode<Node<Statement,Val>>, Field> e = new AbstractMap.SimpleEntry<>(d, loc);
-		if (!generatedFieldState.containsKey(e)) {
-			generatedFieldState.put(e, new GeneratedState<Node<Statement,Val>,Field>(fieldAutomaton.getInitialState(),loc));
-		}
-		return generatedFieldState.get(e);
+		return nodes.fieldState(d, loc, fieldAutomaton.getInitialState());
 	}
 	
 
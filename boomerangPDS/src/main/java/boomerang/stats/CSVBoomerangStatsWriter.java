@@ -358,8 +358,9 @@ public class CSVBoomerangStatsWriter<W extends Weight> implements IBoomerangStat
 		put(Headers.ICFGEdges, Util.getICFGEdges());
 		put(Headers.CallGeneratedStates, callGeneratedStates.size());
 		put(Headers.FieldGeneratedStates, fieldGeneratedStates.size());
-		put(Headers.CallLongestCallStack, queries.get(query).getCallAutomaton().getLongestPath().size());
-		put(Headers.FieldLongestAccessPath, queries.get(query).getFieldAutomaton().getLongestPath().size());
+		// Both columns count the distinct labels on the longest path, as they did before the path was a list.
+		put(Headers.CallLongestCallStack, Sets.newHashSet(queries.get(query).getCallAutomaton().getLongestPath()).size());
+		put(Headers.FieldLongestAccessPath, Sets.newHashSet(queries.get(query).getFieldAutomaton().getLongestPath()).size());
 		put(Headers.CallContainsLoop, queries.get(query).getCallAutomaton().containsLoop());
 		put(Headers.FieldContainsLoop, queries.get(query).getFieldAutomaton().containsLoop());
 		put(Headers.MemoryAfter, memoryAfter);
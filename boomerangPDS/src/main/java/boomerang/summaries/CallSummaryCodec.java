@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *  
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package boomerang.summaries;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import boomerang.jimple.Statement;
+import boomerang.jimple.Val;
+import soot.Body;
+import soot.Local;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.Stmt;
+import sync.pds.solver.nodes.GeneratedState;
+import sync.pds.solver.nodes.INode;
+import sync.pds.solver.nodes.SingleNode;
+import wpds.impl.SummaryCodec;
+import wpds.impl.Weight;
+
+/**
+ * Encodes the states and locations of Boomerang's call automata by method signature, unit index
+ * and local name, so that they can be resolved against the Soot scene of a later run. Every
+ * encoded statement carries the fingerprint of its method body. Summaries that refer to a
+ * method that changed or no longer exists fail to decode and are dropped. Facts other than locals
+ * (static fields, allocation sites, unbalanced values) are not encoded, summaries containing them
+ * are not persisted.
+ *
+ * Weights are encoded by the subclass.
+ */
+public abstract class CallSummaryCodec<W extends Weight> implements SummaryCodec<Statement, INode<Val>, W> {
+	private static final int EPSILON = 0;
+	private static final int STMT = 1;
+	private static final int ZERO = 0;
+	private static final int LOCAL = 1;
+	private static final int SINGLE_NODE = 0;
+	private static final int GENERATED_STATE = 1;
+
+	private final MethodFingerprints fingerprints;
+	private final Map<SootMethod, List<Unit>> units = Maps.newHashMap();
+
+	public CallSummaryCodec(MethodFingerprints fingerprints) {
+		this.fingerprints = fingerprints;
+	}
+
+	/**
+	 * Identifies the weight encoding of the subclass.
+	 */
+	protected abstract String weightId();
+
+	@Override
+	public String id() {
+		return "boomerang.call/1/" + weightId();
+	}
+
+	@Override
+	public void writeLocation(Statement location, DataOutput out) throws IOException {
+		if (location.equals(Statement.epsilon())) {
+			out.writeByte(EPSILON);
+			return;
+		}
+		if (!location.getUnit().isPresent())
+			throw new IOException("Cannot encode statement " + location);
+		SootMethod method = location.getMethod();
+		int index = units(method).indexOf(location.getUnit().get());
+		if (index < 0)
+			throw new IOException("Statement not in body of " + method);
+		out.writeByte(STMT);
+		writeMethod(method, out);
+		out.writeInt(index);
+	}
+
+	@Override
+	public Statement readLocation(DataInput in) throws IOException {
+		if (in.readByte() == EPSILON)
+			return Statement.epsilon();
+		SootMethod method = readMethod(in);
+		List<Unit> body = units(method);
+		int index = in.readInt();
+		if (index >= body.size())
+			throw new IOException("Unit index out of range for " + method);
+		return new Statement((Stmt) body.get(index), method);
+	}
+
+	@Override
+	public void writeState(INode<Val> state, DataOutput out) throws IOException {
+		if (state instanceof GeneratedState) {
+			GeneratedState<Val, ?> generated = (GeneratedState<Val, ?>) state;
+			if (!(generated.location() instanceof Statement))
+				throw new IOException("Cannot encode state " + state);
+			out.writeByte(GENERATED_STATE);
+			writeState(generated.node(), out);
+			writeLocation((Statement) generated.location(), out);
+		} else if (state instanceof SingleNode) {
+			out.writeByte(SINGLE_NODE);
+			writeVal(state.fact(), out);
+		} else {
+			throw new IOException("Cannot encode state " + state);
+		}
+	}
+
+	@Override
+	public INode<Val> readState(DataInput in) throws IOException {
+		if (in.readByte() == GENERATED_STATE) {
+			INode<Val> node = readState(in);
+			return new GeneratedState<Val, Statement>(node, readLocation(in));
+		}
+		return new SingleNode<Val>(readVal(in));
+	}
+
+	private void writeVal(Val val, DataOutput out) throws IOException {
+		if (val.equals(Val.zero())) {
+			out.writeByte(ZERO);
+			return;
+		}
+		if (val.getClass() != Val.class || val.isUnbalanced() || !(val.value() instanceof Local))
+			throw new IOException("Cannot encode fact " + val);
+		out.writeByte(LOCAL);
+		writeMethod(val.m(), out);
+		out.writeUTF(((Local) val.value()).getName());
+	}
+
+	private Val readVal(DataInput in) throws IOException {
+		if (in.readByte() == ZERO)
+			return Val.zero();
+		SootMethod method = readMethod(in);
+		String name = in.readUTF();
+		for (Local l : body(method).getLocals()) {
+			if (l.getName().equals(name))
+				return new Val(l, method);
+		}
+		throw new IOException("No local " + name + " in " + method);
+	}
+
+	private void writeMethod(SootMethod method, DataOutput out) throws IOException {
+		out.writeUTF(fingerprints.key(method));
+		out.writeUTF(fingerprints.fingerprint(method));
+	}
+
+	private SootMethod readMethod(DataInput in) throws IOException {
+		String signature = in.readUTF();
+		String fingerprint = in.readUTF();
+		if (!Scene.v().containsMethod(signature))
+			throw new IOException("Unknown method " + signature);
+		SootMethod method = Scene.v().getMethod(signature);
+		body(method);
+		if (!fingerprints.fingerprint(method).equals(fingerprint))
+			throw new IOException("Method changed " + signature);
+		return method;
+	}
+
+	/**
+	 * The active body of the method, retrieved if it is not loaded yet.
+	 */
+	private static Body body(SootMethod method) throws IOException {
+		if (method.hasActiveBody())
+			return method.getActiveBody();
+		if (!method.isConcrete())
+			throw new IOException("No body for " + method);
+		try {
+			return method.retrieveActiveBody();
+		} catch (RuntimeException e) {
+			throw new IOException("Cannot retrieve body of " + method, e);
+		}
+	}
+
+	private List<Unit> units(SootMethod method) throws IOException {
+		List<Unit> res = units.get(method);
+		if (res == null) {
+			res = Lists.newArrayList(body(method).getUnits());
+			units.put(method, res);
+		}
+		return res;
+	}
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *  
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package boomerang.summaries;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import heros.InterproceduralCFG;
+import soot.Body;
+import soot.SootMethod;
+import soot.Unit;
+
+/**
+ * Hashes of Jimple method bodies, used to detect whether a persisted summary was computed for
+ * the current version of a method. Hashes are cached per method.
+ */
+public class MethodFingerprints {
+	private final Map<SootMethod, String> fingerprints = Maps.newHashMap();
+	private final Map<SootMethod, String> transitiveFingerprints = Maps.newHashMap();
+
+	public String key(SootMethod method) {
+		return method.getSignature();
+	}
+
+	/**
+	 * The hash of the units of the active body of the method, which is retrieved if it is not loaded
+	 * yet, or the empty string for methods without body.
+	 */
+	public String fingerprint(SootMethod method) {
+		String fingerprint = fingerprints.get(method);
+		if (fingerprint == null) {
+			fingerprint = compute(method);
+			fingerprints.put(method, fingerprint);
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * The hash of the fingerprints of the method and of all methods it transitively calls according
+	 * to the control-flow graph. A call summary of the method also contains the effects of its
+	 * callees, so it is only valid while none of them changed.
+	 */
+	public String transitiveFingerprint(SootMethod method, InterproceduralCFG<Unit, SootMethod> icfg) {
+		String fingerprint = transitiveFingerprints.get(method);
+		if (fingerprint == null) {
+			fingerprint = computeTransitive(method, icfg);
+			transitiveFingerprints.put(method, fingerprint);
+		}
+		return fingerprint;
+	}
+
+	private String computeTransitive(SootMethod method, InterproceduralCFG<Unit, SootMethod> icfg) {
+		Set<SootMethod> reachable = Sets.newHashSet(method);
+		LinkedList<SootMethod> worklist = Lists.newLinkedList(reachable);
+		while (!worklist.isEmpty()) {
+			SootMethod m = worklist.poll();
+			// Loads the body, methods without body call nothing.
+			if (fingerprint(m).isEmpty())
+				continue;
+			for (Unit callSite : icfg.getCallsFromWithin(m)) {
+				for (SootMethod callee : icfg.getCalleesOfCallAt(callSite)) {
+					if (reachable.add(callee))
+						worklist.add(callee);
+				}
+			}
+		}
+		List<SootMethod> sorted = Lists.newArrayList(reachable);
+		Collections.sort(sorted, new Comparator<SootMethod>() {
+			@Override
+			public int compare(SootMethod o1, SootMethod o2) {
+				return key(o1).compareTo(key(o2));
+			}
+		});
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		for (SootMethod m : sorted) {
+			hasher.putString(key(m), StandardCharsets.UTF_8);
+			hasher.putChar('=');
+			hasher.putString(fingerprint(m), StandardCharsets.UTF_8);
+			hasher.putChar('\n');
+		}
+		return hasher.hash().toString();
+	}
+
+	private static String compute(SootMethod method) {
+		Body body;
+		if (method.hasActiveBody()) {
+			body = method.getActiveBody();
+		} else if (method.isConcrete()) {
+			try {
+				body = method.retrieveActiveBody();
+			} catch (RuntimeException e) {
+				return "";
+			}
+		} else {
+			return "";
+		}
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		for (Unit u : body.getUnits()) {
+			hasher.putString(u.toString(), StandardCharsets.UTF_8);
+			hasher.putChar('\n');
+		}
+		return hasher.hash().toString();
+	}
+}
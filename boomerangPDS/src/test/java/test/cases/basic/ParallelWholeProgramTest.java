@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package test.cases.basic;
+
+import org.junit.Test;
+
+import test.cases.fields.Alloc;
+import test.core.AbstractBoomerangTest;
+
+/**
+ * Runs the whole-program analysis on one and on four workers, the query results and the reached
+ * states of every solver must not differ.
+ */
+public class ParallelWholeProgramTest extends AbstractBoomerangTest {
+
+	@Override
+	protected AnalysisMode[] getAnalyses() {
+		return new AnalysisMode[] {
+				AnalysisMode.ParallelWholeProgram
+				};
+	}
+
+	@Test
+	public void branchWithCall() {
+		Alloc a1 = new Alloc();
+		Alloc a2 = new Alloc();
+		Object a = null;
+		if (staticallyUnknown()) {
+			a = a1;
+		} else {
+			a = a2;
+		}
+		identity(a);
+		queryFor(a);
+	}
+
+	@Test
+	public void fieldFlowAcrossCalls() {
+		Container c1 = new Container();
+		Container c2 = new Container();
+		c1.f = new Alloc();
+		c2.f = new Object();
+		Container c = (staticallyUnknown() ? c1 : c2);
+		Object alias = read(identity(c));
+		queryFor(alias);
+	}
+
+	@Test
+	public void sharedCallee() {
+		Object o1 = identity(new Object());
+		Object o2 = identity(new Object());
+		Alloc a = new Alloc();
+		Object alias = identity(identity(a));
+		queryFor(alias);
+	}
+
+	private <T> T identity(T param) {
+		return param;
+	}
+
+	private Object read(Container c) {
+		return c.f;
+	}
+
+	private static class Container {
+		Object f;
+	}
+}
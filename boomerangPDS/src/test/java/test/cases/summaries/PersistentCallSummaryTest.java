@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package test.cases.summaries;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+import boomerang.WeightedBoomerang;
+import boomerang.jimple.Statement;
+import boomerang.jimple.Val;
+import boomerang.summaries.CallSummaryCodec;
+import boomerang.summaries.MethodFingerprints;
+import soot.Body;
+import soot.SootMethod;
+import soot.jimple.Jimple;
+import sync.pds.solver.nodes.INode;
+import test.cases.fields.Alloc;
+import test.core.AbstractBoomerangTest;
+import wpds.impl.PersistentSummaryStore;
+import wpds.impl.Weight.NoWeight;
+import wpds.impl.WeightedPAutomaton;
+
+/**
+ * Runs the whole-program analysis twice. The forward call summaries recorded in the first run are
+ * saved and loaded again, the second run must restore them. In {@link #calleeChanged()} only the
+ * body of a callee changes between the runs, the summaries of the callee and its caller must then
+ * be rejected.
+ */
+public class PersistentCallSummaryTest extends AbstractBoomerangTest {
+	private CountingStore store = new CountingStore();
+	private int runs;
+
+	@Override
+	protected AnalysisMode[] getAnalyses() {
+		return new AnalysisMode[] {
+				AnalysisMode.WholeProgram
+				};
+	}
+
+	@Override
+	public int getIterations() {
+		return 2;
+	}
+
+	@Override
+	protected void setupSolver(WeightedBoomerang<NoWeight> solver) {
+		if (runs > 0) {
+			store = reload(store);
+			if (changesCallee())
+				insertNop(sootTestMethod.getDeclaringClass().getMethodByName("inner"));
+		}
+		solver.setCallSummaryStore(store);
+	}
+
+	@Override
+	protected void tearDownSolver(WeightedBoomerang<NoWeight> solver) {
+		if (runs++ == 0) {
+			solver.recordCallSummaries(store);
+			Assert.assertTrue("No call summary was recorded", store.size() > 0);
+		} else if (changesCallee()) {
+			for (String key : store.restoredKeys) {
+				Assert.assertFalse("Stale summary restored for " + key,
+						key.contains(" inner(") || key.contains(" outer("));
+			}
+		} else {
+			Assert.assertTrue("No call summary was reused", !store.restoredKeys.isEmpty());
+		}
+	}
+
+	private boolean changesCallee() {
+		return testMethodName.getMethodName().equals("calleeChanged");
+	}
+
+	private static void insertNop(SootMethod method) {
+		Body body = method.retrieveActiveBody();
+		body.getUnits().insertBefore(Jimple.v().newNopStmt(), body.getUnits().getLast());
+	}
+
+	@Test
+	public void identityCalls() {
+		Alloc alloc = new Alloc();
+		Object alias = identity(identity(alloc));
+		queryFor(alias);
+	}
+
+	@Test
+	public void callThroughField() {
+		Container c = new Container();
+		c.f = new Alloc();
+		Object alias = read(identity(c));
+		queryFor(alias);
+	}
+
+	@Test
+	public void calleeChanged() {
+		Alloc alloc = new Alloc();
+		Object alias = outer(alloc);
+		queryFor(alias);
+	}
+
+	private Object outer(Object param) {
+		return inner(param);
+	}
+
+	private Object inner(Object param) {
+		return param;
+	}
+
+	private <T> T identity(T param) {
+		return param;
+	}
+
+	private Object read(Container c) {
+		return c.f;
+	}
+
+	private static class Container {
+		Object f;
+	}
+
+	private static CountingStore reload(CountingStore store) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			store.write(bytes);
+			CountingStore loaded = new CountingStore();
+			Assert.assertTrue(loaded.read(new ByteArrayInputStream(bytes.toByteArray())));
+			return loaded;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static class CountingStore extends PersistentSummaryStore<Statement, INode<Val>, NoWeight> {
+		private final Set<String> restoredKeys = Sets.newHashSet();
+
+		CountingStore() {
+			super(new CallSummaryCodec<NoWeight>(new MethodFingerprints()) {
+
+				@Override
+				protected String weightId() {
+					return "none";
+				}
+
+				@Override
+				public void writeWeight(NoWeight weight, DataOutput out) throws IOException {
+					out.writeBoolean(weight == NoWeight.NO_WEIGHT_ZERO);
+				}
+
+				@Override
+				public NoWeight readWeight(DataInput in) throws IOException {
+					return in.readBoolean() ? NoWeight.NO_WEIGHT_ZERO : NoWeight.NO_WEIGHT_ONE;
+				}
+			});
+		}
+
+		@Override
+		public boolean restore(String key, String fingerprint, INode<Val> target,
+				WeightedPAutomaton<Statement, INode<Val>, NoWeight> aut) {
+			if (!super.restore(key, fingerprint, target, aut))
+				return false;
+			restoredKeys.add(key);
+			return true;
+		}
+	}
+}
@@ -15,6 +15,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 import org.junit.Rule;
@@ -23,6 +24,7 @@ import org.junit.rules.Timeout;
 import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import boomerang.BackwardQuery;
@@ -101,7 +103,7 @@ public class AbstractBoomerangTest extends AbstractTestingFramework {
 	protected int analysisTimeout = 3000 *1000;
 
 	public enum AnalysisMode {
-		WholeProgram, DemandDrivenBackward;
+		WholeProgram, ParallelWholeProgram, DemandDrivenBackward;
 	}
 
 	protected AnalysisMode[] getAnalyses() {
@@ -177,6 +179,10 @@ public class AbstractBoomerangTest extends AbstractTestingFramework {
 							if(!integerQueries)
 								runWholeProgram();
 							break;
+						case ParallelWholeProgram:
+							if(!integerQueries)
+								runParallelWholeProgram();
+							break;
 						case DemandDrivenBackward:
 							runDemandDrivenBackward();
 							break;
@@ -338,6 +344,7 @@ public class AbstractBoomerangTest extends AbstractTestingFramework {
 			if(query instanceof BackwardQuery){
 				setupSolver(solver);
 				BackwardBoomerangResults<NoWeight> res = solver.solve((BackwardQuery) query);
+				tearDownSolver(solver);
 				for(ForwardQuery q : res.getAllocationSites().keySet()){
 					results.add(q.asNode());
 				}
@@ -362,6 +369,35 @@ public class AbstractBoomerangTest extends AbstractTestingFramework {
 	}
 
 	private void runWholeProgram() {
+		Set<Node<Statement, Val>> results = runWholeProgram(1, Maps.<Query, Set<Node<Statement, Val>>>newHashMap());
+		compareQuery(allocationSites, results, AnalysisMode.WholeProgram);
+		System.out.println();
+	}
+
+	/**
+	 * Runs the whole-program analysis on a single worker and on four workers. Both the query results
+	 * and the states reached by each solver must be identical.
+	 */
+	private void runParallelWholeProgram() {
+		Map<Query, Set<Node<Statement, Val>>> sequentialReached = Maps.newHashMap();
+		Set<Node<Statement, Val>> sequential = runWholeProgram(1, sequentialReached);
+		Map<Query, Set<Node<Statement, Val>>> parallelReached = Maps.newHashMap();
+		Set<Node<Statement, Val>> parallel = runWholeProgram(4, parallelReached);
+		if (!sequential.equals(parallel)) {
+			unsoundErrors.add(new Error(AnalysisMode.ParallelWholeProgram + " Results differ from the sequential analysis:\n"
+					+ parallel + "\nSequential: " + sequential));
+		}
+		for (Query q : Sets.union(sequentialReached.keySet(), parallelReached.keySet())) {
+			if (!Objects.equals(sequentialReached.get(q), parallelReached.get(q))) {
+				unsoundErrors.add(new Error(AnalysisMode.ParallelWholeProgram
+						+ " Reached states differ from the sequential analysis for " + q));
+			}
+		}
+		compareQuery(allocationSites, parallel, AnalysisMode.ParallelWholeProgram);
+		System.out.println();
+	}
+
+	private Set<Node<Statement, Val>> runWholeProgram(int threads, Map<Query, Set<Node<Statement, Val>>> reached) {
 		final Set<Node<Statement, Val>> results = Sets.newHashSet();
 		WholeProgramBoomerang<NoWeight> solver = new WholeProgramBoomerang<NoWeight>(new DefaultBoomerangOptions() {
 			@Override
@@ -405,7 +441,8 @@ public class AbstractBoomerangTest extends AbstractTestingFramework {
 
 		};
 		setupSolver(solver);
-		solver.wholeProgramAnalysis();
+		solver.wholeProgramAnalysis(threads);
+		tearDownSolver(solver);
 		DefaultValueMap<Query, AbstractBoomerangSolver<NoWeight>> solvers = solver.getSolvers();
 		for (final Query q : solvers.keySet()) {
 //			if (!(q instanceof ForwardQuery))
@@ -433,6 +470,7 @@ public class AbstractBoomerangTest extends AbstractTestingFramework {
 							}
 						});
 			}
+			reached.put(q, Sets.newHashSet(solvers.get(q).getReachedStates()));
 			for (Node<Statement, Val> s : solvers.get(q).getReachedStates()) {
 				if (s.stmt().getMethod().toString().contains("unreachable")
 						&& !q.toString().contains("dummyClass.main")) {
@@ -442,13 +480,18 @@ public class AbstractBoomerangTest extends AbstractTestingFramework {
 		}
 
 		solver.debugOutput();
-		compareQuery(allocationSites, results, AnalysisMode.WholeProgram);
-		System.out.println();
+		return results;
 	}
 
 	protected void setupSolver(WeightedBoomerang<NoWeight> solver) {
 	}
 
+	/**
+	 * Called after the solver answered its queries, before its results are checked.
+	 */
+	protected void tearDownSolver(WeightedBoomerang<NoWeight> solver) {
+	}
+
 	private boolean allocatesObjectOfInterest(NewExpr rightOp) {
 		SootClass interfaceType = Scene.v().getSootClass("test.core.selfrunning.AllocatedObject");
 		if (!interfaceType.isInterface())
@@ -12,12 +12,20 @@
 package ideal;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 import boomerang.ForwardQuery;
 import boomerang.Query;
@@ -38,9 +46,10 @@ public class IDEALAnalysis<W extends Weight> {
 
 	protected final IDEALAnalysisDefinition<W> analysisDefinition;
 	private final SeedFactory<W> seedFactory;
-	private int seedCount;
-	private Map<WeightedForwardQuery<W>, Stopwatch> analysisTime = new HashMap<>();
-	private Set<WeightedForwardQuery<W>> timedoutSeeds = new HashSet<>();
+	private final AtomicInteger analyzedSeeds = new AtomicInteger();
+	private final Object reportLock = new Object();
+	private Map<WeightedForwardQuery<W>, Stopwatch> analysisTime = new ConcurrentHashMap<>();
+	private Set<WeightedForwardQuery<W>> timedoutSeeds = Sets.newConcurrentHashSet();
 
 	public IDEALAnalysis(final IDEALAnalysisDefinition<W> analysisDefinition) {
 		this.analysisDefinition = analysisDefinition;
@@ -68,21 +77,71 @@ public class IDEALAnalysis<W extends Weight> {
 			System.err.println("No seeds found!");
 		else
 			System.err.println("Analysing " + initialSeeds.size() + " seeds!");
+		List<WeightedForwardQuery<W>> seeds = Lists.newArrayList();
 		for (Query s : initialSeeds) {
 			if(!(s instanceof WeightedForwardQuery))
 				continue;
-			WeightedForwardQuery<W> seed = (WeightedForwardQuery) s;
-			seedCount++;
-			System.err.println("Analyzing "+ seed);
-			Stopwatch watch = Stopwatch.createStarted();
-			analysisTime.put(seed, watch);
-			ForwardBoomerangResults<W> res = run(seed);
-			watch.stop();
-			System.err.println("Analyzed (finished,timedout): \t (" + (seedCount -timedoutSeeds.size())+ "," + timedoutSeeds.size() + ") of "+ initialSeeds.size() + " seeds! ");
-			analysisDefinition.getResultHandler().report(seed,res);
+			seeds.add((WeightedForwardQuery) s);
+		}
+		int threads = analysisDefinition.numberOfThreads();
+		if (threads > 1 && seeds.size() > 1) {
+			runParallel(seeds, initialSeeds.size(), threads);
+		} else {
+			for (WeightedForwardQuery<W> seed : seeds) {
+				analyze(seed, initialSeeds.size());
+			}
 		}
 //		System.out.println("Analysis time for all seeds: "+ watch.elapsed());
 	}
+
+	/**
+	 * Analyzes the seeds on a fixed pool of worker threads. Each seed gets its own
+	 * {@link IDEALSeedSolver}, results are reported to the result handler one at a time. The first
+	 * exception thrown by a worker is rethrown once all submitted seeds are done.
+	 */
+	private void runParallel(List<WeightedForwardQuery<W>> seeds, final int totalSeeds, int threads) {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, seeds.size()));
+		List<Future<?>> futures = Lists.newArrayList();
+		for (final WeightedForwardQuery<W> seed : seeds) {
+			futures.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					analyze(seed, totalSeeds);
+				}
+			}));
+		}
+		executor.shutdown();
+		Throwable failure = null;
+		for (Future<?> f : futures) {
+			try {
+				f.get();
+			} catch (InterruptedException e) {
+				executor.shutdownNow();
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while analyzing seeds", e);
+			} catch (ExecutionException e) {
+				if (failure == null)
+					failure = e.getCause();
+			}
+		}
+		if (failure != null) {
+			Throwables.throwIfUnchecked(failure);
+			throw new RuntimeException(failure);
+		}
+	}
+
+	private void analyze(WeightedForwardQuery<W> seed, int totalSeeds) {
+		System.err.println("Analyzing "+ seed);
+		Stopwatch watch = Stopwatch.createStarted();
+		analysisTime.put(seed, watch);
+		ForwardBoomerangResults<W> res = run(seed);
+		watch.stop();
+		int finished = analyzedSeeds.incrementAndGet();
+		int timedout = timedoutSeeds.size();
+		System.err.println("Analyzed (finished,timedout): \t (" + (finished - timedout)+ "," + timedout + ") of "+ totalSeeds + " seeds! ");
+		report(seed, res);
+	}
+
 	public ForwardBoomerangResults<W> run(ForwardQuery seed) {
 		IDEALSeedSolver<W> idealAnalysis = new IDEALSeedSolver<W>(analysisDefinition, seed, seedFactory);
 		ForwardBoomerangResults<W> res;
@@ -92,9 +151,15 @@ public class IDEALAnalysis<W extends Weight> {
 			res = (ForwardBoomerangResults<W>) e.getLastResults();
 			timedoutSeeds.add((WeightedForwardQuery) seed);
 		}
-		analysisDefinition.getResultHandler().report((WeightedForwardQuery)seed,res);
+		report((WeightedForwardQuery)seed,res);
 		return res;
 	}
+
+	private void report(WeightedForwardQuery<W> seed, ForwardBoomerangResults<W> res) {
+		synchronized (reportLock) {
+			analysisDefinition.getResultHandler().report(seed, res);
+		}
+	}
 	private void printOptions() {
 		if(PRINT_OPTIONS) {
 			System.out.println(analysisDefinition);
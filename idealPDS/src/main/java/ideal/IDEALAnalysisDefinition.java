@@ -57,6 +57,16 @@ public abstract class IDEALAnalysisDefinition<W extends Weight> {
 		return true;
 	}
 
+	/**
+	 * Number of worker threads the seeds are analyzed with. With more than one thread, independent
+	 * seeds are analyzed concurrently, each by its own {@link IDEALSeedSolver}. The call graph
+	 * returned by {@link #icfg()} and the weight functions are then shared between the workers and
+	 * must be safe for concurrent use. Reports to the {@link #getResultHandler()} are serialized.
+	 */
+	public int numberOfThreads() {
+		return 1;
+	}
+
 	public String toString() {
 		String str = "====== IDEal Analysis Options ======";
 //		str += "\nEdge Functions:\t\t" + edgeFunctions();
@@ -3,7 +3,7 @@
  * This program and the accompanying materials are made available under the
  * terms of the Eclipse Public License 2.0 which is available at
  * http://www.eclipse.org/legal/epl-2.0.
- *  
+ *
  * SPDX-License-Identifier: EPL-2.0
  *
  * Contributors:
@@ -11,55 +11,99 @@
  *******************************************************************************/
 package typestate;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
 
 import boomerang.jimple.Statement;
 import typestate.finiteautomata.ITransition;
+import typestate.finiteautomata.State;
 import typestate.finiteautomata.Transition;
 import wpds.impl.Weight;
 
+/**
+ * Typestate weight. The set of transitions is stored as a boolean matrix over the states of the
+ * state machines: row i holds a bit for every state j such that the transition from state i to
+ * state j is contained. States are numbered globally in the order they are first seen. Extending
+ * two weights is a bit-matrix multiplication, combining them a bitwise or.
+ *
+ * Transitions are compared by their source and target state only, {@link #values()} returns plain
+ * {@link Transition}s.
+ */
 public class TransitionFunction extends Weight {
 
-	private final Set<ITransition> value;
+	private static final Map<State, Integer> stateToId = new ConcurrentHashMap<>();
+	private static final List<State> idToState = new CopyOnWriteArrayList<>();
+	private static final long[][] EMPTY = new long[0][];
+
+	/**
+	 * matrix[from] is null or a bit set of the target states of from. The matrix is kept trimmed:
+	 * rows are null if they are empty, and neither the matrix nor any row ends with empty entries.
+	 */
+	private final long[][] matrix;
 
 	private final String rep;
 
-	private static TransitionFunction one;
+	private final int hashCode;
 
-	private static TransitionFunction zero;
+	private static final TransitionFunction one = new TransitionFunction("ONE");
 
-	private Set<Statement> stateChangeStatements;
+	private static final TransitionFunction zero = new TransitionFunction("ZERO");
+
+	private final ImmutableSet<Statement> stateChangeStatements;
 
 	public TransitionFunction(Set<? extends ITransition> trans, Set<Statement> stateChangeStatements) {
-		this.stateChangeStatements = stateChangeStatements;
-		this.value = new HashSet<>(trans);
-		this.rep = null;
+		this(toMatrix(trans), ImmutableSet.copyOf(stateChangeStatements));
 	}
 
 	public TransitionFunction(ITransition trans, Set<Statement> stateChangeStatements) {
-		this(new HashSet<>(Collections.singleton(trans)),stateChangeStatements);
+		this(Collections.singleton(trans), stateChangeStatements);
+	}
+
+	private TransitionFunction(long[][] matrix, ImmutableSet<Statement> stateChangeStatements) {
+		this.matrix = matrix;
+		this.rep = null;
+		this.stateChangeStatements = stateChangeStatements;
+		this.hashCode = Arrays.deepHashCode(matrix);
 	}
 
 	private TransitionFunction(String rep) {
-		this.value = Sets.newHashSet();
+		this.matrix = EMPTY;
 		this.rep = rep;
-		this.stateChangeStatements = Sets.newHashSet();
+		this.stateChangeStatements = ImmutableSet.of();
+		this.hashCode = rep.hashCode();
 	}
 
-	public Collection<ITransition> values(){
-		return Lists.newArrayList(value);
+	public Collection<ITransition> values() {
+		List<ITransition> res = Lists.newArrayList();
+		for (int from = 0; from < matrix.length; from++) {
+			long[] row = matrix[from];
+			if (row == null)
+				continue;
+			for (int word = 0; word < row.length; word++) {
+				long bits = row[word];
+				while (bits != 0) {
+					int to = word * 64 + Long.numberOfTrailingZeros(bits);
+					res.add(new Transition(idToState.get(from), idToState.get(to)));
+					bits &= bits - 1;
+				}
+			}
+		}
+		return res;
 	}
-	
+
 	public Set<Statement> getLastStateChangeStatements() {
 		return stateChangeStatements;
 	}
-	
+
 	@Override
 	public Weight extendWith(Weight other) {
 		if (other.equals(one()))
@@ -70,24 +114,30 @@ public class TransitionFunction extends Weight {
 			return zero();
 		}
 		TransitionFunction func = (TransitionFunction) other;
-		Set<ITransition> otherTransitions = func.value;
-		Set<ITransition> ress = new HashSet<>();
-		Set<Statement> newStateChangeStatements = new HashSet<>();
-		for (ITransition first : value) {
-			for (ITransition second : otherTransitions) {
-				if (second.equals(Transition.identity())) {
-					ress.add(first);
-					newStateChangeStatements.addAll(stateChangeStatements);
-				} else if (first.equals(Transition.identity())) {
-					ress.add(second);
-					newStateChangeStatements.addAll(func.stateChangeStatements);
-				} else if (first.to().equals(second.from())){
-					ress.add(new Transition(first.from(), second.to()));
-					newStateChangeStatements.addAll(func.stateChangeStatements);
+		long[][] res = new long[matrix.length][];
+		boolean composed = false;
+		for (int from = 0; from < matrix.length; from++) {
+			long[] row = matrix[from];
+			if (row == null)
+				continue;
+			long[] acc = null;
+			for (int word = 0; word < row.length; word++) {
+				long bits = row[word];
+				while (bits != 0) {
+					int mid = word * 64 + Long.numberOfTrailingZeros(bits);
+					if (mid < func.matrix.length && func.matrix[mid] != null) {
+						acc = or(acc, func.matrix[mid]);
+					}
+					bits &= bits - 1;
 				}
 			}
+			if (acc != null) {
+				res[from] = acc;
+				composed = true;
+			}
 		}
-		return new TransitionFunction(ress,newStateChangeStatements);
+		return new TransitionFunction(trim(res),
+				composed ? func.stateChangeStatements : ImmutableSet.<Statement>of());
 	}
 
 	@Override
@@ -103,46 +153,43 @@ public class TransitionFunction extends Weight {
 		}
 		TransitionFunction func = (TransitionFunction) other;
 		if (other.equals(one()) || this.equals(one())) {
-			Set<ITransition> transitions = new HashSet<>((other.equals(one()) ? value : func.value));
-			Set<ITransition> idTransitions = Sets.newHashSet();
-			for(ITransition t : transitions) {
-				idTransitions.add(new Transition(t.from(),t.from()));
+			TransitionFunction nonOne = other.equals(one()) ? this : func;
+			long[][] res = new long[nonOne.matrix.length][];
+			for (int from = 0; from < res.length; from++) {
+				long[] row = nonOne.matrix[from];
+				if (row == null)
+					continue;
+				// Every source state may also stay where it is.
+				res[from] = Arrays.copyOf(row, Math.max(row.length, (from >>> 6) + 1));
+				res[from][from >>> 6] |= 1L << from;
 			}
-			transitions.addAll(idTransitions);
-			return new TransitionFunction(transitions,Sets.newHashSet((other.equals(one()) ? stateChangeStatements : func.stateChangeStatements)));
+			return new TransitionFunction(res, nonOne.stateChangeStatements);
+		}
+		long[][] res = Arrays.copyOf(matrix, Math.max(matrix.length, func.matrix.length));
+		for (int from = 0; from < func.matrix.length; from++) {
+			if (func.matrix[from] != null)
+				res[from] = or(res[from] == null ? null : res[from].clone(), func.matrix[from]);
 		}
-		Set<ITransition> transitions = new HashSet<>(func.value);
-		transitions.addAll(value);
-		HashSet<Statement> newStateChangeStmts = Sets.newHashSet(stateChangeStatements);
-		newStateChangeStmts.addAll(func.stateChangeStatements);
-		return new TransitionFunction(transitions,newStateChangeStmts);
+		return new TransitionFunction(res, union(stateChangeStatements, func.stateChangeStatements));
 	};
 
 	public static TransitionFunction one() {
-		if(one == null)
-			one = new TransitionFunction("ONE");
 		return one;
 	}
 
 	public static  TransitionFunction zero() {
-		if(zero == null)
-			zero = new TransitionFunction("ZERO");
 		return zero;
 	}
 
 	public String toString() {
 		if(this.rep != null)
 			return this.rep;
-		return "Weight: " + value.toString() + "";
+		return "Weight: " + values().toString() + "";
 	}
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((rep == null) ? 0 : rep.hashCode());
-		result = prime * result + ((value == null) ? 0 : value.hashCode());
-		return result;
+		return hashCode;
 	}
 
 	@Override
@@ -154,17 +201,79 @@ public class TransitionFunction extends Weight {
 		if (getClass() != obj.getClass())
 			return false;
 		TransitionFunction other = (TransitionFunction) obj;
+		if (hashCode != other.hashCode)
+			return false;
 		if (rep == null) {
 			if (other.rep != null)
 				return false;
 		} else if (!rep.equals(other.rep))
 			return false;
-		if (value == null) {
-			if (other.value != null)
-				return false;
-		} else if (!value.equals(other.value))
-			return false;
-		return true;
+		return Arrays.deepEquals(matrix, other.matrix);
+	}
+
+	private static long[][] toMatrix(Set<? extends ITransition> trans) {
+		long[][] res = EMPTY;
+		for (ITransition t : trans) {
+			if (t.from() == null || t.to() == null)
+				throw new IllegalArgumentException("Transition " + t + " cannot be encoded in a TransitionFunction");
+			int from = id(t.from());
+			int to = id(t.to());
+			if (from >= res.length)
+				res = Arrays.copyOf(res, from + 1);
+			long[] row = res[from];
+			if (row == null) {
+				row = new long[(to >>> 6) + 1];
+			} else if (row.length <= (to >>> 6)) {
+				row = Arrays.copyOf(row, (to >>> 6) + 1);
+			}
+			row[to >>> 6] |= 1L << to;
+			res[from] = row;
+		}
+		return res;
+	}
+
+	private static int id(State state) {
+		Integer id = stateToId.get(state);
+		if (id != null)
+			return id;
+		synchronized (idToState) {
+			id = stateToId.get(state);
+			if (id == null) {
+				id = idToState.size();
+				idToState.add(state);
+				stateToId.put(state, id);
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * Ors row into acc, which is modified in place when it is long enough. acc may be null.
+	 */
+	private static long[] or(long[] acc, long[] row) {
+		if (acc == null)
+			return row.clone();
+		if (acc.length < row.length)
+			acc = Arrays.copyOf(acc, row.length);
+		for (int i = 0; i < row.length; i++)
+			acc[i] |= row[i];
+		return acc;
+	}
+
+	private static long[][] trim(long[][] matrix) {
+		int length = matrix.length;
+		while (length > 0 && matrix[length - 1] == null)
+			length--;
+		if (length == 0)
+			return EMPTY;
+		return length == matrix.length ? matrix : Arrays.copyOf(matrix, length);
 	}
 
+	private static ImmutableSet<Statement> union(ImmutableSet<Statement> a, ImmutableSet<Statement> b) {
+		if (a.containsAll(b))
+			return a;
+		if (b.containsAll(a))
+			return b;
+		return ImmutableSet.<Statement>builder().addAll(a).addAll(b).build();
+	}
 }
@@ -83,10 +83,19 @@ public abstract class IDEALTestingFramework extends AbstractTestingFramework{
 			public IDEALResultHandler<TransitionFunction> getResultHandler() {
 				return resultHandler;
 			}
+
+			@Override
+			public int numberOfThreads() {
+				return IDEALTestingFramework.this.numberOfThreads();
+			}
 			
 		});
 	}
 
+	protected int numberOfThreads() {
+		return 1;
+	}
+
 	@Override
 	protected SceneTransformer createAnalysisTransformer() throws ImprecisionException {
 		return new SceneTransformer() {
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *  
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package typestate.tests;
+
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Table;
+
+import boomerang.WeightedForwardQuery;
+import boomerang.jimple.Statement;
+import boomerang.jimple.Val;
+import boomerang.results.ForwardBoomerangResults;
+import ideal.StoreIDEALResultHandler;
+import test.IDEALTestingFramework;
+import typestate.TransitionFunction;
+import typestate.finiteautomata.TypeStateMachineWeightFunctions;
+import typestate.impl.statemachines.FileMustBeClosedStateMachine;
+import typestate.test.helper.File;
+import typestate.test.helper.ObjectWithField;
+
+/**
+ * Analyzes the seeds of each test sequentially and on four threads, the results of all seeds must
+ * be identical.
+ */
+public class ParallelFileMustBeClosedTest extends IDEALTestingFramework {
+	private int threads = 1;
+
+	@Test
+	public void manyFiles() {
+		File a = new File();
+		File b = new File();
+		File c = new File();
+		a.open();
+		b.open();
+		c.open();
+		if (staticallyUnknown())
+			a.close();
+		close(b);
+		mayBeInErrorState(a);
+		mustBeInAcceptingState(b);
+		mustBeInErrorState(c);
+		c.close();
+		mustBeInAcceptingState(c);
+	}
+
+	@Test
+	public void aliasedFiles() {
+		File a = new File();
+		File alias = a;
+		File b = new File();
+		a.open();
+		b.open();
+		alias.close();
+		mustBeInAcceptingState(a);
+		mustBeInErrorState(b);
+	}
+
+	@Test
+	public void filesInFields() {
+		ObjectWithField first = new ObjectWithField();
+		ObjectWithField second = new ObjectWithField();
+		open(first);
+		open(second);
+		if (staticallyUnknown())
+			first.field.close();
+		mayBeInErrorState(first.field);
+		mustBeInErrorState(second.field);
+	}
+
+	private static void close(File file) {
+		file.close();
+	}
+
+	private static void open(ObjectWithField container) {
+		container.field = new File();
+		container.field.open();
+	}
+
+	@Override
+	protected int numberOfThreads() {
+		return threads;
+	}
+
+	@Override
+	protected Map<WeightedForwardQuery<TransitionFunction>, ForwardBoomerangResults<TransitionFunction>> executeAnalysis() {
+		threads = 1;
+		resultHandler = new StoreIDEALResultHandler<>();
+		Map<WeightedForwardQuery<TransitionFunction>, Table<Statement, Val, TransitionFunction>> sequential = weights(
+				super.executeAnalysis());
+		threads = 4;
+		resultHandler = new StoreIDEALResultHandler<>();
+		Map<WeightedForwardQuery<TransitionFunction>, ForwardBoomerangResults<TransitionFunction>> parallel = super.executeAnalysis();
+		Assert.assertEquals(sequential, weights(parallel));
+		return parallel;
+	}
+
+	private static Map<WeightedForwardQuery<TransitionFunction>, Table<Statement, Val, TransitionFunction>> weights(
+			Map<WeightedForwardQuery<TransitionFunction>, ForwardBoomerangResults<TransitionFunction>> results) {
+		Map<WeightedForwardQuery<TransitionFunction>, Table<Statement, Val, TransitionFunction>> res = Maps.newHashMap();
+		for (Entry<WeightedForwardQuery<TransitionFunction>, ForwardBoomerangResults<TransitionFunction>> e : results
+				.entrySet()) {
+			res.put(e.getKey(), e.getValue().asStatementValWeightTable());
+		}
+		return res;
+	}
+
+	@Override
+	protected TypeStateMachineWeightFunctions getStateMachine() {
+		return new FileMustBeClosedStateMachine();
+	}
+}
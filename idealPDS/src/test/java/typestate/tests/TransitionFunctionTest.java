@@ -0,0 +1,297 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Fraunhofer IEM, Paderborn, Germany.
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Johannes Spaeth - initial API and implementation
+ *******************************************************************************/
+package typestate.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import boomerang.jimple.Statement;
+import soot.jimple.Jimple;
+import typestate.TransitionFunction;
+import typestate.finiteautomata.ITransition;
+import typestate.finiteautomata.State;
+import typestate.finiteautomata.Transition;
+import wpds.impl.Weight;
+
+/**
+ * Compares extend, combine, equals and hashCode of {@link TransitionFunction} on random weights with
+ * {@link SetTransitionFunction}, the implementation that kept the transitions in a hash set.
+ */
+public class TransitionFunctionTest {
+	private static final int ROUNDS = 2000;
+
+	/**
+	 * More states than fit into one word of a matrix row.
+	 */
+	private static final List<State> STATES = Lists.newArrayList();
+	static {
+		for (int i = 0; i < 150; i++)
+			STATES.add(new TestState("s" + i));
+	}
+
+	private static final List<Statement> STATEMENTS = Lists.newArrayList();
+	static {
+		for (int i = 0; i < 8; i++)
+			STATEMENTS.add(new Statement(Jimple.v().newNopStmt(), null));
+	}
+
+	@Test
+	public void extendAndCombineSmall() {
+		compareOperations(new Random(1), 3);
+	}
+
+	@Test
+	public void extendAndCombineLarge() {
+		compareOperations(new Random(2), STATES.size());
+	}
+
+	@Test
+	public void equalsAndHashCodeSmall() {
+		compareEquality(new Random(3), 2);
+	}
+
+	@Test
+	public void equalsAndHashCodeLarge() {
+		compareEquality(new Random(4), STATES.size());
+	}
+
+	private void compareOperations(Random rand, int states) {
+		for (int i = 0; i < ROUNDS; i++) {
+			Pair a = randomWeight(rand, states);
+			Pair b = randomWeight(rand, states);
+			Pair c = randomWeight(rand, states);
+			Pair ab = a.extendWith(b);
+			assertMatches(ab);
+			assertMatches(a.combineWith(b));
+			assertMatches(ab.combineWith(c));
+			assertMatches(c.combineWith(ab));
+			assertMatches(ab.extendWith(c));
+			assertMatches(a.combineWith(b).extendWith(c));
+		}
+	}
+
+	private void compareEquality(Random rand, int states) {
+		int equal = 0;
+		for (int i = 0; i < ROUNDS; i++) {
+			Pair a = randomWeight(rand, states);
+			Pair b = rand.nextBoolean() ? randomWeight(rand, states) : a.extendWith(randomWeight(rand, states));
+			boolean expected = a.expected.equals(b.expected);
+			assertEquals(a + " = " + b, expected, a.actual.equals(b.actual));
+			assertEquals(expected, b.actual.equals(a.actual));
+			if (expected) {
+				assertEquals(a.actual.hashCode(), b.actual.hashCode());
+				equal++;
+			}
+		}
+		assertTrue("Too few equal weights drawn: " + equal, equal > ROUNDS / 100);
+	}
+
+	private static void assertMatches(Pair p) {
+		SetTransitionFunction expected = p.expected;
+		TransitionFunction actual = p.actual;
+		if (expected.equals(SetTransitionFunction.one())) {
+			assertEquals(TransitionFunction.one(), actual);
+		} else if (expected.equals(SetTransitionFunction.zero())) {
+			assertEquals(TransitionFunction.zero(), actual);
+		} else {
+			assertEquals(expected.value, Sets.newHashSet(actual.values()));
+			assertEquals(expected.stateChangeStatements, actual.getLastStateChangeStatements());
+		}
+	}
+
+	private static Pair randomWeight(Random rand, int states) {
+		int kind = rand.nextInt(10);
+		if (kind == 0)
+			return new Pair(SetTransitionFunction.one(), TransitionFunction.one());
+		if (kind == 1)
+			return new Pair(SetTransitionFunction.zero(), TransitionFunction.zero());
+		Set<ITransition> trans = Sets.newHashSet();
+		int size = rand.nextInt(Math.min(states * states, 6) + 1);
+		for (int i = 0; i < size; i++)
+			trans.add(new Transition(STATES.get(rand.nextInt(states)), STATES.get(rand.nextInt(states))));
+		Set<Statement> stmts = Sets.newHashSet();
+		int stmtCount = rand.nextInt(3);
+		for (int i = 0; i < stmtCount; i++)
+			stmts.add(STATEMENTS.get(rand.nextInt(STATEMENTS.size())));
+		return new Pair(new SetTransitionFunction(trans, stmts), new TransitionFunction(trans, stmts));
+	}
+
+	private static class Pair {
+		private final SetTransitionFunction expected;
+		private final TransitionFunction actual;
+
+		Pair(SetTransitionFunction expected, TransitionFunction actual) {
+			this.expected = expected;
+			this.actual = actual;
+		}
+
+		Pair extendWith(Pair other) {
+			return new Pair(expected.extendWith(other.expected), (TransitionFunction) actual.extendWith(other.actual));
+		}
+
+		Pair combineWith(Pair other) {
+			return new Pair(expected.combineWith(other.expected), (TransitionFunction) actual.combineWith(other.actual));
+		}
+
+		@Override
+		public String toString() {
+			return expected.toString();
+		}
+	}
+
+	private static class TestState implements State {
+		private final String name;
+
+		TestState(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public boolean isErrorState() {
+			return false;
+		}
+
+		@Override
+		public boolean isInitialState() {
+			return false;
+		}
+
+		@Override
+		public boolean isAccepting() {
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	/**
+	 * The set based implementation TransitionFunction used before it stored bit matrices.
+	 */
+	private static class SetTransitionFunction {
+		private static final SetTransitionFunction one = new SetTransitionFunction("ONE");
+		private static final SetTransitionFunction zero = new SetTransitionFunction("ZERO");
+
+		private final Set<ITransition> value;
+		private final String rep;
+		private final Set<Statement> stateChangeStatements;
+
+		SetTransitionFunction(Set<? extends ITransition> trans, Set<Statement> stateChangeStatements) {
+			this.stateChangeStatements = stateChangeStatements;
+			this.value = Sets.newHashSet(trans);
+			this.rep = null;
+		}
+
+		private SetTransitionFunction(String rep) {
+			this.value = Sets.newHashSet();
+			this.rep = rep;
+			this.stateChangeStatements = Sets.newHashSet();
+		}
+
+		static SetTransitionFunction one() {
+			return one;
+		}
+
+		static SetTransitionFunction zero() {
+			return zero;
+		}
+
+		SetTransitionFunction extendWith(SetTransitionFunction other) {
+			if (other.equals(one()))
+				return this;
+			if (this.equals(one()))
+				return other;
+			if (other.equals(zero()) || this.equals(zero()))
+				return zero();
+			Set<ITransition> ress = Sets.newHashSet();
+			Set<Statement> newStateChangeStatements = Sets.newHashSet();
+			for (ITransition first : value) {
+				for (ITransition second : other.value) {
+					if (second.equals(Transition.identity())) {
+						ress.add(first);
+						newStateChangeStatements.addAll(stateChangeStatements);
+					} else if (first.equals(Transition.identity())) {
+						ress.add(second);
+						newStateChangeStatements.addAll(other.stateChangeStatements);
+					} else if (first.to().equals(second.from())) {
+						ress.add(new Transition(first.from(), second.to()));
+						newStateChangeStatements.addAll(other.stateChangeStatements);
+					}
+				}
+			}
+			return new SetTransitionFunction(ress, newStateChangeStatements);
+		}
+
+		SetTransitionFunction combineWith(SetTransitionFunction other) {
+			if (this.equals(zero()))
+				return other;
+			if (other.equals(zero()))
+				return this;
+			if (other.equals(one()) && this.equals(one()))
+				return one();
+			if (other.equals(one()) || this.equals(one())) {
+				SetTransitionFunction nonOne = other.equals(one()) ? this : other;
+				Set<ITransition> transitions = Sets.newHashSet(nonOne.value);
+				for (ITransition t : nonOne.value)
+					transitions.add(new Transition(t.from(), t.from()));
+				return new SetTransitionFunction(transitions, Sets.newHashSet(nonOne.stateChangeStatements));
+			}
+			Set<ITransition> transitions = Sets.newHashSet(other.value);
+			transitions.addAll(value);
+			Set<Statement> newStateChangeStmts = Sets.newHashSet(stateChangeStatements);
+			newStateChangeStmts.addAll(other.stateChangeStatements);
+			return new SetTransitionFunction(transitions, newStateChangeStmts);
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + ((rep == null) ? 0 : rep.hashCode());
+			result = prime * result + value.hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null || getClass() != obj.getClass())
+				return false;
+			SetTransitionFunction other = (SetTransitionFunction) obj;
+			if (rep == null) {
+				if (other.rep != null)
+					return false;
+			} else if (!rep.equals(other.rep))
+				return false;
+			return value.equals(other.value);
+		}
+
+		@Override
+		public String toString() {
+			if (rep != null)
+				return rep;
+			return "Weight: " + value;
+		}
+	}
+}